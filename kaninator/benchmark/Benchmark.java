@@ -0,0 +1,179 @@
+/**
+ * Benchmarks for the hot paths of the engine, run from the command line.
+ */
+package kaninator.benchmark;
+
+/**
+ * A single benchmark, run once for every value of its parameter.
+ * Subclasses prepare their state in setUpTrial() and setUp() and perform the measured work in run(). The harness calls
+ * setUpTrial() once per parameter value, for state that should stay warm, such as caches, and setUp() before
+ * every iteration, so the state doesn't drift between iterations. It calls run() in a loop
+ * until the iteration time has passed. The values returned by run() are consumed so the JIT can't remove the work.
+ * @author phedman
+ * @see kaninator.benchmark.Benchmarks
+ */
+public abstract class Benchmark
+{
+	/**
+	 * The outcome of measuring a benchmark with one parameter value.
+	 * @author phedman
+	 */
+	public static final class Result
+	{
+		private double mean, error;
+
+		/**
+		 * Creates a result.
+		 * @param _mean The mean time of an operation in nanoseconds.
+		 * @param _error The standard deviation of the time between the iterations in nanoseconds.
+		 */
+		private Result(double _mean, double _error)
+		{
+			mean = _mean;
+			error = _error;
+		}
+
+		/**
+		 * Getter for the mean time of an operation.
+		 * @return The time in nanoseconds.
+		 */
+		public double getMean()
+		{
+			return mean;
+		}
+
+		/**
+		 * Getter for the standard deviation of the time of an operation between the iterations.
+		 * @return The standard deviation in nanoseconds.
+		 */
+		public double getError()
+		{
+			return error;
+		}
+	}
+
+	private static volatile long sink = 0;
+
+	private String name;
+	private int params[];
+
+	/**
+	 * Creates a benchmark.
+	 * @param _name The name the benchmark is reported and selected with.
+	 * @param _params The values of the parameter the benchmark is run with, for example map sizes or entity counts.
+	 */
+	protected Benchmark(String _name, int _params[])
+	{
+		name = _name;
+		params = _params;
+	}
+
+	/**
+	 * Getter for the name of the benchmark.
+	 * @return The name.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Getter for the values of the parameter.
+	 * @return The parameter values.
+	 */
+	public int[] getParams()
+	{
+		return params;
+	}
+
+	/**
+	 * Prepares the state shared by all the iterations with a parameter value. Does nothing by default.
+	 * @param param The value of the parameter.
+	 * @throws Exception If the state can't be created, the parameter value is skipped.
+	 */
+	protected void setUpTrial(int param) throws Exception
+	{
+	}
+	
+	/**
+	 * Prepares the state for an iteration. Does nothing by default.
+	 * @param param The value of the parameter.
+	 * @throws Exception If the state can't be created, the parameter value is skipped.
+	 */
+	protected void setUp(int param) throws Exception
+	{
+	}
+
+	/**
+	 * Performs the measured work once.
+	 * @return Any value depending on the work, it is consumed by the harness.
+	 */
+	protected abstract long run();
+
+	/**
+	 * Gets how many operations a call to run() counts as. The times are reported per operation.
+	 * Benchmarks of very cheap methods do them in batches to keep the cost of the timing out of the results.
+	 * @param param The value of the parameter.
+	 * @return The number of operations, 1 by default.
+	 */
+	protected int getOperations(int param)
+	{
+		return 1;
+	}
+
+	/**
+	 * Measures the benchmark with a single parameter value.
+	 * @param param The value of the parameter.
+	 * @param warmups The number of iterations run before the measured ones, to let the JIT compile the code.
+	 * @param iterations The number of measured iterations.
+	 * @param iterationTime How long each iteration runs, in nanoseconds.
+	 * @return The time of an operation.
+	 * @throws Exception If setUpTrial() or setUp() fails.
+	 */
+	public Result measure(int param, int warmups, int iterations, long iterationTime) throws Exception
+	{
+		setUpTrial(param);
+		for(int i = 0; i < warmups; i++)
+			iterate(param, iterationTime);
+
+		double times[] = new double[iterations];
+		double mean = 0.0;
+		for(int i = 0; i < iterations; i++)
+		{
+			times[i] = iterate(param, iterationTime);
+			mean += times[i];
+		}
+		mean /= iterations;
+
+		double variance = 0.0;
+		for(double time : times)
+			variance += (time - mean) * (time - mean);
+
+		return new Result(mean, (iterations > 1) ? Math.sqrt(variance / (iterations - 1)) : 0.0);
+	}
+
+	/**
+	 * Runs a single iteration.
+	 * @param param The value of the parameter.
+	 * @param iterationTime How long the iteration runs, in nanoseconds.
+	 * @return The mean time of an operation during the iteration, in nanoseconds.
+	 * @throws Exception If setUp() fails.
+	 */
+	private double iterate(int param, long iterationTime) throws Exception
+	{
+		setUp(param);
+
+		long result = 0, runs = 0;
+		long start = System.nanoTime(), elapsed;
+		do
+		{
+			result += run();
+			runs++;
+			elapsed = System.nanoTime() - start;
+		}
+		while(elapsed < iterationTime);
+
+		sink += result;
+		return (double)elapsed / (runs * getOperations(param));
+	}
+}
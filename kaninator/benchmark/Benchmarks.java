@@ -0,0 +1,872 @@
+/**
+ * Benchmarks for the hot paths of the engine, run from the command line.
+ */
+package kaninator.benchmark;
+
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import kaninator.game.*;
+import kaninator.graphics.*;
+import kaninator.io.MapFactory;
+import kaninator.mechanics.*;
+import kaninator.sound.SoundFactory;
+
+/**
+ * The benchmark suite. Covers the height lookups of the map, the movement of the models, the Zombie AI, the Horde, the entity registry,
+ * the bullet collisions, the camera, drawing to an OffscreenCanvas and the loading of maps and animations.
+ * The maps are generated from a fixed seed, so every run measures the same work.
+ * Run with java.awt.headless=true to measure the rendering the same way on every machine.<br />
+ * Usage: java kaninator.benchmark.Benchmarks [-quick] [name...]<br />
+ * The names select the benchmarks whose name starts with them, all of them are run by default.
+ * @author phedman
+ * @see kaninator.benchmark.Benchmark
+ */
+public final class Benchmarks
+{
+	private static final int MAP_SIZES[] = {32, 64, 128};
+	private static final int ENTITY_COUNTS[] = {16, 64, 256};
+	private static final int ENTITY_MAP_SIZE = 64;
+	private static final int HORDE_SIZES[] = {256, 1024, 4096};
+	private static final int HORDE_MAP_SIZE = 128;
+	private static final int THREAD_COUNTS[] = {1, 2, 4};
+	private static final int SWARM_SIZE = 2048;
+	private static final double SWARM_SPREAD = 600.0;
+	private static final int HORDE_TICK_SIZES[] = {1024, 4096, 10000};
+	private static final double HORDE_SPREAD = 2400.0;
+	private static final ParallelUpdater SERIAL = new ParallelUpdater(1);
+	private static final int HEIGHT_LOOKUPS = 4096;
+	private static final int BULLETS = 40;
+	private static final long SEED = 1337;
+	private static final Dimension RESOLUTION = new Dimension(800, 600);
+	private static final int ANIMATION_FRAME_SIZES[] = {32, 64};
+
+	/**
+	 * Generates the data of a square map with hills and slopes, in the format read by the MapFactory.
+	 * @param size The number of tiles on a side.
+	 * @param random The source of the tile heights and types.
+	 * @return The map data.
+	 */
+	private static byte[] generateMap(int size, Random random)
+	{
+		StringBuilder data = new StringBuilder();
+		for(int y = 0; y < size; y++)
+		{
+			for(int x = 0; x < size; x++)
+			{
+				int type = (random.nextInt(5) == 0) ? 1 + random.nextInt(8) : 0;
+				data.append(random.nextInt(3)).append(' ').append(type).append('\t');
+			}
+			data.append('\n');
+		}
+
+		return data.toString().getBytes();
+	}
+
+	/**
+	 * Creates a map from generated data.
+	 * @param size The number of tiles on a side.
+	 * @return The map.
+	 * @throws MapException If the data can't be parsed.
+	 */
+	private static Map createMap(int size) throws MapException
+	{
+		return MapFactory.readMap(new ByteArrayInputStream(generateMap(size, new Random(SEED))));
+	}
+
+	/**
+	 * Gets a sprite sheet of the game with the given frame size.
+	 * @param frameSize The width and height of a frame, 32 for the gun and 64 for the zombies.
+	 * @return The path to the sprite sheet.
+	 * @throws Exception If there is no sprite sheet with that frame size.
+	 */
+	private static String getSpriteSheet(int frameSize) throws Exception
+	{
+		switch(frameSize)
+		{
+			case 32:
+				return "/resources/gunSheet.png";
+			case 64:
+				return "/resources/zombSheet.png";
+			default:
+				throw new Exception("ERR: No sprite sheet with the frame size " + frameSize);
+		}
+	}
+
+	/**
+	 * Gets a random coordinate inside a map, away from the edges.
+	 * @param size The number of tiles on a side of the map.
+	 * @param random The source of the coordinate.
+	 * @return The coordinate on either axis.
+	 */
+	private static double randomCoordinate(int size, Random random)
+	{
+		double tile = MapFactory.getTileSize();
+		return tile + random.nextDouble() * (size - 2) * tile;
+	}
+
+	/**
+	 * Creates the player model in the middle of a map.
+	 * @param map The map.
+	 * @param size The number of tiles on a side of the map.
+	 * @return The model.
+	 * @throws ModelException If the animations can't be loaded.
+	 */
+	private static Model createPlayer(Map map, int size) throws ModelException
+	{
+		ArrayList<Animation> anims = AnimationFactory.getAnimations("/resources/theSheet.png", true, 64, 64, 0.30);
+		double middle = size * MapFactory.getTileSize() / 2.0;
+		return new Model(anims, map, middle, middle, 5.0, 5.0);
+	}
+
+	/**
+	 * Creates Zombies at random positions on a map, chasing the player.
+	 * @param count The number of Zombies.
+	 * @param map The map.
+	 * @param flowField The flow field leading to the player, or null.
+	 * @param size The number of tiles on a side of the map.
+	 * @param player The object the Zombies are chasing.
+	 * @param random The source of the positions.
+	 * @return The Zombies.
+	 * @throws ModelException If the animations can't be loaded.
+	 */
+	private static ArrayList<Zombie> createZombies(int count, Map map, FlowField flowField, int size, DynamicObject player, Random random) throws ModelException
+	{
+		ArrayList<Animation> anims = AnimationFactory.getAnimations("/resources/zombSheet.png", true, 64, 64, 0.25);
+		ArrayList<Zombie> zombies = new ArrayList<Zombie>();
+		for(int i = 0; i < count; i++)
+			zombies.add(new Zombie(AnimationFactory.cloneAnimations(anims), map, flowField, SoundFactory.getSilentClip(), player,
+									randomCoordinate(size, random), randomCoordinate(size, random), 5.0));
+
+		return zombies;
+	}
+
+	/**
+	 * Rebuilds the spatial index of Zombies, the same way the Game does.
+	 * @param index The index.
+	 * @param zombies The Zombies.
+	 */
+	private static void indexZombies(SpatialIndex<Zombie> index, ArrayList<Zombie> zombies)
+	{
+		index.clear();
+		for(Zombie zombie : zombies)
+			index.insert(zombie, zombie.getMainObject());
+	}
+
+	/**
+	 * Map.getHeightAt at random points, per lookup.
+	 */
+	private static class HeightBenchmark extends Benchmark
+	{
+		private Map map;
+		private double points[];
+
+		/**
+		 * Creates the benchmark.
+		 */
+		HeightBenchmark()
+		{
+			super("map.getHeightAt", MAP_SIZES);
+		}
+
+		/**
+		 * Overrides the setUpTrial method in Benchmark, creates the map and the points.
+		 */
+		protected void setUpTrial(int size) throws Exception
+		{
+			Random random = new Random(SEED);
+			map = createMap(size);
+			points = new double[HEIGHT_LOOKUPS * 2];
+			for(int i = 0; i < points.length; i++)
+				points[i] = randomCoordinate(size, random);
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, looks up the height at every point.
+		 */
+		protected long run()
+		{
+			double sum = 0.0;
+			for(int i = 0; i < points.length; i += 2)
+				sum += map.getHeightAt(points[i], points[i + 1]);
+			return (long)sum;
+		}
+
+		/**
+		 * Overrides the getOperations method in Benchmark.
+		 */
+		protected int getOperations(int size)
+		{
+			return HEIGHT_LOOKUPS;
+		}
+	}
+
+	/**
+	 * Model.update for moving models, per model.
+	 */
+	private static class ModelBenchmark extends Benchmark
+	{
+		private ArrayList<Model> models;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		ModelBenchmark()
+		{
+			super("model.update", ENTITY_COUNTS);
+		}
+
+		/**
+		 * Overrides the setUp method in Benchmark, creates the models and sets them moving.
+		 */
+		protected void setUp(int count) throws Exception
+		{
+			Random random = new Random(SEED);
+			Map map = createMap(ENTITY_MAP_SIZE);
+			ArrayList<Animation> anims = AnimationFactory.getAnimations("/resources/zombSheet.png", true, 64, 64, 0.25);
+			models = new ArrayList<Model>();
+			for(int i = 0; i < count; i++)
+			{
+				Model model = new Model(AnimationFactory.cloneAnimations(anims), map, randomCoordinate(ENTITY_MAP_SIZE, random),
+										randomCoordinate(ENTITY_MAP_SIZE, random), 5.0, 5.0);
+				model.move_x(random.nextInt(3) - 1);
+				model.move_y(random.nextInt(3) - 1);
+				models.add(model);
+			}
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, updates every model once.
+		 */
+		protected long run()
+		{
+			long sum = 0;
+			for(Model model : models)
+			{
+				model.update();
+				sum += (long)model.getModel().get_x();
+			}
+			return sum;
+		}
+
+		/**
+		 * Overrides the getOperations method in Benchmark.
+		 */
+		protected int getOperations(int count)
+		{
+			return count;
+		}
+	}
+
+	/**
+	 * FlowField.update and Zombie.observe and Zombie.act for every Zombie and the reindexing after them, per frame.
+	 */
+	private static class ZombieBenchmark extends Benchmark
+	{
+		private ArrayList<Zombie> zombies;
+		private SpatialIndex<Zombie> index;
+		private FlowField flowField;
+		private DynamicObject player;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		ZombieBenchmark()
+		{
+			super("zombie.act", ENTITY_COUNTS);
+		}
+
+		/**
+		 * Overrides the setUp method in Benchmark, creates the Zombies and the player.
+		 */
+		protected void setUp(int count) throws Exception
+		{
+			Random random = new Random(SEED);
+			Map map = createMap(ENTITY_MAP_SIZE);
+			player = createPlayer(map, ENTITY_MAP_SIZE).getModel();
+			flowField = new FlowField(map.getTiles());
+			zombies = createZombies(count, map, flowField, ENTITY_MAP_SIZE, player, random);
+			index = new SpatialIndex<Zombie>();
+			indexZombies(index, zombies);
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, runs the Zombie AI for a frame.
+		 */
+		protected long run()
+		{
+			flowField.update(player);
+			for(Zombie zombie : zombies)
+				zombie.observe();
+
+			long dead = 0;
+			for(Zombie zombie : zombies)
+				if(zombie.act(index))
+					dead++;
+
+			indexZombies(index, zombies);
+			return dead;
+		}
+	}
+
+	/**
+	 * A frame of Zombie AI through the ZombieScheduler, with a horde spread over a large map, per frame.
+	 * Most of the Zombies are far from the player, so this shows what the dormant ones still cost.
+	 */
+	private static class SchedulerBenchmark extends Benchmark
+	{
+		private ZombieScheduler scheduler;
+		private FlowField flowField;
+		private DynamicObject player;
+		private ArrayList<Zombie> killed;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		SchedulerBenchmark()
+		{
+			super("zombie.schedule", HORDE_SIZES);
+		}
+
+		/**
+		 * Overrides the setUp method in Benchmark, creates the horde and lets the Zombies far away fall asleep.
+		 */
+		protected void setUp(int count) throws Exception
+		{
+			Random random = new Random(SEED);
+			Map map = createMap(HORDE_MAP_SIZE);
+			player = createPlayer(map, HORDE_MAP_SIZE).getModel();
+			flowField = new FlowField(map.getTiles());
+			scheduler = new ZombieScheduler(player);
+			for(Zombie zombie : createZombies(count, map, flowField, HORDE_MAP_SIZE, player, random))
+				scheduler.add(zombie);
+
+			killed = new ArrayList<Zombie>();
+			run();
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, runs the Zombie AI for a frame the same way the Game does.
+		 */
+		protected long run()
+		{
+			scheduler.index();
+			flowField.update(player);
+			scheduler.observe(SERIAL);
+			scheduler.act(killed, SERIAL);
+			killed.clear();
+			return scheduler.getDormantCount();
+		}
+	}
+
+	/**
+	 * A frame of Zombie AI through the ZombieScheduler with a swarm of Zombies around the player, all of them awake,
+	 * on different numbers of threads, per frame.
+	 */
+	private static class ParallelBenchmark extends Benchmark
+	{
+		private ZombieScheduler scheduler;
+		private ParallelUpdater updater;
+		private ArrayList<Zombie> killed;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		ParallelBenchmark()
+		{
+			super("zombie.parallel", THREAD_COUNTS);
+		}
+
+		/**
+		 * Overrides the setUpTrial method in Benchmark, creates the pool.
+		 */
+		protected void setUpTrial(int threads) throws Exception
+		{
+			if(updater != null)
+				updater.shutdown();
+			updater = new ParallelUpdater(threads);
+		}
+
+		/**
+		 * Overrides the setUp method in Benchmark, creates the swarm around the player.
+		 */
+		protected void setUp(int threads) throws Exception
+		{
+			Random random = new Random(SEED);
+			Map map = createMap(ENTITY_MAP_SIZE);
+			DynamicObject player = createPlayer(map, ENTITY_MAP_SIZE).getModel();
+			scheduler = new ZombieScheduler(player);
+			ArrayList<Animation> anims = AnimationFactory.getAnimations("/resources/zombSheet.png", true, 64, 64, 0.25);
+			for(int i = 0; i < SWARM_SIZE; i++)
+			{
+				double x = player.get_x() + (random.nextDouble() - 0.5) * SWARM_SPREAD;
+				double y = player.get_y() + (random.nextDouble() - 0.5) * SWARM_SPREAD;
+				scheduler.add(new Zombie(AnimationFactory.cloneAnimations(anims), map, null, SoundFactory.getSilentClip(), player, x, y, 5.0));
+			}
+
+			killed = new ArrayList<Zombie>();
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, runs the Zombie AI for a frame the same way the Game does.
+		 */
+		protected long run()
+		{
+			scheduler.index();
+			scheduler.observe(updater);
+			scheduler.act(killed, updater);
+			killed.clear();
+			return scheduler.size();
+		}
+	}
+
+	/**
+	 * A tick of a Horde spread around the player on a single thread, the same way as the Game with a Horde: the positions are stored,
+	 * the grid is rebuilt, the Zombies observe and act and are projected into a WorldSnapshot, per tick.
+	 */
+	private static class HordeBenchmark extends Benchmark
+	{
+		private Horde horde;
+		private FlowField flowField;
+		private DynamicObject player;
+		private WorldSnapshot snapshot;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		HordeBenchmark()
+		{
+			super("horde.tick", HORDE_TICK_SIZES);
+		}
+
+		/**
+		 * Overrides the setUp method in Benchmark, spawns the horde around the player.
+		 */
+		protected void setUp(int count) throws Exception
+		{
+			Random random = new Random(SEED);
+			Map map = createMap(HORDE_MAP_SIZE);
+			player = createPlayer(map, HORDE_MAP_SIZE).getModel();
+			flowField = new FlowField(map.getTiles());
+			horde = new Horde(AnimationFactory.getAnimations("/resources/zombSheet.png", true, 64, 64, 0.25), map, flowField, player, 5.0, count);
+			for(int i = 0; i < count; i++)
+				horde.spawn(player.get_x() + (random.nextDouble() - 0.5) * HORDE_SPREAD, player.get_y() + (random.nextDouble() - 0.5) * HORDE_SPREAD);
+
+			snapshot = new WorldSnapshot(0);
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, runs a tick of the Horde.
+		 */
+		protected long run()
+		{
+			horde.storePositions();
+			horde.index();
+			flowField.update(player);
+			horde.observe();
+			horde.act();
+			snapshot.clear();
+			horde.project(snapshot);
+			return snapshot.size();
+		}
+	}
+
+	/**
+	 * FlowField.update with the target on a new tile every time, per recomputed field.
+	 */
+	private static class FlowFieldBenchmark extends Benchmark
+	{
+		private FlowField flowField;
+		private DynamicObject target;
+		private int size;
+		private long updates;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		FlowFieldBenchmark()
+		{
+			super("flowfield.update", MAP_SIZES);
+		}
+
+		/**
+		 * Overrides the setUpTrial method in Benchmark, creates the map and the field.
+		 */
+		protected void setUpTrial(int _size) throws Exception
+		{
+			size = _size;
+			flowField = new FlowField(createMap(size).getTiles());
+			target = new DynamicObject(null, 0.0);
+			updates = 0;
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, moves the target to the next tile on the diagonal and recomputes the field.
+		 */
+		protected long run()
+		{
+			double tile = (1 + updates++ % (size - 2) + 0.5) * MapFactory.getTileSize();
+			target.setPos(tile, tile);
+			return flowField.update(target) ? 1 : 0;
+		}
+	}
+
+	/**
+	 * EntityRegistry with every other object removed and added again, as when a blast clears out half of the projectiles, per frame.
+	 */
+	private static class RegistryBenchmark extends Benchmark
+	{
+		private EntityRegistry registry;
+		private DynamicObject objects[];
+		private int handles[];
+
+		/**
+		 * Creates the benchmark.
+		 */
+		RegistryBenchmark()
+		{
+			super("registry.churn", HORDE_SIZES);
+		}
+
+		/**
+		 * Overrides the setUp method in Benchmark, fills the registry.
+		 */
+		protected void setUp(int count) throws Exception
+		{
+			registry = new EntityRegistry();
+			objects = new DynamicObject[count];
+			handles = new int[count];
+			for(int i = 0; i < count; i++)
+			{
+				objects[i] = new DynamicObject(null, 1.0);
+				handles[i] = registry.add(objects[i], EntityRegistry.PROJECTILES);
+			}
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, removes every other object, flushes and adds them back.
+		 */
+		protected long run()
+		{
+			for(int i = 0; i < objects.length; i += 2)
+				registry.remove(handles[i]);
+			registry.flush();
+			for(int i = 0; i < objects.length; i += 2)
+				handles[i] = registry.add(objects[i], EntityRegistry.PROJECTILES);
+			return registry.size(EntityRegistry.PROJECTILES);
+		}
+	}
+
+	/**
+	 * Bullet.observe for a steady number of bullets among the Zombies, per frame.
+	 */
+	private static class BulletBenchmark extends Benchmark
+	{
+		private Gun gun;
+		private EntityRegistry entities;
+		private SpatialIndex<Zombie> index;
+		private ArrayList<Zombie> hits;
+		private Random random;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		BulletBenchmark()
+		{
+			super("bullet.observe", ENTITY_COUNTS);
+		}
+
+		/**
+		 * Overrides the setUp method in Benchmark, creates the Zombies and the gun.
+		 */
+		protected void setUp(int count) throws Exception
+		{
+			random = new Random(SEED);
+			Map map = createMap(ENTITY_MAP_SIZE);
+			Model player = createPlayer(map, ENTITY_MAP_SIZE);
+			index = new SpatialIndex<Zombie>();
+			indexZombies(index, createZombies(count, map, null, ENTITY_MAP_SIZE, player.getModel(), random));
+			hits = new ArrayList<Zombie>();
+
+			ArrayList<Animation> gunAnim = AnimationFactory.getAnimations("/resources/gunSheet.png", true, 32, 32, 0.0);
+			entities = new EntityRegistry();
+			gun = new Gun(gunAnim, SoundFactory.getSilentClip(), map, ImageFactory.getImage("/resources/bullet.png"), entities, 35.0, random);
+			gun.setWielder(player.getModel());
+			gun.update();
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, replaces the bullets that have hit something and moves all of them.
+		 */
+		protected long run()
+		{
+			//Two DynamicObjects per bullet
+			while(entities.size(EntityRegistry.PROJECTILES) < BULLETS * 2)
+			{
+				gun.setAim(random.nextDouble() - 0.5, random.nextDouble() - 0.5, 0.0);
+				gun.shoot();
+			}
+
+			gun.observeBullets(index, hits, SERIAL);
+			hits.clear();
+			gun.updateBullets();
+			entities.flush();
+			return entities.size(EntityRegistry.PROJECTILES);
+		}
+	}
+
+	/**
+	 * Camera.render with the Zombies on screen, per frame. Only builds the drawing queue, nothing is drawn.
+	 * The camera is kept between the iterations, so the terrain is only baked during the warmup.
+	 */
+	private static class CameraBenchmark extends Benchmark
+	{
+		protected OffscreenCanvas canvas;
+		protected Camera camera;
+		private DynamicObject focus;
+
+		/**
+		 * Creates the benchmark.
+		 * @param name The name of the benchmark.
+		 */
+		CameraBenchmark(String name)
+		{
+			super(name, ENTITY_COUNTS);
+		}
+
+		/**
+		 * Overrides the setUpTrial method in Benchmark, creates the camera and places the Zombies around the player.
+		 */
+		protected void setUpTrial(int count) throws Exception
+		{
+			Random random = new Random(SEED);
+			Map map = createMap(ENTITY_MAP_SIZE);
+			Model player = createPlayer(map, ENTITY_MAP_SIZE);
+
+			//Crowd the Zombies around the player so they are on the screen
+			int nearby = 12;
+			double offset = (ENTITY_MAP_SIZE - nearby) * MapFactory.getTileSize() / 2.0;
+			EntityRegistry entities = new EntityRegistry();
+			for(Zombie zombie : createZombies(count, map, null, nearby, player.getModel(), random))
+			{
+				zombie.getMainObject().setPos(zombie.getMainObject().get_x() + offset, zombie.getMainObject().get_y() + offset);
+				entities.add(zombie.getMainObject(), EntityRegistry.ENEMIES);
+			}
+
+			Dimension sizes[] = {RESOLUTION};
+			canvas = new OffscreenCanvas(sizes);
+			camera = new Camera(canvas, new GUI(canvas), ImageFactory.getImage("/resources/background.jpg"));
+			camera.setTiles(map.getTiles());
+			entities.addAll(player.getDynamicObjects(), EntityRegistry.PLAYER);
+			camera.setEntities(entities);
+			focus = player.getModel();
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, renders a frame to the drawing queue.
+		 */
+		protected long run()
+		{
+			camera.follow(focus);
+			camera.render();
+			return camera.get_x();
+		}
+	}
+
+	/**
+	 * Camera.render followed by drawing the frame to the OffscreenCanvas, per frame.
+	 */
+	private static class DrawBenchmark extends CameraBenchmark
+	{
+		/**
+		 * Creates the benchmark.
+		 */
+		DrawBenchmark()
+		{
+			super("canvas.draw");
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, renders and draws a frame.
+		 */
+		protected long run()
+		{
+			long x = super.run();
+			canvas.draw();
+			return x + canvas.getImage().getRGB(0, 0);
+		}
+	}
+
+	/**
+	 * MapFactory.readMap from generated map data in memory, per map.
+	 */
+	private static class ReadMapBenchmark extends Benchmark
+	{
+		private byte data[];
+
+		/**
+		 * Creates the benchmark.
+		 */
+		ReadMapBenchmark()
+		{
+			super("mapfactory.readMap", MAP_SIZES);
+		}
+
+		/**
+		 * Overrides the setUpTrial method in Benchmark, generates the map data.
+		 */
+		protected void setUpTrial(int size) throws Exception
+		{
+			data = generateMap(size, new Random(SEED));
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, parses the map.
+		 */
+		protected long run()
+		{
+			try
+			{
+				return MapFactory.readMap(new ByteArrayInputStream(data)).getTiles().size();
+			}
+			catch(MapException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * AnimationFactory.countFrames per call, which reads the sprite sheet, slices it into frames and mirrors them like the first
+	 * getAnimations, without the cache or packing the frames into the TextureAtlas, which is never freed.
+	 * The parameter is the frame size of the sprite sheet.
+	 */
+	private static class AnimationLoadBenchmark extends Benchmark
+	{
+		private String path;
+		private int frameSize;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		AnimationLoadBenchmark()
+		{
+			super("animationfactory.countFrames", ANIMATION_FRAME_SIZES);
+		}
+
+		/**
+		 * Overrides the setUpTrial method in Benchmark, picks the sprite sheet.
+		 */
+		protected void setUpTrial(int size) throws Exception
+		{
+			path = getSpriteSheet(size);
+			frameSize = size;
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, reads and slices the sprite sheet.
+		 */
+		protected long run()
+		{
+			return AnimationFactory.countFrames(path, true, frameSize, frameSize);
+		}
+	}
+
+	/**
+	 * AnimationFactory.cloneAnimations of an already loaded sprite sheet per call, which is what getAnimations does on a cache hit.
+	 * The parameter is the frame size of the sprite sheet.
+	 */
+	private static class AnimationCloneBenchmark extends Benchmark
+	{
+		private ArrayList<Animation> anims;
+
+		/**
+		 * Creates the benchmark.
+		 */
+		AnimationCloneBenchmark()
+		{
+			super("animationfactory.cloneAnimations", ANIMATION_FRAME_SIZES);
+		}
+
+		/**
+		 * Overrides the setUpTrial method in Benchmark, loads the sprite sheet.
+		 */
+		protected void setUpTrial(int frameSize) throws Exception
+		{
+			anims = AnimationFactory.getAnimations(getSpriteSheet(frameSize), true, frameSize, frameSize, 0.25);
+		}
+
+		/**
+		 * Overrides the run method in Benchmark, clones the Animations.
+		 */
+		protected long run()
+		{
+			return AnimationFactory.cloneAnimations(anims).size();
+		}
+	}
+
+	/**
+	 * Runs the benchmarks and prints the results.
+	 * @param args "-quick" for fewer and shorter iterations, the rest select the benchmarks to run by the start of their names.
+	 */
+	public static void main(String args[])
+	{
+		Benchmark benchmarks[] = {new HeightBenchmark(), new ModelBenchmark(), new ZombieBenchmark(), new SchedulerBenchmark(), new ParallelBenchmark(), new HordeBenchmark(), new FlowFieldBenchmark(), new RegistryBenchmark(), new BulletBenchmark(),
+								new CameraBenchmark("camera.render"), new DrawBenchmark(), new ReadMapBenchmark(), new AnimationLoadBenchmark(), new AnimationCloneBenchmark()};
+
+		int warmups = 5, iterations = 10;
+		long iterationTime = 500000000L;
+		ArrayList<String> selected = new ArrayList<String>();
+		for(String arg : args)
+		{
+			if(arg.equals("-quick"))
+			{
+				warmups = 2;
+				iterations = 5;
+				iterationTime = 100000000L;
+			}
+			else
+				selected.add(arg);
+		}
+
+		System.out.println(String.format("%-32s %8s %14s %12s", "Benchmark", "Param", "ns/op", "+-"));
+		for(Benchmark benchmark : benchmarks)
+		{
+			if(!isSelected(benchmark.getName(), selected))
+				continue;
+
+			for(int param : benchmark.getParams())
+			{
+				try
+				{
+					Benchmark.Result result = benchmark.measure(param, warmups, iterations, iterationTime);
+					System.out.println(String.format("%-32s %8d %14.1f %12.1f", benchmark.getName(), param, result.getMean(), result.getError()));
+				}
+				catch(Exception e)
+				{
+					System.out.println("ERR: Couldn't run benchmark " + benchmark.getName() + ":\n" + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if a benchmark should be run.
+	 * @param name The name of the benchmark.
+	 * @param selected The starts of the names of the benchmarks to run, empty for all of them.
+	 * @return True if the benchmark should be run.
+	 */
+	private static boolean isSelected(String name, ArrayList<String> selected)
+	{
+		if(selected.isEmpty())
+			return true;
+
+		for(String start : selected)
+			if(name.startsWith(start))
+				return true;
+
+		return false;
+	}
+}
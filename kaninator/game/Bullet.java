@@ -3,11 +3,12 @@
  */
 package kaninator.game;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Random;
 
 import kaninator.io.MapFactory;
 import kaninator.mechanics.DynamicObject;
+import kaninator.mechanics.SpatialIndex;
 
 /**
  * Used to represent the projectiles in the game. They contain DynamicObjects 
@@ -22,49 +23,94 @@ public class Bullet
 	private static final int BULLET_RESOLUTION = 6;
 	private Map map;
 	private DynamicObject model, shadow;
+	private ArrayList<Zombie> candidates;
+	private Zombie hit;
+	private int hitId;
 	private double vel_x, vel_y, vel_height;
 	private boolean done;
 	
 	/**
-	 * Constructs a Bullet object, initializes the velocities and the DynamicObjects associated with it.
-	 * For internal use only, should only be called from the Gun class.
+	 * Constructs a Bullet object with the DynamicObjects associated with it. The Bullet is done until it is fired.
+	 * For internal use only, should only be called from the Gun class, which keeps the Bullets in a Pool.
 	 * @param _model The DynamicObject used to represent the projectile itself.
 	 * @param _shadow The DynamicObject used to represent the shadow of the projectile.
 	 * @param _map The map that will be used for height checking to see if the projectile collides with StaticObjects.
+	 * @see kaninator.game.Bullet#fire(DynamicObject, double, double, double, Random)
+	 */
+	protected Bullet(DynamicObject _model, DynamicObject _shadow, Map _map)
+	{
+		model = _model;
+		shadow = _shadow;
+		map = _map;
+		candidates = new ArrayList<Zombie>();
+		
+		vel_x = vel_y = vel_height = 0.0;
+		done = true;
+		hit = null;
+		hitId = -1;
+	}
+	
+	/**
+	 * Fires the Bullet from the gun, initializes the velocities and the positions of the DynamicObjects.
+	 * For internal use only, should only be called from the Gun class.
 	 * @param wielder The DynamicObject that wields the gun, used to initialize the projectiles coordinates.
 	 * @param _vel_x The velocity on the internal, isometric, x-axis.
 	 * @param _vel_y The velocity on the internal, isometric, y-axis.
 	 * @param _vel_height The vertical velocity.
+	 * @param random The random number generator of the game, used to spread the starting positions.
 	 */
-	protected Bullet(DynamicObject _model, DynamicObject _shadow, Map _map, DynamicObject wielder, double _vel_x, double _vel_y,  double _vel_height)
+	protected void fire(DynamicObject wielder, double _vel_x, double _vel_y,  double _vel_height, Random random)
 	{
-		double offset_x = _vel_x * (Math.random() - 0.5);
-		double offset_y = _vel_y * (Math.random() - 0.5);
+		double offset_x = _vel_x * (random.nextDouble() - 0.5);
+		double offset_y = _vel_y * (random.nextDouble() - 0.5);
 		
-		model = _model;
-		map = _map;
-		
-		shadow = _shadow;
 		shadow.setPos(wielder.get_x() + offset_x, wielder.get_y() + offset_y);
 		shadow.setHeight(wielder.getHeight());
 		model.setPos(wielder.get_x() + offset_x, wielder.get_y() + offset_y);
 		model.setHeight(wielder.getHeight());
+		shadow.forgetPosition();
+		model.forgetPosition();
 		
 		vel_x = _vel_x;
 		vel_y = _vel_y;
 		vel_height = _vel_height;
 		
 		done = false;
+		hit = null;
+		hitId = -1;
 	}
 	
 	/**
 	 * Observes if the projectile has hit a StaticObject, 
 	 * otherwise it advances the projectiles position iteratively to check
-	 * if it collides with a DynamicObject. If the projectile hits one of the Zombies it will call the kill method on it.
-	 * @param targets The List of Zombies targeted by the projectiles which we will perform collision detection against.
+	 * if it collides with a DynamicObject. If the projectile hits one of the Zombies it is stored, the Zombie itself isn't
+	 * changed, so all the projectiles can be observed in parallel.
+	 * @param targets The index of the Zombies targeted by the projectiles which we will perform collision detection against.
 	 * @see kaninator.game.Zombie
+	 * @see kaninator.game.Bullet#getHit()
+	 */
+	public void observe(SpatialIndex<Zombie> targets)
+	{
+		observe(targets, null);
+	}
+	
+	/**
+	 * Observes the projectile the same way as observe(SpatialIndex), with the Zombies stored in a Horde.
+	 * The id of the Zombie the projectile hits is stored, the Horde itself isn't changed.
+	 * @param horde The horde targeted by the projectiles.
+	 * @see kaninator.game.Bullet#getHitId()
+	 */
+	public void observe(Horde horde)
+	{
+		observe(null, horde);
+	}
+	
+	/**
+	 * Moves the projectile and checks it for collisions, with either an index of Zombies or a Horde.
+	 * @param targets The index of the Zombies, null if the Zombies are in a Horde.
+	 * @param horde The horde of Zombies, null if they are in an index.
 	 */
-	public void observe(LinkedList<Zombie> targets)
+	private void observe(SpatialIndex<Zombie> targets, Horde horde)
 	{	
 		for(int i = 0; i < BULLET_RESOLUTION; i++)
 		{
@@ -77,14 +123,25 @@ public class Bullet
 			model.setPos(model.get_x() + vel_x / BULLET_RESOLUTION, model.get_y() + vel_y / BULLET_RESOLUTION);
 			model.setHeight(model.getHeight() + vel_height / BULLET_RESOLUTION);	
 			
-			for(Iterator<Zombie> it = targets.iterator(); it.hasNext();)
+			if(horde != null)
+			{
+				hitId = horde.hitBy(model);
+				if(hitId >= 0)
+				{
+					done = true;
+					return;
+				}
+				continue;
+			}
+			
+			targets.queryRadius(model.get_x(), model.get_y(), model.getRadius() + targets.getMaxRadius(), candidates);
+			for(Zombie target : candidates)
 			{
-				Zombie target = it.next();
 				DynamicObject targetObj = target.getMainObject();
 				if(model.collide(targetObj))
 				{
 					done = true;
-					target.kill();
+					hit = target;
 					return;
 				}
 			}
@@ -93,6 +150,24 @@ public class Bullet
 		shadow.setHeight(map.getHeight(shadow));
 	}
 	
+	/**
+	 * Getter for the Zombie the projectile hit during the latest call to observe().
+	 * @return The Zombie that was hit, or null if the projectile didn't hit any.
+	 */
+	public Zombie getHit()
+	{
+		return hit;
+	}
+	
+	/**
+	 * Getter for the id of the Zombie in a Horde the projectile hit during the latest call to observe(Horde).
+	 * @return The id of the Zombie that was hit, or -1 if the projectile didn't hit any.
+	 */
+	public int getHitId()
+	{
+		return hitId;
+	}
+	
 	
 	/**
 	 * Used to check if the projectile still is active after the observe action. 
@@ -0,0 +1,482 @@
+/**
+ * Contains all the high-level game functions and implements the actual gameplay.
+ */
+package kaninator.game;
+
+import kaninator.graphics.BitmapText;
+import kaninator.mechanics.GUI;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Measures how long the phases of the game loop take.
+ * Every frame is started with begin(), each phase is closed with mark() and the frame is closed with end().
+ * The times are kept in preallocated ring buffers holding the last CAPACITY frames, so profiling doesn't allocate anything.
+ * While the profiler is enabled, the 50th, 95th and 99th percentiles of every phase are shown in the top right
+ * corner of the GUI. When it is disabled the methods return immediately.<br />
+ * When the ticks run on a simulation thread of their own, they are measured with the simulation profiler of this one,
+ * which has its own ring buffers and is enabled and disabled along with it. Its tick phases are then shown in place of
+ * the ones of this profiler, and its ticks are written to the same file. The phases of a frame are summed up separately
+ * and copied to the ring buffers in one go when the frame ends, so the ring buffers can be read from another thread.
+ * @author phedman
+ * @see kaninator.game.Game
+ */
+public class FrameProfiler
+{
+	public static final int SPAWN = 0, OBSERVE = 1, RENDER = 2, RENDER_GUI = 3, GORE = 4, BULLETS = 5, ACT = 6, PLAYER = 7, FRAME = 8;
+	private static final String PHASE_NAMES[] = {"spawn", "observe", "render", "gui", "gore", "bullets", "act", "player", "frame"};
+	private static final int NUM_PHASES = PHASE_NAMES.length;
+	private static final int CAPACITY = 1024;
+	private static final int OVERLAY_INTERVAL = 30;
+	private static final double PERCENTILES[] = {0.50, 0.95, 0.99};
+
+	private GUI gui;
+	private String thread;
+	private FrameProfiler simulation;
+	private volatile boolean enabled;
+	private boolean attached, recording;
+	private long samples[][];
+	private long current[];
+	private long sorted[];
+	private long percentiles[];
+	private long frameStart, phaseStart;
+	private int cursor, count;
+	private long frames;
+	private BitmapText lines[];
+
+	/**
+	 * Creates a profiler with empty ring buffers, along with its simulation profiler.
+	 * @param _gui The GUI the percentiles are shown on, null to not show them.
+	 * @param _enabled True if the profiler should start out enabled.
+	 */
+	public FrameProfiler(GUI _gui, boolean _enabled)
+	{
+		this(_gui, _enabled, "render");
+		simulation = new FrameProfiler(null, _enabled, "simulation");
+
+		//One line for every phase and one for the whole tick of the simulation
+		lines = new BitmapText[NUM_PHASES + 2];
+		lines[0] = new BitmapText("p50 / p95 / p99 ms", "Impact", 12, Font.PLAIN, Color.YELLOW);
+		for(int i = 1; i < lines.length; i++)
+			lines[i] = new BitmapText("", "Impact", 12, Font.PLAIN, Color.YELLOW);
+		updateOverlay();
+	}
+
+	/**
+	 * Creates a profiler with empty ring buffers, without a simulation profiler or any lines for the GUI.
+	 * @param _gui The GUI the percentiles are shown on, null to not show them.
+	 * @param _enabled True if the profiler should start out enabled.
+	 * @param _thread The name of the thread the profiler measures, written to the file.
+	 */
+	private FrameProfiler(GUI _gui, boolean _enabled, String _thread)
+	{
+		gui = _gui;
+		thread = _thread;
+		simulation = null;
+		enabled = _enabled;
+		attached = recording = false;
+		samples = new long[NUM_PHASES][CAPACITY];
+		current = new long[NUM_PHASES];
+		sorted = new long[CAPACITY];
+		percentiles = new long[PERCENTILES.length];
+		cursor = count = 0;
+		frames = 0;
+	}
+
+	/**
+	 * Gets the profiler the ticks of the simulation thread are measured with.
+	 * It is enabled and disabled along with this one, and its tick phases are shown and written to the file with the frames of this one.
+	 * @return The simulation profiler, null if this is one.
+	 */
+	public FrameProfiler getSimulation()
+	{
+		return simulation;
+	}
+
+	/**
+	 * Checks if the profiler is recording.
+	 * @return True if the profiler is enabled.
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Turns the profiler and its simulation profiler on or off, and shows or hides the percentiles accordingly.
+	 * Takes effect on the next frame or tick.
+	 */
+	public void toggle()
+	{
+		enabled = !enabled;
+		if(simulation != null)
+			simulation.enabled = enabled;
+		if(attached)
+		{
+			detach();
+			attach();
+		}
+	}
+
+	/**
+	 * Shows the percentiles on the GUI if the profiler is enabled. Called when the game loop is entered.
+	 */
+	public void attach()
+	{
+		attached = true;
+		if(!enabled || gui == null)
+			return;
+
+		updateOverlay();
+		for(BitmapText line : lines)
+			gui.addToSection(line, 2, 0);
+	}
+
+	/**
+	 * Removes the percentiles from the GUI. Called when the game loop is left.
+	 */
+	public void detach()
+	{
+		attached = false;
+		if(gui != null)
+			gui.clearSection(2, 0);
+	}
+
+	/**
+	 * Starts a new frame.
+	 */
+	public void begin()
+	{
+		recording = enabled;
+		if(!recording)
+			return;
+
+		for(int phase = 0; phase < NUM_PHASES; phase++)
+			current[phase] = 0;
+		frameStart = phaseStart = System.nanoTime();
+	}
+
+	/**
+	 * Adds the time since the previous mark, or the start of the frame, to a phase.
+	 * A phase can be marked several times during a frame, the times are summed up.
+	 * @param phase The phase that just ended.
+	 */
+	public void mark(int phase)
+	{
+		if(!recording)
+			return;
+
+		long now = System.nanoTime();
+		current[phase] += now - phaseStart;
+		phaseStart = now;
+	}
+
+	/**
+	 * Ends the frame, stores the time since begin() as the time of the whole frame and refreshes the percentiles now and then.
+	 */
+	public void end()
+	{
+		if(!recording)
+			return;
+
+		recording = false;
+		current[FRAME] = System.nanoTime() - frameStart;
+		store();
+
+		if(frames % OVERLAY_INTERVAL == 0 && attached)
+			updateOverlay();
+	}
+
+	/**
+	 * Copies the times of the frame that just ended to the ring buffers.
+	 */
+	private synchronized void store()
+	{
+		for(int phase = 0; phase < NUM_PHASES; phase++)
+			samples[phase][cursor] = current[phase];
+		cursor = (cursor + 1) % CAPACITY;
+		count = Math.min(count + 1, CAPACITY);
+		frames++;
+	}
+
+	/**
+	 * Checks if any frames have been recorded.
+	 * @return True if at least one frame has ended while the profiler was enabled.
+	 */
+	public synchronized boolean hasFrames()
+	{
+		return count > 0;
+	}
+
+	/**
+	 * Calculates a percentile of the recorded times of a phase.
+	 * @param phase The phase.
+	 * @param fraction The percentile as a fraction, 0.99 for the 99th percentile.
+	 * @return The time in nanoseconds, 0 if no frames have been recorded.
+	 */
+	public synchronized long getPercentile(int phase, double fraction)
+	{
+		sortPhase(phase);
+		return percentile(fraction);
+	}
+
+	/**
+	 * Calculates the percentiles shown on the GUI for a phase.
+	 * @param phase The phase.
+	 * @param values The array the times are stored in, in nanoseconds, one for every percentile.
+	 */
+	private synchronized void getPercentiles(int phase, long values[])
+	{
+		sortPhase(phase);
+		for(int i = 0; i < PERCENTILES.length; i++)
+			values[i] = percentile(PERCENTILES[i]);
+	}
+
+	/**
+	 * Writes the recorded frames to a CSV file, oldest first, followed by the ticks of the simulation profiler.
+	 * One row per frame or tick, starting with the name of the thread it was measured on, one column per phase, in microseconds.
+	 * Does nothing if no frames have been recorded.
+	 * @param path The path of the file.
+	 */
+	public void dump(String path)
+	{
+		boolean ticks = simulation != null && simulation.hasFrames();
+		if(!hasFrames() && !ticks)
+			return;
+
+		PrintWriter file;
+		try
+		{
+			file = new PrintWriter(new File(path));
+		}
+		catch(FileNotFoundException e)
+		{
+			System.out.println("ERR: Could not create/edit profile file: " + e);
+			return;
+		}
+
+		StringBuilder row = new StringBuilder("thread,frame");
+		for(String name : PHASE_NAMES)
+			row.append(',').append(name).append("_us");
+		file.println(row);
+
+		writeRows(file, row);
+		if(ticks)
+			simulation.writeRows(file, row);
+
+		file.close();
+	}
+
+	/**
+	 * Writes the recorded frames to a CSV file, oldest first.
+	 * @param file The file.
+	 * @param row The buffer the rows are built in.
+	 */
+	private synchronized void writeRows(PrintWriter file, StringBuilder row)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			int index = (cursor - count + i + CAPACITY) % CAPACITY;
+			row.setLength(0);
+			row.append(thread).append(',').append(frames - count + i);
+			for(int phase = 0; phase < NUM_PHASES; phase++)
+				row.append(',').append(samples[phase][index] / 1000);
+			file.println(row);
+		}
+	}
+
+	/**
+	 * Checks if a phase is a part of the tick, rather than the rendering.
+	 * @param phase The phase.
+	 * @return True if the phase is measured on the simulation thread when the ticks run on one.
+	 */
+	private static boolean isTickPhase(int phase)
+	{
+		return phase != RENDER && phase != RENDER_GUI && phase != FRAME;
+	}
+
+	/**
+	 * Rewrites the lines of the overlay with the current percentiles, without creating any Strings.
+	 * The tick phases, and the whole tick, are taken from the simulation profiler once it has recorded any ticks.
+	 */
+	private void updateOverlay()
+	{
+		boolean ticks = simulation.hasFrames();
+		for(int phase = 0; phase < NUM_PHASES; phase++)
+		{
+			FrameProfiler source = (ticks && isTickPhase(phase)) ? simulation : this;
+			BitmapText line = lines[phase + 1];
+			line.clear();
+			if(source == simulation)
+				line.append("sim ");
+			line.append(PHASE_NAMES[phase]).append(": ");
+			source.getPercentiles(phase, percentiles);
+			appendPercentiles(line, percentiles);
+		}
+
+		BitmapText line = lines[NUM_PHASES + 1];
+		line.clear();
+		if(ticks)
+		{
+			line.append("sim tick: ");
+			simulation.getPercentiles(FRAME, percentiles);
+			appendPercentiles(line, percentiles);
+		}
+	}
+
+	/**
+	 * Appends the percentiles of a phase, separated by slashes.
+	 * @param text The text to append to.
+	 * @param values The times in nanoseconds.
+	 */
+	private static void appendPercentiles(BitmapText text, long values[])
+	{
+		for(int i = 0; i < values.length; i++)
+		{
+			if(i > 0)
+				text.append(" / ");
+			appendMillis(text, values[i]);
+		}
+	}
+
+	/**
+	 * Copies the recorded times of a phase to the sorting buffer and sorts them.
+	 * @param phase The phase.
+	 */
+	private void sortPhase(int phase)
+	{
+		System.arraycopy(samples[phase], 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+	}
+
+	/**
+	 * Picks a percentile from the sorting buffer using the nearest rank.
+	 * @param fraction The percentile as a fraction.
+	 * @return The time in nanoseconds, 0 if no frames have been recorded.
+	 */
+	private long percentile(double fraction)
+	{
+		if(count == 0)
+			return 0;
+
+		int rank = (int)Math.ceil(fraction * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, rank))];
+	}
+
+	/**
+	 * Appends a time in milliseconds with two decimals.
+	 * @param text The text to append to.
+	 * @param nanos The time in nanoseconds.
+	 */
+	private static void appendMillis(BitmapText text, long nanos)
+	{
+		long hundredths = nanos / 10000;
+		text.append(hundredths / 100).append('.');
+		if(hundredths % 100 < 10)
+			text.append('0');
+		text.append(hundredths % 100);
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			FrameProfiler profiler = new FrameProfiler(null, false);
+			if(profiler.getPercentile(FRAME, 0.5) != 0)
+				failedTest("Percentile not 0 without any frames.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing disabled profiler..");
+			profiler.begin();
+			profiler.mark(SPAWN);
+			profiler.end();
+			if(profiler.count != 0)
+				failedTest("A frame was recorded while disabled.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing percentiles..");
+			profiler.enabled = true;
+			for(int i = 0; i < CAPACITY + 100; i++)
+			{
+				profiler.begin();
+				profiler.mark(SPAWN);
+				profiler.end();
+				//Replace the measured time with a known one
+				profiler.samples[FRAME][(profiler.cursor + CAPACITY - 1) % CAPACITY] = (i % 100 + 1) * 1000000L;
+			}
+			if(profiler.count != CAPACITY)
+				failedTest("The ring buffer didn't wrap around.");
+			long p50 = profiler.getPercentile(FRAME, 0.50), p99 = profiler.getPercentile(FRAME, 0.99);
+			if(p50 < 45000000L || p50 > 55000000L || p99 < 98000000L || p99 > 100000000L)
+				failedTest("Invalid percentiles: " + p50 + ", " + p99);
+			if(profiler.getPercentile(SPAWN, 0.99) < 0 || profiler.getPercentile(SPAWN, 0.99) > profiler.getPercentile(FRAME, 1.0))
+				failedTest("Invalid phase time.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the simulation profiler..");
+			profiler = new FrameProfiler(null, false);
+			final FrameProfiler simulation = profiler.getSimulation();
+			if(simulation == null || simulation.isEnabled() || simulation.getSimulation() != null)
+				failedTest("Invalid simulation profiler.");
+			profiler.toggle();
+			if(!simulation.isEnabled())
+				failedTest("The simulation profiler wasn't enabled along with the profiler.");
+			Thread ticks = new Thread()
+			{
+				public void run()
+				{
+					for(int i = 0; i < CAPACITY * 4; i++)
+					{
+						simulation.begin();
+						simulation.mark(SPAWN);
+						simulation.end();
+					}
+				}
+			};
+			ticks.start();
+			while(ticks.isAlive())
+				profiler.updateOverlay();
+			ticks.join();
+			if(profiler.hasFrames() || simulation.count != CAPACITY || simulation.frames != CAPACITY * 4)
+				failedTest("The ticks weren't recorded by the simulation profiler.");
+			profiler.updateOverlay();
+			if(profiler.lines[NUM_PHASES + 1].length() == 0 || profiler.lines[SPAWN + 1].charAt(1) != 'i' || profiler.lines[RENDER + 1].charAt(0) != 'r')
+				failedTest("The ticks aren't shown on the overlay.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the overlay text..");
+			BitmapText text = new BitmapText("", "Impact", 12, Font.PLAIN, Color.YELLOW);
+			appendMillis(text, 3051234L);
+			String expected = "3.05";
+			for(int i = 0; i < expected.length(); i++)
+				if(text.length() != expected.length() || text.charAt(i) != expected.charAt(i))
+					failedTest("Invalid time format.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -9,8 +9,7 @@ import kaninator.io.*;
 import kaninator.sound.*;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Random;
 
 import java.awt.Color;
 import java.awt.Font;
@@ -27,20 +26,38 @@ public class Game extends GameState
 	private static final int MAX_ZOMBIES = 66;
 	private static final int TIME_POINTS_RATIO = 25;
 	private static final double ZOMBIE_SPAWN_PROBABILITY = 0.85;
+	private static final int MAX_CATCH_UP = 5;
+	private static final int STATUS_HP = 0, STATUS_SCORE = 1, NUM_STATUS = 2;
 	
 	private ArrayList<Animation> zombAnim;
 	private SoundClip squirt;
 
-	private LinkedList<Zombie> enemies;
-	private LinkedList<DynamicObject> enemyList;
-	private LinkedList<DynamicObject> objects;
+	private ZombieScheduler enemies;
+	private Pool<Zombie> zombiePool;
+	private Horde horde;
+	private int maxZombies;
+	private ArrayList<Zombie> hits, killed;
+	private EntityRegistry entities;
 	
 	private Player player;
 	private Canvas canvas;
 	private Map map;
+	private FlowField flowField;
 	private Gun gun;
 	private GoreFactory gore;
-	private Text hud;
+	private BitmapText hud;
+	private int hudHp, hudScore;
+	private FrameProfiler profiler, simulationProfiler;
+	private SnapshotExchange exchange;
+	private volatile boolean running, replayFinished;
+	private volatile int result;
+	private ParallelUpdater updater;
+	private boolean profilerKeyDown;
+	private int tickRate;
+	private Random random;
+	private InputState input;
+	private InputRecorder recorder;
+	private InputReplay replay;
 	
 	private int score;
 	private long framesAlive;
@@ -49,17 +66,35 @@ public class Game extends GameState
 	 * Initializes the game.r
 	 * Loads the map using MapFactory, creates animations for the player and the
 	 * zombies using AnimationFactory and positions them randomly.
+	 * The Zombies, like the Bullets and the Gore, are created up front and reused from a Pool.
 	 * @param _camera The camera class used to render the internal objects to a 2 dimensional screen.
 	 * @param _gui The gui class used for overlays.
 	 * @param _keyboard The keyboard class for key input.
 	 * @param _mouse Mouse input.
+	 * @param _profiler The profiler measuring the phases of the game loop.
+	 * @param _updater The updater the Zombies, Bullets and Gore are updated in parallel with.
+	 * @param seed The seed of the random number generator all the randomness in the game comes from.
+	 * Two games with the same seed and the same input play out exactly the same.
+	 * @param mapPath The path to the map file.
 	 * @see kaninator.graphics.AnimationFactory
 	 * @see kaninator.io.MapFactory
 	 */
-	public Game(Camera _camera, GUI _gui, Keyboard _keyboard, Mouse _mouse, Canvas _canvas, String mapPath) throws GameException
+	public Game(Camera _camera, GUI _gui, Keyboard _keyboard, Mouse _mouse, Canvas _canvas, FrameProfiler _profiler, ParallelUpdater _updater, long seed, String mapPath) throws GameException
 	{
 		super(_camera, _gui, _keyboard, _mouse);
 		canvas = _canvas;
+		profiler = _profiler;
+		simulationProfiler = profiler.getSimulation();
+		exchange = new SnapshotExchange(NUM_STATUS);
+		running = replayFinished = false;
+		result = Kaninator.MAIN_MENU;
+		updater = _updater;
+		profilerKeyDown = false;
+		tickRate = Kaninator.TICK_RATE;
+		random = new Random(seed);
+		input = new InputState();
+		recorder = null;
+		replay = null;
 		score = 0;
 		framesAlive = 0;
 		
@@ -67,6 +102,7 @@ public class Game extends GameState
 		try
 		{
 			map = MapFactory.readMap(mapPath);
+			flowField = new FlowField(map.getTiles());
 			ArrayList<Animation> playerAnim = AnimationFactory.getAnimations("/resources/theSheet.png", true, 64, 64, 0.30);
 			ArrayList<Animation> gunAnim = AnimationFactory.getAnimations("/resources/gunSheet.png", true, 32, 32, 0.0);
 			ArrayList<Animation> crosshairAnim = AnimationFactory.createAnimations(ImageFactory.getImage("/resources/crosshair.png"));
@@ -79,10 +115,11 @@ public class Game extends GameState
 			squirt = SoundFactory.getClip("/resources/squirt.wav");
 			
 			//create objects
-			objects = new LinkedList<DynamicObject>();
-			gun = new Gun(gunAnim, shotgun, map, bullet, objects, 35.0);
-			gore = new GoreFactory(map, objects, headGore, boneGore);//TODO: add parameters
+			entities = new EntityRegistry();
+			gun = new Gun(gunAnim, shotgun, map, bullet, entities, 35.0, random);
+			gore = new GoreFactory(map, entities, headGore, boneGore, random);
 			player = new Player(playerAnim, crosshairAnim, ow, map, gun, 0, 0, 5.0);
+			entities.addAll(player.getDynamicObjects(), EntityRegistry.PLAYER);
 		}
 		catch(ModelException e)
 		{
@@ -93,12 +130,93 @@ public class Game extends GameState
 			throw new GameException("Load the map:\n" + e);
 		}
 
-		hud = new Text("HP: " + player.getHp() + " Score: " + score, "Impact", 16, Font.PLAIN, Color.RED);
+		hud = new BitmapText("", "Impact", 16, Font.PLAIN, Color.RED);
+		updateHud(player.getHp(), score);
 		
 		//create enemies
 		zombAnim = AnimationFactory.getAnimations("/resources/zombSheet.png", true, 64, 64, 0.25);
-		enemies = new LinkedList<Zombie>();
-		enemyList = new LinkedList<DynamicObject>();
+		try
+		{
+			zombiePool = new Pool<Zombie>("zombies", new Pool.Factory<Zombie>()
+			{
+				public Zombie create() throws ModelException
+				{
+					return new Zombie(AnimationFactory.cloneAnimations(zombAnim), map, flowField, squirt, player.getMainObject(), 0.0, 0.0, 5.0);
+				}
+			}, MAX_ZOMBIES);
+		}
+		catch(ModelException e)
+		{
+			throw new GameException("Couldn't create zombies:\n" + e);
+		}
+		enemies = new ZombieScheduler(player.getMainObject());
+		hits = new ArrayList<Zombie>();
+		killed = new ArrayList<Zombie>();
+		horde = null;
+		maxZombies = MAX_ZOMBIES;
+	}
+	
+	/**
+	 * Stores the Zombies in a Horde instead of Zombie objects. The Horde keeps them in arrays and updates them in plain loops,
+	 * so the game can have thousands of them. The Pool of Zombie objects is dropped, it isn't used with a Horde.
+	 * Has to be called before the first tick.
+	 * @param _maxZombies The number of Zombies the game can have at most, instead of MAX_ZOMBIES.
+	 * @throws GameException If the horde couldn't be created.
+	 * @see kaninator.game.Horde
+	 */
+	public void useHorde(int _maxZombies) throws GameException
+	{
+		try
+		{
+			horde = new Horde(zombAnim, map, flowField, player.getMainObject(), 5.0, _maxZombies);
+		}
+		catch(ModelException e)
+		{
+			throw new GameException("Couldn't create the horde:\n" + e);
+		}
+		maxZombies = _maxZombies;
+		zombiePool = null;
+	}
+	
+	/**
+	 * Records the input of every frame from now on.
+	 * @param _recorder The recorder the input is written to, null to stop recording.
+	 * @see kaninator.io.InputRecorder
+	 */
+	public void setRecorder(InputRecorder _recorder)
+	{
+		recorder = _recorder;
+	}
+	
+	/**
+	 * Reads the input of every frame from a recording instead of the keyboard and the mouse, until the recording ends.
+	 * The game should have been created with the seed of the recording.
+	 * @param _replay The recording, null to go back to live input.
+	 * @see kaninator.io.InputReplay
+	 */
+	public void setReplay(InputReplay _replay)
+	{
+		replay = _replay;
+	}
+	
+	/**
+	 * Sets how many times per second doState() updates the game. All the speeds in the game are per tick,
+	 * so a higher tick rate also makes the game run faster. The frames are rendered independently of the ticks.
+	 * @param _tickRate The number of ticks per second, values below 1 are ignored.
+	 */
+	public void setTickRate(int _tickRate)
+	{
+		if(_tickRate > 0)
+			tickRate = _tickRate;
+	}
+	
+	/**
+	 * Checks if there is input for the next frame. There always is, unless a replay has ended.
+	 * @return False if a replay has ended.
+	 */
+	public boolean hasInput()
+	{
+		return replay == null || replay.hasNext();
 	}
 	
 	/**
@@ -111,110 +229,386 @@ public class Game extends GameState
 	}
 	
 	/**
-	 *  The game loop. Sends the DynamicObjects (Player & NonPlayerObjects) to the camera,
-	 *  enters the game loop (update objects -> update camera -> update player -> change the
-	 *  player coordinates -> loop). After the game loop is done it clears up the objects from
-	 *  the camera.
-	 *  Returns to the main menu if the player cancels the game, otherwise the high score menu.
+	 *  The game loop. Hands the map to the camera and starts a simulation thread, which updates the game
+	 *  at a fixed tick rate and publishes a WorldSnapshot after the ticks, while this thread renders the newest
+	 *  snapshot. The simulation and the rendering consequently run at the same time and a slow frame doesn't
+	 *  hold up the input or the zombies. Every frame is interpolated between the last two ticks of its snapshot,
+	 *  according to the time since the snapshot was published, and at most Kaninator.MAX_FPS frames are rendered per second.
+	 *  Both threads stop when the player cancels the game, the player dies or a replay ends.
+	 *  F3 toggles the FrameProfiler, which measures the rendering of the frames while it is enabled,
+	 *  and its simulation profiler along with it, which measures the ticks on the simulation thread.
+	 *  Returns to the main menu if the player cancels the game or a replay ends, otherwise the high score menu.
+	 *  The game continues with live input if it's resumed after a replay has ended.
+	 *  @see kaninator.game.Game#simulate()
+	 *  @see kaninator.game.Game#render(WorldSnapshot, double)
 	 */
 	public int doState()
 	{
-		int retValue = Kaninator.MAIN_MENU;
-		canvas.hideCursor(true);
-		gui.addToSection(hud, 0, 0);
+		enter();
 		
-		camera.setPlayerObjects(player.getDynamicObjects());
-		camera.setEnemyObjects(enemyList);
-		camera.setOtherObjects(objects);
-		camera.setTiles(map.getTiles());
+		running = true;
+		replayFinished = false;
+		result = Kaninator.MAIN_MENU;
+		Thread simulation = new Thread("Simulation")
+		{
+			public void run()
+			{
+				simulate();
+			}
+		};
+		simulation.start();
 		
-		long oldTime = System.currentTimeMillis();
-		while(true)
+		long tickLength = 1000000000L / tickRate;
+		long frameLength = 1000000000L / Kaninator.MAX_FPS;
+		while(running)
 		{
 			if(keyboard.isPressed(KeyEvent.VK_ESCAPE))
 				break;
-			
-			spawnZombies();
-			
-			gun.observeBullets(enemies);
-			for(Iterator<Zombie> i = enemies.iterator(); i.hasNext();)
+			if(keyboard.isPressed(KeyEvent.VK_F3) != profilerKeyDown)
 			{
-				Zombie npo = i.next();
-				npo.observe();
+				profilerKeyDown = !profilerKeyDown;
+				if(profilerKeyDown)
+					profiler.toggle();
 			}
 			
-			camera.follow(player.getMainObject());
-			camera.render();
-			camera.renderGUI();
-			
-			gore.updateGore();
-			gun.updateBullets();
-			for(Iterator<Zombie> i = enemies.iterator(); i.hasNext();)
+			long now = System.nanoTime();
+			WorldSnapshot snapshot = exchange.consume();
+			if(snapshot.getTick() >= 0)
 			{
-				Zombie npo = i.next();
-				if(npo.act(enemies))
-				{
-					gore.gorify(npo.getMainObject());
-					score += framesAlive / TIME_POINTS_RATIO;
-					i.remove();
-					for(DynamicObject obj : npo.getDynamicObjects())
-						enemyList.remove(obj);
-				}
+				profiler.begin();
+				render(snapshot, Math.min(1.0, (double)(now - snapshot.getTime()) / tickLength));
+				profiler.end();
 			}
 			
-			if(player.update(enemies))
+			try 
 			{
-				retValue = Kaninator.GAME_OVER;
-				break;
+				long sleepTime = (frameLength - (System.nanoTime() - now)) / 1000000L;
+				if(sleepTime > 0)
+					Thread.sleep(sleepTime);
+			} 
+			catch(InterruptedException e)
+			{
+				System.out.println("Frame sleep interrupted: " + e);
 			}
+		}
+		
+		running = false;
+		try
+		{
+			simulation.join();
+		}
+		catch(InterruptedException e)
+		{
+			System.out.println("ERR: Interrupted while stopping the simulation: " + e);
+		}
+		if(replayFinished)
+		{
+			System.out.println("Replay finished.");
+			replay = null;
+		}
+		
+		leave();
+		return result;
+	}
+	
+	/**
+	 * Hands the map to the camera and the HUD to the GUI. Has to be called before step().
+	 */
+	public void enter()
+	{
+		canvas.hideCursor(true);
+		gui.addToSection(hud, 0, 0);
+		profiler.attach();
+		
+		camera.setTiles(map.getTiles());
+	}
+	
+	/**
+	 * Runs a single tick and renders it on the calling thread without waiting.
+	 * Used by the benchmarks to run the game as fast as possible without a window.
+	 * @return True if the player died during the tick.
+	 * @see kaninator.game.Game#enter()
+	 */
+	public boolean step()
+	{
+		profiler.begin();
+		boolean died = tick(profiler);
+		if(!died)
+		{
+			publish();
+			render(exchange.consume(), 1.0);
+		}
+		profiler.end();
+		
+		return died;
+	}
+	
+	/**
+	 * The simulation thread. Runs the ticks at a fixed rate: the time since the previous round is added to
+	 * an accumulator and one tick is run for every tick length it holds. At most MAX_CATCH_UP ticks are run per round,
+	 * if the game falls further behind than that the rest of the time is dropped. A snapshot is published
+	 * after the ticks of a round, then the thread sleeps until the next tick is due.
+	 * Runs until doState() stops it, the player dies or the replay ends.
+	 * @see kaninator.game.Game#doState()
+	 */
+	private void simulate()
+	{
+		long tickLength = 1000000000L / tickRate;
+		long lag = tickLength;
+		long oldTime = System.nanoTime();
+		while(running)
+		{
+			long now = System.nanoTime();
+			lag = Math.min(lag + now - oldTime, MAX_CATCH_UP * tickLength);
+			oldTime = now;
 			
-			movePlayer();
-			player.move();
-			framesAlive++;
-			hud.setText("HP: " + player.getHp() + " Score: " + score);
+			boolean ticked = false;
+			while(lag >= tickLength && running)
+			{
+				if(!hasInput())
+				{
+					replayFinished = true;
+					running = false;
+					break;
+				}
+				simulationProfiler.begin();
+				boolean died = tick(simulationProfiler);
+				simulationProfiler.end();
+				if(died)
+				{
+					result = Kaninator.GAME_OVER;
+					running = false;
+					break;
+				}
+				lag -= tickLength;
+				ticked = true;
+			}
+			if(ticked)
+				publish();
 			
 			try 
 			{
-				long sleepTime = Kaninator.FRAME_DELAY - (System.currentTimeMillis() - oldTime);
+				long sleepTime = (tickLength - lag - (System.nanoTime() - now)) / 1000000L;
 				if(sleepTime > 0)
 					Thread.sleep(sleepTime);
 			} 
 			catch(InterruptedException e)
 			{
-				System.out.println("Frame sleep interrupted: " + e);
+				System.out.println("Tick sleep interrupted: " + e);
 			}
-			oldTime = System.currentTimeMillis();
 		}
+	}
+	
+	/**
+	 * Updates the game by one tick: spawns and updates the objects and moves the player.
+	 * The positions the objects had before the tick are stored first, so frames can be rendered between the ticks.
+	 * @param phases The profiler the phases of the tick are measured with.
+	 * @return True if the player died during the tick.
+	 * @see kaninator.game.Game#enter()
+	 */
+	private boolean tick(FrameProfiler phases)
+	{
+		entities.storePositions(EntityRegistry.PLAYER);
+		entities.storePositions(EntityRegistry.PROJECTILES);
+		entities.storePositions(EntityRegistry.EFFECTS);
+		if(horde != null)
+			horde.storePositions();
+		else
+			enemies.storePositions();
+		
+		spawnZombies();
+		indexZombies();
+		phases.mark(FrameProfiler.SPAWN);
+		
+		flowField.update(player.getMainObject());
+		observeZombies();
+		phases.mark(FrameProfiler.OBSERVE);
 		
+		gore.updateGore(updater);
+		phases.mark(FrameProfiler.GORE);
+		gun.updateBullets();
+		phases.mark(FrameProfiler.BULLETS);
+		actZombies();
+		indexZombies();
+		//All the objects of the tick have been removed by now
+		entities.flush();
+		phases.mark(FrameProfiler.ACT);
+		
+		if((horde != null) ? player.update(horde) : player.update(enemies.getIndex()))
+			return true;
+		
+		movePlayer();
+		player.move();
+		framesAlive++;
+		phases.mark(FrameProfiler.PLAYER);
+		
+		return false;
+	}
+	
+	/**
+	 * Rebuilds the spatial index of the Zombies, in the ZombieScheduler or the Horde.
+	 */
+	private void indexZombies()
+	{
+		if(horde != null)
+			horde.index();
+		else
+			enemies.index();
+	}
+	
+	/**
+	 * Checks the Bullets for collisions with the Zombies, kills the Zombies they hit and lets the Zombies observe their surroundings.
+	 */
+	private void observeZombies()
+	{
+		if(horde != null)
+		{
+			gun.observeBullets(horde, updater);
+			horde.observe();
+			return;
+		}
+		
+		gun.observeBullets(enemies.getIndex(), hits, updater);
+		for(Zombie hit : hits)
+		{
+			hit.kill();
+			enemies.wake(hit);
+		}
+		hits.clear();
+		enemies.observe(updater);
+	}
+	
+	/**
+	 * Lets the Zombies act, and removes the dead ones: plays their death sounds, gorifies them and gives the player the points for them.
+	 * The DynamicObjects of the Zombie objects are removed from the EntityRegistry at the end of the tick.
+	 */
+	private void actZombies()
+	{
+		if(horde != null)
+		{
+			horde.act();
+			for(int i = 0; i < horde.size(); i++)
+			{
+				int id = horde.getId(i);
+				if(horde.isDead(id))
+				{
+					squirt.playClip();
+					gore.gorify(horde.get_x(id), horde.get_y(id));
+					score += framesAlive / TIME_POINTS_RATIO;
+					horde.remove(id);
+				}
+			}
+			horde.flush();
+			return;
+		}
+		
+		enemies.act(killed, updater);
+		for(Zombie npo : killed)
+		{
+			npo.playDeathSound();
+			gore.gorify(npo.getMainObject());
+			score += framesAlive / TIME_POINTS_RATIO;
+			entities.remove(npo.getShadow());
+			entities.remove(npo.getMainObject());
+			zombiePool.release(npo);
+		}
+		killed.clear();
+	}
+	
+	/**
+	 * Copies the DynamicObjects, the Zombies of the Horde, the HUD values and the focus of the camera to the back snapshot and publishes it.
+	 * @see kaninator.mechanics.SnapshotExchange
+	 */
+	private void publish()
+	{
+		WorldSnapshot snapshot = exchange.getBack();
+		snapshot.clear();
+		for(int category = 0; category < EntityRegistry.NUM_CATEGORIES; category++)
+			snapshot.addAll(entities, category);
+		if(horde != null)
+			horde.project(snapshot);
+		snapshot.setFocus(player.getMainObject());
+		snapshot.setStatus(STATUS_HP, player.getHp());
+		snapshot.setStatus(STATUS_SCORE, score);
+		snapshot.setTick(framesAlive);
+		exchange.publish();
+	}
+	
+	/**
+	 * Renders a frame of a snapshot between the tick before it and the last one, and updates the HUD from it.
+	 * @param snapshot The snapshot of the world.
+	 * @param alpha How far past the previous tick the frame is, 0 renders the state before the last tick and 1 the state after it.
+	 */
+	public void render(WorldSnapshot snapshot, double alpha)
+	{
+		camera.follow(snapshot, alpha);
+		camera.render(snapshot, alpha);
+		profiler.mark(FrameProfiler.RENDER);
+		if(snapshot.getStatus(STATUS_HP) != hudHp || snapshot.getStatus(STATUS_SCORE) != hudScore)
+			updateHud(snapshot.getStatus(STATUS_HP), snapshot.getStatus(STATUS_SCORE));
+		camera.renderGUI();
+		profiler.mark(FrameProfiler.RENDER_GUI);
+	}
+	
+	/**
+	 * Clears up the HUD from the GUI and checks that no objects have leaked from the pools.
+	 */
+	public void leave()
+	{
 		gui.clearSection(0, 0);
-		camera.clearPlayerObjects();
-		camera.clearEnemyObjects();
-		camera.clearOtherObjects();
+		profiler.detach();
 		canvas.hideCursor(false);
 		
-		return retValue;
+		if(zombiePool != null)
+			zombiePool.checkLeaks(enemies.size());
+		gun.checkLeaks();
+		gore.checkLeaks();
+	}
+	
+	/**
+	 * Prints the statistics of the pools the Zombies, Bullets and Gore are taken from.
+	 * The Zombies don't have a pool when they are stored in a Horde.
+	 * @see kaninator.game.Pool
+	 */
+	public void printPools()
+	{
+		if(zombiePool != null)
+			System.out.println("Pool " + zombiePool);
+		System.out.println("Pool " + gun.getPool());
+		System.out.println("Pool " + gore.getHeadPool());
+		System.out.println("Pool " + gore.getBonePool());
 	}
 	
 	/**
 	 * Has a ZOMBIE_SPAWN_PROBABILITY chance to spawn a random amount of Zombies at random positions on the map.
-	 * The amount of Zombies can never exceed MAX_ZOMBIES. 
+	 * The amount of Zombies can never exceed MAX_ZOMBIES, or the size of the Horde. The Zombies are taken from the Pool, the ones killed
+	 * during the previous frame are made available again first. With a Horde they are spawned into it instead, without a Pool.
 	 */
 	private void spawnZombies()
 	{
+		if(zombiePool != null)
+			zombiePool.flush();
 		try
 		{
-			if(enemies.size() < MAX_ZOMBIES && Math.random() > ZOMBIE_SPAWN_PROBABILITY)
+			int zombies = (horde != null) ? horde.size() : enemies.size();
+			if(zombies < maxZombies && random.nextDouble() > ZOMBIE_SPAWN_PROBABILITY)
 			{
-				int numZombies = (int)(Math.random() * (MAX_ZOMBIES - enemies.size()));
+				int numZombies = (int)(random.nextDouble() * (maxZombies - zombies));
 
 				for(int i = 0; i < numZombies; i++)
 				{
-					double pos_y = Math.random() * map.getTiles().size() * MapFactory.getTileSize();
-					double pos_x = Math.random() * map.getTiles().get(0).size() * MapFactory.getTileSize();
-					Zombie enemy = new Zombie(AnimationFactory.cloneAnimations(zombAnim), map, squirt, player.getMainObject(), pos_x, pos_y, 5.0);
+					double pos_y = random.nextDouble() * map.getTiles().size() * MapFactory.getTileSize();
+					double pos_x = random.nextDouble() * map.getTiles().get(0).size() * MapFactory.getTileSize();
+					if(horde != null)
+					{
+						horde.spawn(pos_x, pos_y);
+						continue;
+					}
+					Zombie enemy = zombiePool.acquire();
+					enemy.reset(pos_x, pos_y);
 					enemies.add(enemy);
-					for(DynamicObject obj: enemy.getDynamicObjects())
-						enemyList.add(obj);
+					entities.add(enemy.getShadow(), EntityRegistry.ENEMIES);
+					entities.add(enemy.getMainObject(), EntityRegistry.ENEMIES);
 				}
 			}
 		}
@@ -226,18 +620,42 @@ public class Game extends GameState
 	}
 	
 	/**
-	 * Passes the keyboard input to the player.
+	 * Rewrites the HUD text, without creating any Strings.
+	 * @param hp The hit points of the player.
+	 * @param points The score of the player.
+	 */
+	private void updateHud(int hp, int points)
+	{
+		hudHp = hp;
+		hudScore = points;
+		hud.clear().append("HP: ").append(hudHp).append(" Score: ").append(hudScore);
+	}
+	
+	/**
+	 * Reads the input of the frame, from the replay or from the keyboard and the mouse, and passes it to the player.
+	 * The live input is recorded if there is a recorder.
 	 */
 	private void movePlayer()
 	{
-		player.setMove(keyboard.isPressed(KeyEvent.VK_W), Player.MOVE_UP);
-		player.setMove(keyboard.isPressed(KeyEvent.VK_S), Player.MOVE_DOWN);
-		player.setMove(keyboard.isPressed(KeyEvent.VK_A), Player.MOVE_LEFT);
-		player.setMove(keyboard.isPressed(KeyEvent.VK_D), Player.MOVE_RIGHT);
-		player.setMove(keyboard.isPressed(KeyEvent.VK_SPACE), Player.MOVE_JUMP);
+		if(replay != null)
+		{
+			replay.next(input);
+		}
+		else
+		{
+			input.capture(keyboard, mouse, camera.get_x(), camera.get_y());
+			if(recorder != null)
+				recorder.record(input);
+		}
+		
+		player.setMove(input.isPressed(InputState.UP), Player.MOVE_UP);
+		player.setMove(input.isPressed(InputState.DOWN), Player.MOVE_DOWN);
+		player.setMove(input.isPressed(InputState.LEFT), Player.MOVE_LEFT);
+		player.setMove(input.isPressed(InputState.RIGHT), Player.MOVE_RIGHT);
+		player.setMove(input.isPressed(InputState.JUMP), Player.MOVE_JUMP);
 
-		player.aimGun(mouse.get_x() + camera.get_x(), mouse.get_y() + camera.get_y());
-		if(mouse.isPressed(0))
+		player.aimGun(input.get_x(), input.get_y());
+		if(input.isPressed(InputState.FIRE))
 			player.fire();
 	}
 
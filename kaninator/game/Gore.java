@@ -18,12 +18,20 @@ public class Gore
 	
 	private Model model;
 	private int ttyl;
+	private boolean head;
 	
-	public Gore(ArrayList<Animation> animations, Map _map, DynamicObject victim, double vel_x, double vel_y, int _ttyl) throws ModelException
+	public Gore(ArrayList<Animation> animations, Map _map, boolean _head) throws ModelException
+	{
+		ttyl = 0;
+		head = _head;
+		model = new Model(animations, _map, 0.0, 0.0, RADIUS_CONSTANT, GORE_SPEED);
+	}
+	
+	public void reset(double x, double y, double vel_x, double vel_y, int _ttyl)
 	{
 		ttyl = _ttyl;
 		
-		model = new Model(animations, _map, victim.get_x(), victim.get_y(), RADIUS_CONSTANT, GORE_SPEED);
+		model.place(x, y);
 		model.setVelX(vel_x);
 		model.setVelY(vel_y);
 		model.setVelHeight(GORE_JUMP_SPEED);
@@ -47,4 +55,14 @@ public class Gore
 		
 		return ttyl <= 0;
 	}
+	
+	public boolean isHead()
+	{
+		return head;
+	}
+	
+	public boolean isExpired()
+	{
+		return ttyl <= 0;
+	}
 }
@@ -12,54 +12,102 @@ public class GoreFactory
 	private static final int GORE_TTYL = 225;
 	private static final int NUM_GORE = 4;
 	private static final double GORE_SPEED = 6.0;
+	private static final int PREALLOCATED_KILLS = 16;
 	
 	private Map map;
-	private LinkedList<Gore> gore;
-	private LinkedList<DynamicObject> goreObjects;
+	private ArrayList<Gore> gore;
+	private Pool<Gore> headPool, bonePool;
+	private ParallelUpdater.Job updateJob;
+	private EntityRegistry entities;
 	private ArrayList<Animation> headGore;
 	private ArrayList<Animation> boneGore;
+	private Random random;
 	
-	public GoreFactory(Map _map, LinkedList<DynamicObject> _goreObjects, ArrayList<Animation> _headGore, ArrayList<Animation> _boneGore) throws ModelException
+	public GoreFactory(Map _map, EntityRegistry _entities, ArrayList<Animation> _headGore, ArrayList<Animation> _boneGore, Random _random) throws ModelException
 	{
 		map = _map;
-		goreObjects = _goreObjects;
+		random = _random;
+		entities = _entities;
 		
-		gore = new LinkedList<Gore>();
+		gore = new ArrayList<Gore>();
+		updateJob = new ParallelUpdater.Job()
+		{
+			public void run(int from, int to)
+			{
+				for(int i = from; i < to; i++)
+					gore.get(i).update();
+			}
+		};
 		
 		headGore = _headGore;
 		boneGore = _boneGore;
 		
 		if(headGore == null || boneGore == null || headGore.size() == 0 || boneGore.size() == 0)
 			throw new ModelException("ERR: Gore animation empty");
+		
+		headPool = new Pool<Gore>("head gore", new Pool.Factory<Gore>()
+		{
+			public Gore create() throws ModelException
+			{
+				return new Gore(AnimationFactory.cloneAnimations(headGore), map, true);
+			}
+		}, PREALLOCATED_KILLS);
+		bonePool = new Pool<Gore>("bone gore", new Pool.Factory<Gore>()
+		{
+			public Gore create() throws ModelException
+			{
+				return new Gore(AnimationFactory.cloneAnimations(boneGore), map, false);
+			}
+		}, PREALLOCATED_KILLS * NUM_GORE);
 	}
 	
-	public void updateGore()
+	public void updateGore(ParallelUpdater updater)
 	{
-		for(Iterator<Gore> i = gore.iterator(); i.hasNext();)
+		//The pieces released during the previous frame are out of the registry by now
+		headPool.flush();
+		bonePool.flush();
+		
+		//Every piece only moves itself, the expired ones are removed once all of them are done
+		updater.run(updateJob, gore.size());
+		int kept = 0;
+		for(int i = 0; i < gore.size(); i++)
 		{
-			Gore g = i.next();
-			if(g.update())
+			Gore g = gore.get(i);
+			if(g.isExpired())
 			{
-				i.remove();
-				goreObjects.remove(g.getMainObject());
+				entities.remove(g.getMainObject());
+				if(g.isHead())
+					headPool.release(g);
+				else
+					bonePool.release(g);
 			}
+			else
+				gore.set(kept++, g);
 		}
+		gore.subList(kept, gore.size()).clear();
 	}
 	
 	public void gorify(DynamicObject obj)
+	{
+		gorify(obj.get_x(), obj.get_y());
+	}
+	
+	public void gorify(double x, double y)
 	{
 		try
 		{
-			Gore head = new Gore(AnimationFactory.cloneAnimations(headGore), map, obj, 0.0, 0.0, GORE_TTYL);
+			Gore head = headPool.acquire();
+			head.reset(x, y, 0.0, 0.0, GORE_TTYL);
 			gore.add(head);
-			goreObjects.add(head.getMainObject());
+			entities.add(head.getMainObject(), EntityRegistry.EFFECTS);
 			for(int i = 0; i < NUM_GORE; i++)
 			{
-				double speed_x = GORE_SPEED * (Math.random() - 0.5);
-				double speed_y = GORE_SPEED * (Math.random() - 0.5);
-				Gore bone = new Gore(AnimationFactory.cloneAnimations(boneGore), map, obj, speed_x, speed_y, GORE_TTYL);
+				double speed_x = GORE_SPEED * (random.nextDouble() - 0.5);
+				double speed_y = GORE_SPEED * (random.nextDouble() - 0.5);
+				Gore bone = bonePool.acquire();
+				bone.reset(x, y, speed_x, speed_y, GORE_TTYL);
 				gore.add(bone);
-				goreObjects.add(bone.getMainObject());
+				entities.add(bone.getMainObject(), EntityRegistry.EFFECTS);
 			}
 		}
 		catch(ModelException e)
@@ -67,4 +115,25 @@ public class GoreFactory
 			System.out.println("ERR: Couldn't gorify: " + e);
 		}
 	}
+	
+	public Pool<Gore> getHeadPool()
+	{
+		return headPool;
+	}
+	
+	public Pool<Gore> getBonePool()
+	{
+		return bonePool;
+	}
+	
+	public boolean checkLeaks()
+	{
+		int heads = 0;
+		for(Gore g : gore)
+			if(g.isHead())
+				heads++;
+		
+		boolean headsOk = headPool.checkLeaks(heads);
+		return bonePool.checkLeaks(gore.size() - heads) && headsOk;
+	}
 }
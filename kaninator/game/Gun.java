@@ -4,8 +4,7 @@
 package kaninator.game;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Random;
 
 import kaninator.graphics.Animation;
 import kaninator.graphics.AnimationFactory;
@@ -13,6 +12,9 @@ import kaninator.graphics.Drawable;
 import kaninator.graphics.Shadow;
 import kaninator.sound.SoundClip;
 import kaninator.mechanics.DynamicObject;
+import kaninator.mechanics.EntityRegistry;
+import kaninator.mechanics.ParallelUpdater;
+import kaninator.mechanics.SpatialIndex;
 
 /**
  * Represents the gun wielded by the player in the game. Creates Bullets and also has a
@@ -26,43 +28,74 @@ public class Gun
 	private static final double SHOOT_DELAY = 30.0;
 	private static final double SPREAD_VALUE = 1.0 / 25.0;
 	private static final int MAX_STRAFE_DIFFERENCE = 64;
+	private static final int PREALLOCATED_BULLETS = 40;
 
 	private ArrayList<Animation> bullet;
 	private ArrayList<Animation> shadow;
-	private LinkedList<Bullet> bullets;
-	private LinkedList<DynamicObject> bulletObjects;
+	private ArrayList<Bullet> bullets;
+	private Pool<Bullet> pool;
+	private EntityRegistry entities;
+	private SpatialIndex<Zombie> targets;
+	private Horde horde;
+	private ParallelUpdater.Job observeJob;
 	private DynamicObject wielder;
 	private DynamicObject model;
 	private Map map;
 	private SoundClip sound;
+	private Random random;
 	
 	private double delta_x, delta_y, delta_height, speed, delay, offset_x, offset_y;
 	
 	/**
 	 * Constructs a gun. Associates it with the resources needed to display the gun, 
 	 * play the a sound when it is fired and add new bullets to the game itself.
+	 * The Bullets are kept in a Pool, which is filled with PREALLOCATED_BULLETS right away.
 	 * @param animList The animations used to display the gun.
 	 * @param _sound The sound to be played when the gun fires.
 	 * @param _map Map used for aiming and height checking.
 	 * @param _bullet The graphical representation of a bullet.
-	 * @param _bulletObjects The list to which the bullets will be added.
+	 * @param _entities The registry the bullets will be added to, as projectiles.
 	 * @param _speed The speed the bullets will travel at.
+	 * @param _random The random number generator of the game, used for the spread of the bullets.
 	 * @throws Exception If the animation is null or of the size 0, since the model cannot be created without these.
 	 */
-	public Gun(ArrayList<Animation> animList, SoundClip _sound, Map _map, Drawable _bullet, LinkedList<DynamicObject> _bulletObjects, double _speed) throws ModelException
+	public Gun(ArrayList<Animation> animList, SoundClip _sound, Map _map, Drawable _bullet, EntityRegistry _entities, double _speed, Random _random) throws ModelException
 	{
 		if(animList == null || animList.size() < 1)
 			throw new ModelException("ERR: Gun animation doesn't exist");
 		
 		model = new DynamicObject(animList, 0.0);
-		bulletObjects = _bulletObjects;
-		bullets = new LinkedList<Bullet>();
+		entities = _entities;
+		bullets = new ArrayList<Bullet>();
+		targets = null;
+		horde = null;
+		observeJob = new ParallelUpdater.Job()
+		{
+			public void run(int from, int to)
+			{
+				for(int i = from; i < to; i++)
+				{
+					if(horde != null)
+						bullets.get(i).observe(horde);
+					else
+						bullets.get(i).observe(targets);
+				}
+			}
+		};
 		bullet = AnimationFactory.createAnimations(_bullet);
-		shadow = AnimationFactory.createAnimations(new Shadow(BULLET_RADIUS));
+		shadow = AnimationFactory.createAnimations(Shadow.getShadow(BULLET_RADIUS));
 		
 		sound = _sound;
 		map = _map;
+		pool = new Pool<Bullet>("bullets", new Pool.Factory<Bullet>()
+		{
+			public Bullet create()
+			{
+				return new Bullet(new DynamicObject(bullet, BULLET_RADIUS), new DynamicObject(shadow, BULLET_RADIUS), map);
+			}
+		}, PREALLOCATED_BULLETS);
 		speed = _speed;
+		random = _random;
 		wielder = null;
 		delay = offset_x = offset_y = 0.0;
 	}
@@ -173,8 +206,8 @@ public class Gun
 	}
 	
 	/**
-	 * Fires the gun. Effectively playing the SoundClip and adding a new Bullet object to the
-	 * LinkedList of Bullets contained in Game. Also sets the shoot delay to SHOOT_DELAY. Will only
+	 * Fires the gun. Effectively playing the SoundClip and adding new Bullet objects to the
+	 * EntityRegistry of the Game. The Bullets are taken from the Pool. Also sets the shoot delay to SHOOT_DELAY. Will only
 	 * fire if the shoot delay is zero, the shoot delay is decreased in setAim().
 	 * @see kaninator.game.Gun#setAim(double, double, double)
 	 * @see kaninator.game.Bullet
@@ -188,57 +221,118 @@ public class Gun
 			double rite_x = -delta_y;
 			double rite_y = delta_x;
 			
-			for(int i = -2; i <= 2; i++)
+			try
+			{
+				for(int i = -2; i <= 2; i++)
+				{
+					Bullet bul = pool.acquire();
+					bul.fire(model, delta_x + rite_x * i * SPREAD_VALUE,
+							delta_y + rite_y * i * SPREAD_VALUE, delta_height, random);
+					bullets.add(bul);
+					entities.add(bul.getShadow(), EntityRegistry.PROJECTILES);
+					entities.add(bul.getMainObject(), EntityRegistry.PROJECTILES);
+				}
+			}
+			catch(ModelException e)
 			{
-				Bullet bul = new Bullet(new DynamicObject(bullet, BULLET_RADIUS),
-										new DynamicObject(shadow, BULLET_RADIUS),
-										map, model,delta_x + rite_x * i * SPREAD_VALUE,
-										delta_y + rite_y * i * SPREAD_VALUE, delta_height);
-				bullets.add(bul);
-				bulletObjects.add(bul.getShadow());
-				bulletObjects.add(bul.getMainObject());
+				System.out.println("ERR: Couldn't create bullets: " + e);
 			}
 			delay += SHOOT_DELAY;
 		}
 	}
 	
 	/**
-	 * Loops through all the Bullets in the LinkedList and calls observe() for them:
-	 * Effectively checking them for collisions and moving them.
-	 * @param targets The LinkedList of Zombies that the Bullets should check against collisions with.
+	 * Calls observe() for all the Bullets in parallel:
+	 * Effectively checking them for collisions and moving them. Once all of them are done,
+	 * the Zombies they hit are collected in the order of the Bullets, so the result doesn't depend on the number of threads.
+	 * @param _targets The index of the Zombies that the Bullets should check against collisions with. Must not change during the call.
+	 * @param hits The list the Zombies hit by the Bullets are added to.
+	 * @param updater The updater the Bullets are observed with.
 	 * @see kaninator.game.Zombie
-	 * @see kaninator.game.Bullet#observe(LinkedList)
+	 * @see kaninator.game.Bullet#observe(SpatialIndex)
 	 * @see kaninator.game.Bullet
 	 */
-	public void observeBullets(LinkedList<Zombie> targets)
+	public void observeBullets(SpatialIndex<Zombie> _targets, ArrayList<Zombie> hits, ParallelUpdater updater)
 	{
-		for(Iterator<Bullet> i = bullets.iterator(); i.hasNext();)
+		targets = _targets;
+		updater.run(observeJob, bullets.size());
+		targets = null;
+		
+		for(Bullet bul : bullets)
 		{
-			Bullet bul = i.next();
-			bul.observe(targets);
+			if(bul.getHit() != null)
+				hits.add(bul.getHit());
 		}
 	}
 	
 	/**
-	 * Loops through all the Bullets in the LinkedList and calls update() for them:
+	 * Calls observe() for all the Bullets in parallel, with the Zombies stored in a Horde. Once all of them are done,
+	 * the Zombies they hit are killed in the order of the Bullets.
+	 * @param _horde The horde the Bullets should check against collisions with. Must not change during the call.
+	 * @param updater The updater the Bullets are observed with.
+	 * @see kaninator.game.Bullet#observe(Horde)
+	 */
+	public void observeBullets(Horde _horde, ParallelUpdater updater)
+	{
+		horde = _horde;
+		updater.run(observeJob, bullets.size());
+		horde = null;
+		
+		for(Bullet bul : bullets)
+		{
+			if(bul.getHitId() >= 0)
+				_horde.kill(bul.getHitId());
+		}
+	}
+	
+	/**
+	 * Loops through all the Bullets in the list and calls update() for them:
 	 * If they return true, then delete them from the list of Bullets, and their DynamicObjects
-	 * from the list of DynamicObjects.
+	 * from the EntityRegistry at the end of the frame, and put them back into the Pool.
+	 * The remaining Bullets are moved down in a single pass. The Bullets released during the previous frame
+	 * are made available again first, the registry has let go of them by now.
 	 * @see kaninator.game.Bullet
 	 * @see kaninator.game.Bullet#update()
+	 * @see kaninator.mechanics.EntityRegistry#flush()
 	 */
 	public void updateBullets()
 	{
-		for(Iterator<Bullet> i = bullets.iterator(); i.hasNext();)
+		pool.flush();
+		int kept = 0;
+		for(int i = 0; i < bullets.size(); i++)
 		{
-			Bullet bul = i.next();
+			Bullet bul = bullets.get(i);
 			if(bul.update())
 			{
-				i.remove();
-				bulletObjects.remove(bul.getMainObject());
-				bulletObjects.remove(bul.getShadow());
+				entities.remove(bul.getMainObject());
+				entities.remove(bul.getShadow());
+				pool.release(bul);
+			}
+			else
+			{
+				bullets.set(kept++, bul);
 			}
-			
 		}
+		bullets.subList(kept, bullets.size()).clear();
+	}
+	
+	/**
+	 * Gets the Pool the Bullets are taken from.
+	 * @return The Pool of Bullets.
+	 */
+	public Pool<Bullet> getPool()
+	{
+		return pool;
+	}
+	
+	/**
+	 * Checks that all the Bullets taken from the Pool are still flying.
+	 * @return True if no Bullets have leaked.
+	 * @see kaninator.game.Pool#checkLeaks(int)
+	 */
+	public boolean checkLeaks()
+	{
+		return pool.checkLeaks(bullets.size());
 	}
 	
 	/**
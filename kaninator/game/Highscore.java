@@ -179,7 +179,6 @@ public class Highscore extends GameState
 	 */
 	private void render()
 	{
-		camera.clearGUI();
 		menu.render();
 		camera.renderGUI();
 	}
@@ -203,7 +202,8 @@ public class Highscore extends GameState
 				break;
 			
 			Score s = scores.get(i);
-			Text scoreEntry = new Text(s.toString(), "Impact", 32, Font.BOLD, Color.WHITE);
+			BitmapText scoreEntry = new BitmapText(s.name, "Impact", 32, Font.BOLD, Color.WHITE);
+			scoreEntry.append(' ').append(s.score);
 			menu.addEntry(scoreEntry, scoreEntry);
 		}
 		
@@ -233,7 +233,6 @@ public class Highscore extends GameState
 			
 		}
 		
-		camera.clearGUI();
 		menu.clear();
 		menu.clearEntries();
 
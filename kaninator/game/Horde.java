@@ -0,0 +1,898 @@
+/**
+ * Contains all the high-level game functions and implements the actual gameplay.
+ */
+package kaninator.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import kaninator.graphics.Animation;
+import kaninator.graphics.AnimationFactory;
+import kaninator.graphics.Drawable;
+import kaninator.graphics.Shadow;
+import kaninator.io.MapFactory;
+import kaninator.mechanics.DynamicObject;
+import kaninator.mechanics.FlatTile;
+import kaninator.mechanics.FlowField;
+import kaninator.mechanics.StaticObject;
+import kaninator.mechanics.WorldSnapshot;
+import kaninator.sound.SoundFactory;
+
+/**
+ * Stores a large number of Zombies as a structure of arrays instead of Zombie objects.
+ * The position, velocity, height, state and animation cursor of every Zombie live in primitive arrays, and the
+ * animations are shared by the whole horde instead of being cloned for every Zombie. The AI, the physics and the
+ * projection into a WorldSnapshot are plain loops over these arrays, so a horde of thousands of Zombies can be
+ * updated on a single thread. The Zombies behave the same way as Zombie objects, see Zombie.act() and Model.update():
+ * the steering and the steps of the physics are the static methods of Zombie and Model, shared with them.
+ * The arrays are kept dense, the Zombies are addressed by integer ids, which stay valid until the Zombie is removed.
+ * Removals are deferred until flush(), the same way as in the EntityRegistry.
+ * The horde keeps its own spatial grid: index() sorts the Zombies by their cells, so the neighbours of a Zombie
+ * are found in contiguous arrays. The grid is used for the flocking and for the collisions with the bullets and the player.
+ * @author phedman
+ * @see kaninator.game.Zombie
+ * @see kaninator.mechanics.EntityRegistry
+ */
+public class Horde
+{
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int FREE = -1;
+
+	private Map map;
+	private FlowField flowField;
+	private DynamicObject player;
+	private Drawable frames[][];
+	private Drawable shadow;
+	private double speeds[];
+	private boolean locks[];
+	private double radius, diagonalSpeed, cellSize;
+
+	private int size;
+	private double x[], y[], h[], shadow_h[];
+	private double prev_x[], prev_y[], prev_h[], prevShadow_h[];
+	private double vel_x[], vel_y[], vel_h[];
+	private double cursor[];
+	private int state[];
+	private double distance[], observedVel_x[], observedVel_y[];
+	private int observedState[];
+	private boolean dead[], removed[];
+	private int ids[];
+
+	private int slots[], freeIds[], pending[];
+	private int numIds, numFree, numPending;
+
+	private int mask;
+	private int buckets[], bucketStart[], bucketFill[];
+	private int sorted[], sortedCell_x[], sortedCell_y[];
+	private double sorted_x[], sorted_y[];
+
+	/**
+	 * Creates an empty horde.
+	 * @param animations The Animations of a Zombie, shared by the whole horde. Cannot be null or of the size 0.
+	 * @param _map The game map used for height checking.
+	 * @param _flowField The flow field leading to the player, or null to walk straight at the player.
+	 * @param _player The player object the Zombies are chasing.
+	 * @param radius_constant How much the width of the Animations should be divided with to get a realistic estimate for the radius of a Zombie.
+	 * @param capacity The number of Zombies the arrays are created for, they grow if more are spawned.
+	 * @throws ModelException If the animation is null or of the size 0.
+	 */
+	public Horde(ArrayList<Animation> animations, Map _map, FlowField _flowField, DynamicObject _player, double radius_constant, int capacity) throws ModelException
+	{
+		if(animations == null || animations.size() < 1)
+			throw new ModelException("ERR: Horde animation doesn't exist");
+
+		map = _map;
+		flowField = _flowField;
+		player = _player;
+
+		frames = new Drawable[animations.size()][];
+		speeds = new double[animations.size()];
+		locks = new boolean[animations.size()];
+		for(int i = 0; i < frames.length; i++)
+		{
+			Animation animation = animations.get(i);
+			frames[i] = new Drawable[animation.getFrameCount()];
+			for(int j = 0; j < frames[i].length; j++)
+				frames[i][j] = animation.getFrame(j);
+			speeds[i] = animation.getSpeed();
+			locks[i] = animation.isLocked();
+		}
+
+		radius = animations.get(0).getWidth()/radius_constant;
+		shadow = Shadow.getShadow(radius * 2);
+		diagonalSpeed = Math.sqrt(Zombie.ZOMBIE_SPEED*Zombie.ZOMBIE_SPEED/2.0);
+		cellSize = MapFactory.getTileSize();
+
+		capacity = Math.max(capacity, INITIAL_CAPACITY);
+		size = 0;
+		x = new double[capacity];
+		y = new double[capacity];
+		h = new double[capacity];
+		shadow_h = new double[capacity];
+		prev_x = new double[capacity];
+		prev_y = new double[capacity];
+		prev_h = new double[capacity];
+		prevShadow_h = new double[capacity];
+		vel_x = new double[capacity];
+		vel_y = new double[capacity];
+		vel_h = new double[capacity];
+		cursor = new double[capacity];
+		state = new int[capacity];
+		distance = new double[capacity];
+		observedVel_x = new double[capacity];
+		observedVel_y = new double[capacity];
+		observedState = new int[capacity];
+		dead = new boolean[capacity];
+		removed = new boolean[capacity];
+		ids = new int[capacity];
+
+		slots = new int[capacity];
+		freeIds = new int[capacity];
+		pending = new int[capacity];
+		numIds = numFree = numPending = 0;
+
+		buckets = new int[capacity];
+		sorted = new int[capacity];
+		sortedCell_x = new int[capacity];
+		sortedCell_y = new int[capacity];
+		sorted_x = new double[capacity];
+		sorted_y = new double[capacity];
+		createBuckets(capacity);
+	}
+
+	/**
+	 * Adds a new Zombie, standing on the ground at a position, in the state a new Zombie object is created in.
+	 * It can't be found by the queries until the next call to index().
+	 * @param _x The x coordinate in the internal, isometric coordinate system.
+	 * @param _y The y coordinate in the internal, isometric coordinate system.
+	 * @return The id of the Zombie.
+	 * @see kaninator.game.Model#place(double, double)
+	 */
+	public int spawn(double _x, double _y)
+	{
+		if(size == x.length)
+			grow();
+
+		int id;
+		if(numFree > 0)
+			id = freeIds[--numFree];
+		else
+			id = numIds++;
+
+		int s = size++;
+		x[s] = prev_x[s] = _x;
+		y[s] = prev_y[s] = _y;
+		h[s] = prev_h[s] = map.getHeightAt(_x, _y);
+		shadow_h[s] = prevShadow_h[s] = 0.0;
+		vel_x[s] = vel_y[s] = vel_h[s] = 0.0;
+		cursor[s] = 0.0;
+		state[s] = 0;
+		distance[s] = Double.MAX_VALUE;
+		observedVel_x[s] = observedVel_y[s] = 0.0;
+		observedState[s] = 0;
+		dead[s] = removed[s] = false;
+		ids[s] = id;
+		slots[id] = s;
+		return id;
+	}
+
+	/**
+	 * Marks a Zombie to be removed at the next flush(). Does nothing if the id isn't in use or already marked.
+	 * @param id The id of the Zombie.
+	 */
+	public void remove(int id)
+	{
+		if(id < 0 || id >= numIds || slots[id] == FREE || removed[slots[id]])
+			return;
+
+		removed[slots[id]] = true;
+		pending[numPending++] = id;
+	}
+
+	/**
+	 * Removes the marked Zombies, moving the last Zombie of the arrays into their place.
+	 * Should be called when nothing is iterating over the horde. The index has to be rebuilt afterwards.
+	 */
+	public void flush()
+	{
+		for(int i = 0; i < numPending; i++)
+		{
+			int id = pending[i];
+			int s = slots[id];
+			int last = --size;
+
+			x[s] = x[last];
+			y[s] = y[last];
+			h[s] = h[last];
+			shadow_h[s] = shadow_h[last];
+			prev_x[s] = prev_x[last];
+			prev_y[s] = prev_y[last];
+			prev_h[s] = prev_h[last];
+			prevShadow_h[s] = prevShadow_h[last];
+			vel_x[s] = vel_x[last];
+			vel_y[s] = vel_y[last];
+			vel_h[s] = vel_h[last];
+			cursor[s] = cursor[last];
+			state[s] = state[last];
+			distance[s] = distance[last];
+			observedVel_x[s] = observedVel_x[last];
+			observedVel_y[s] = observedVel_y[last];
+			observedState[s] = observedState[last];
+			dead[s] = dead[last];
+			removed[s] = removed[last];
+			ids[s] = ids[last];
+			slots[ids[s]] = s;
+
+			slots[id] = FREE;
+			freeIds[numFree++] = id;
+		}
+		numPending = 0;
+	}
+
+	/**
+	 * Getter for the number of Zombies, including the ones marked for removal.
+	 * @return The number of Zombies.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the id of a Zombie by its place in the arrays. The order changes when Zombies are removed.
+	 * @param i The index of the Zombie, from 0 to size() - 1.
+	 * @return The id of the Zombie.
+	 */
+	public int getId(int i)
+	{
+		return ids[i];
+	}
+
+	/**
+	 * Getter for the collision radius shared by all the Zombies.
+	 * @return The radius.
+	 */
+	public double getRadius()
+	{
+		return radius;
+	}
+
+	/**
+	 * Gets the x coordinate of a Zombie.
+	 * @param id The id of the Zombie.
+	 * @return The x coordinate in the internal, isometric coordinate system.
+	 */
+	public double get_x(int id)
+	{
+		return x[slots[id]];
+	}
+
+	/**
+	 * Gets the y coordinate of a Zombie.
+	 * @param id The id of the Zombie.
+	 * @return The y coordinate in the internal, isometric coordinate system.
+	 */
+	public double get_y(int id)
+	{
+		return y[slots[id]];
+	}
+
+	/**
+	 * Gets the height of a Zombie.
+	 * @param id The id of the Zombie.
+	 * @return The height.
+	 */
+	public double getHeight(int id)
+	{
+		return h[slots[id]];
+	}
+
+	/**
+	 * Gets the state of a Zombie. In essence which animation it is currently drawing.
+	 * @param id The id of the Zombie.
+	 * @return The state.
+	 */
+	public int getState(int id)
+	{
+		return state[slots[id]];
+	}
+
+	/**
+	 * Gets the distance of a Zombie to the player, as calculated by the latest call to observe().
+	 * @param id The id of the Zombie.
+	 * @return The distance, Double.MAX_VALUE if the Zombie hasn't been observed yet.
+	 */
+	public double getDistance(int id)
+	{
+		return distance[slots[id]];
+	}
+
+	/**
+	 * Checks if a Zombie has been killed.
+	 * @param id The id of the Zombie.
+	 * @return True if the Zombie is dead.
+	 */
+	public boolean isDead(int id)
+	{
+		return dead[slots[id]];
+	}
+
+	/**
+	 * Kills a Zombie. It stops moving, but stays in the horde until it is removed.
+	 * @param id The id of the Zombie.
+	 */
+	public void kill(int id)
+	{
+		dead[slots[id]] = true;
+	}
+
+	/**
+	 * Stores the current positions of the Zombies, so they can be rendered in between ticks.
+	 */
+	public void storePositions()
+	{
+		System.arraycopy(x, 0, prev_x, 0, size);
+		System.arraycopy(y, 0, prev_y, 0, size);
+		System.arraycopy(h, 0, prev_h, 0, size);
+		System.arraycopy(shadow_h, 0, prevShadow_h, 0, size);
+	}
+
+	/**
+	 * Rebuilds the spatial grid from the current positions of the Zombies. The Zombies are sorted by their cells
+	 * with a counting sort, and their positions are copied next to each other in the order of the cells.
+	 * Needs to be called whenever the Zombies have moved, spawned or been removed before the grid is queried again.
+	 */
+	public void index()
+	{
+		Arrays.fill(bucketStart, 0);
+		for(int s = 0; s < size; s++)
+		{
+			buckets[s] = bucket(cell(x[s]), cell(y[s]));
+			bucketStart[buckets[s] + 1]++;
+		}
+		for(int b = 0; b < mask + 1; b++)
+			bucketStart[b + 1] += bucketStart[b];
+
+		System.arraycopy(bucketStart, 0, bucketFill, 0, mask + 1);
+		for(int s = 0; s < size; s++)
+		{
+			int e = bucketFill[buckets[s]]++;
+			sorted[e] = s;
+			sorted_x[e] = x[s];
+			sorted_y[e] = y[s];
+			sortedCell_x[e] = cell(x[s]);
+			sortedCell_y[e] = cell(y[s]);
+		}
+	}
+
+	/**
+	 * Calculates the distances of the Zombies to the player, and stores their current movement for their peers
+	 * to copy in act(), the same way as Zombie.observe().
+	 * @see kaninator.game.Zombie#observe()
+	 */
+	public void observe()
+	{
+		double player_x = player.get_x();
+		double player_y = player.get_y();
+		for(int s = 0; s < size; s++)
+		{
+			double d_x = player_x - x[s];
+			double d_y = player_y - y[s];
+			distance[s] = Math.sqrt(d_x * d_x + d_y * d_y);
+			observedVel_x[s] = vel_x[s];
+			observedVel_y[s] = vel_y[s];
+			observedState[s] = state[s];
+		}
+	}
+
+	/**
+	 * Runs the AI of the living Zombies and then moves them, in two passes over the arrays.
+	 * The AI only reads what observe() and index() stored for the peers, so the result doesn't depend on the order of the Zombies.
+	 * @see kaninator.game.Zombie#act(kaninator.mechanics.SpatialIndex)
+	 * @see kaninator.game.Model#update()
+	 */
+	public void act()
+	{
+		for(int s = 0; s < size; s++)
+		{
+			if(dead[s])
+				continue;
+
+			if(distance[s] < Zombie.MAX_ACTIVE_DISTANCE)
+			{
+				int leader = findLeader(s);
+				if(leader >= 0)
+				{
+					vel_x[s] = observedVel_x[leader];
+					vel_y[s] = observedVel_y[leader];
+					setState(s, observedState[leader]);
+				}
+				else
+					follow(s);
+
+				cursor[s] += speeds[state[s]];
+				if(cursor[s] >= frames[state[s]].length)
+					cursor[s] = locks[state[s]] ? cursor[s] - speeds[state[s]] : 0.0;
+			}
+			else
+			{
+				move_x(s, 0);
+				move_y(s, 0);
+				cursor[s] = 0.0;
+			}
+		}
+
+		for(int s = 0; s < size; s++)
+		{
+			if(dead[s])
+				continue;
+
+			vel_h[s] -= Model.GRAVITY;
+			h[s] += vel_h[s];
+			double mapHeight = map.getHeightAt(x[s], y[s]);
+			if(Model.onGround(vel_h[s], h[s], mapHeight))
+			{
+				vel_h[s] = 0.0;
+				h[s] = mapHeight;
+			}
+
+			x[s] = Model.step_x(map, x[s], y[s], h[s], vel_x[s]);
+			y[s] = Model.step_y(map, x[s], y[s], h[s], vel_y[s]);
+
+			shadow_h[s] = mapHeight;
+		}
+	}
+
+	/**
+	 * Adds the shadows and the active frames of all the Zombies to the tail of a snapshot.
+	 * @param snapshot The snapshot.
+	 * @see kaninator.mechanics.WorldSnapshot#add(Drawable, double, double, double, double, double, double)
+	 */
+	public void project(WorldSnapshot snapshot)
+	{
+		for(int s = 0; s < size; s++)
+		{
+			snapshot.add(shadow, prev_x[s], prev_y[s], prevShadow_h[s], x[s], y[s], shadow_h[s]);
+			snapshot.add(getFrame(s), prev_x[s], prev_y[s], prev_h[s], x[s], y[s], h[s]);
+		}
+	}
+
+	/**
+	 * Finds a Zombie a DynamicObject, like a bullet, collides with, the same way as DynamicObject.collide() with the Zombie as the other object.
+	 * Only reads the horde, so it can be called from several threads at once.
+	 * @param obj The DynamicObject.
+	 * @return The id of a Zombie the object collides with, -1 if there is none.
+	 * @see kaninator.mechanics.DynamicObject#collide(DynamicObject)
+	 */
+	public int hitBy(DynamicObject obj)
+	{
+		double reach = obj.getRadius() + radius;
+		int min_x = cell(obj.get_x() - reach), max_x = cell(obj.get_x() + reach);
+		int min_y = cell(obj.get_y() - reach), max_y = cell(obj.get_y() + reach);
+
+		for(int i = min_x; i <= max_x; i++)
+		{
+			for(int j = min_y; j <= max_y; j++)
+			{
+				int b = bucket(i, j);
+				for(int e = bucketStart[b]; e < bucketStart[b + 1]; e++)
+				{
+					if(sortedCell_x[e] != i || sortedCell_y[e] != j)
+						continue;
+
+					double d_x = sorted_x[e] - obj.get_x();
+					double d_y = sorted_y[e] - obj.get_y();
+					int s = sorted[e];
+					if(d_x * d_x + d_y * d_y <= reach * reach && Math.abs(obj.getHeight() - h[s]) <= getFrame(s).getHeight())
+						return ids[s];
+				}
+			}
+		}
+
+		return FREE;
+	}
+
+	/**
+	 * Checks if any Zombie collides with a DynamicObject, like the player, the same way as DynamicObject.collide() with the Zombie as the calling object.
+	 * @param obj The DynamicObject.
+	 * @return True if a Zombie collides with the object.
+	 * @see kaninator.mechanics.DynamicObject#collide(DynamicObject)
+	 */
+	public boolean touches(DynamicObject obj)
+	{
+		double reach = obj.getRadius() + radius;
+		double reach_h = obj.getAnimation().getHeight();
+		int min_x = cell(obj.get_x() - reach), max_x = cell(obj.get_x() + reach);
+		int min_y = cell(obj.get_y() - reach), max_y = cell(obj.get_y() + reach);
+
+		for(int i = min_x; i <= max_x; i++)
+		{
+			for(int j = min_y; j <= max_y; j++)
+			{
+				int b = bucket(i, j);
+				for(int e = bucketStart[b]; e < bucketStart[b + 1]; e++)
+				{
+					if(sortedCell_x[e] != i || sortedCell_y[e] != j)
+						continue;
+
+					double d_x = sorted_x[e] - obj.get_x();
+					double d_y = sorted_y[e] - obj.get_y();
+					if(d_x * d_x + d_y * d_y <= reach * reach && Math.abs(h[sorted[e]] - obj.getHeight()) <= reach_h)
+						return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Finds the Zombie within MIN_DISTANCE_BETWEEN of a Zombie that is the closest to the player, if it is closer than the Zombie itself.
+	 * @param s The index of the Zombie.
+	 * @return The index of the leader, -1 if the Zombie leads itself.
+	 */
+	private int findLeader(int s)
+	{
+		double range = Zombie.MIN_DISTANCE_BETWEEN;
+		int min_x = cell(x[s] - range), max_x = cell(x[s] + range);
+		int min_y = cell(y[s] - range), max_y = cell(y[s] + range);
+
+		int leader = FREE;
+		double best = distance[s];
+		for(int i = min_x; i <= max_x; i++)
+		{
+			for(int j = min_y; j <= max_y; j++)
+			{
+				int b = bucket(i, j);
+				for(int e = bucketStart[b]; e < bucketStart[b + 1]; e++)
+				{
+					if(sortedCell_x[e] != i || sortedCell_y[e] != j)
+						continue;
+
+					double d_x = sorted_x[e] - x[s];
+					double d_y = sorted_y[e] - y[s];
+					int other = sorted[e];
+					if(distance[other] < best && d_x * d_x + d_y * d_y <= range * range)
+					{
+						leader = other;
+						best = distance[other];
+					}
+				}
+			}
+		}
+
+		return leader;
+	}
+
+	/**
+	 * Makes a Zombie walk along the flow field, or straight at the player, the same way as Zombie.follow().
+	 * @param s The index of the Zombie.
+	 */
+	private void follow(int s)
+	{
+		if(flowField != null && flowField.hasPath(x[s], y[s]))
+			walkTowards(s, flowField.getNext_x(x[s], y[s]), flowField.getNext_y(x[s], y[s]));
+		else
+			walkTowards(s, player.get_x(), player.get_y());
+	}
+
+	/**
+	 * Makes a Zombie walk towards a point, in one of the eight directions it can face, the same way as Zombie.walkTowards().
+	 * @param s The index of the Zombie.
+	 * @param target_x The x coordinate of the point in the internal, isometric, coordinate system.
+	 * @param target_y The y coordinate of the point in the internal, isometric, coordinate system.
+	 */
+	private void walkTowards(int s, double target_x, double target_y)
+	{
+		int heading = Zombie.heading(target_x - x[s], target_y - y[s]);
+		if(Zombie.HEADING_Y[heading] == 0)
+		{
+			move_x(s, Zombie.HEADING_X[heading]);
+			move_y(s, 0);
+		}
+		else
+		{
+			move_y(s, Zombie.HEADING_Y[heading]);
+			move_x(s, Zombie.HEADING_X[heading]);
+		}
+		setState(s, heading);
+	}
+
+	/**
+	 * Sets the speed of a Zombie on the internal, isometric, x-axis, the same way as Model.move_x().
+	 * @param s The index of the Zombie.
+	 * @param direction 0 if there is no movement, -1 or 1 for the direction of the movement.
+	 * @see kaninator.game.Model#move_x(int)
+	 */
+	private void move_x(int s, int direction)
+	{
+		double cross = Model.crossSpeed(vel_x[s], vel_y[s], diagonalSpeed);
+		vel_x[s] = Model.moveSpeed(vel_x[s], vel_y[s], direction, Zombie.ZOMBIE_SPEED, diagonalSpeed);
+		vel_y[s] = cross;
+	}
+
+	/**
+	 * Sets the speed of a Zombie on the internal, isometric, y-axis, the same way as Model.move_y().
+	 * @param s The index of the Zombie.
+	 * @param direction 0 if there is no movement, -1 or 1 for the direction of the movement.
+	 * @see kaninator.game.Model#move_y(int)
+	 */
+	private void move_y(int s, int direction)
+	{
+		double cross = Model.crossSpeed(vel_y[s], vel_x[s], diagonalSpeed);
+		vel_y[s] = Model.moveSpeed(vel_y[s], vel_x[s], direction, Zombie.ZOMBIE_SPEED, diagonalSpeed);
+		vel_x[s] = cross;
+	}
+
+	/**
+	 * Sets the state of a Zombie, and rewinds its animation if the state changes, the same way as DynamicObject.setState().
+	 * @param s The index of the Zombie.
+	 * @param _state The new state.
+	 * @see kaninator.mechanics.DynamicObject#setState(int)
+	 */
+	private void setState(int s, int _state)
+	{
+		if(_state < 0 || _state >= frames.length)
+			return;
+
+		if(state[s] != _state)
+		{
+			state[s] = _state;
+			cursor[s] = 0.0;
+		}
+	}
+
+	/**
+	 * Gets the active frame of a Zombie.
+	 * @param s The index of the Zombie.
+	 * @return The Drawable of the frame.
+	 */
+	private Drawable getFrame(int s)
+	{
+		return frames[state[s]][(int)cursor[s]];
+	}
+
+	/**
+	 * Converts a coordinate into a cell coordinate of the grid.
+	 * @param coord The coordinate in the internal, isometric, coordinate system.
+	 * @return The cell coordinate.
+	 */
+	private int cell(double coord)
+	{
+		return (int)Math.floor(coord / cellSize);
+	}
+
+	/**
+	 * Hashes the cell coordinates into a bucket, the same way as the SpatialIndex.
+	 * @param i The x coordinate of the cell.
+	 * @param j The y coordinate of the cell.
+	 * @return The index of the bucket the cell belongs to.
+	 */
+	private int bucket(int i, int j)
+	{
+		return ((i * 73856093) ^ (j * 19349663)) & mask;
+	}
+
+	/**
+	 * Creates the bucket table of the grid, with at least as many buckets as Zombies.
+	 * @param capacity The number of Zombies.
+	 */
+	private void createBuckets(int capacity)
+	{
+		int count = Integer.highestOneBit(capacity - 1) << 1;
+		mask = count - 1;
+		bucketStart = new int[count + 1];
+		bucketFill = new int[count];
+	}
+
+	/**
+	 * Doubles the capacity of the horde, the bucket table grows along with it. The grid has to be rebuilt with index() afterwards.
+	 */
+	private void grow()
+	{
+		int capacity = x.length * 2;
+
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		h = Arrays.copyOf(h, capacity);
+		shadow_h = Arrays.copyOf(shadow_h, capacity);
+		prev_x = Arrays.copyOf(prev_x, capacity);
+		prev_y = Arrays.copyOf(prev_y, capacity);
+		prev_h = Arrays.copyOf(prev_h, capacity);
+		prevShadow_h = Arrays.copyOf(prevShadow_h, capacity);
+		vel_x = Arrays.copyOf(vel_x, capacity);
+		vel_y = Arrays.copyOf(vel_y, capacity);
+		vel_h = Arrays.copyOf(vel_h, capacity);
+		cursor = Arrays.copyOf(cursor, capacity);
+		state = Arrays.copyOf(state, capacity);
+		distance = Arrays.copyOf(distance, capacity);
+		observedVel_x = Arrays.copyOf(observedVel_x, capacity);
+		observedVel_y = Arrays.copyOf(observedVel_y, capacity);
+		observedState = Arrays.copyOf(observedState, capacity);
+		dead = Arrays.copyOf(dead, capacity);
+		removed = Arrays.copyOf(removed, capacity);
+		ids = Arrays.copyOf(ids, capacity);
+
+		slots = Arrays.copyOf(slots, capacity);
+		freeIds = Arrays.copyOf(freeIds, capacity);
+		pending = Arrays.copyOf(pending, capacity);
+
+		buckets = Arrays.copyOf(buckets, capacity);
+		sorted = Arrays.copyOf(sorted, capacity);
+		sortedCell_x = Arrays.copyOf(sortedCell_x, capacity);
+		sortedCell_y = Arrays.copyOf(sortedCell_y, capacity);
+		sorted_x = Arrays.copyOf(sorted_x, capacity);
+		sorted_y = Arrays.copyOf(sorted_y, capacity);
+		createBuckets(capacity);
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			ArrayList<ArrayList<StaticObject>> tiles = new ArrayList<ArrayList<StaticObject>>();
+			for(int i = 0; i < 32; i++)
+			{
+				ArrayList<StaticObject> row = new ArrayList<StaticObject>();
+				for(int j = 0; j < 32; j++)
+					row.add(new FlatTile(null, null, 0.0, i, j));
+				tiles.add(row);
+			}
+			Map map = new Map(tiles);
+			DynamicObject player = new DynamicObject(AnimationFactory.getAnimations("/resources/theSheet.png", true, 64, 64, 0.30), 10.0);
+			player.setPos(1000.0, 1000.0);
+			ArrayList<Animation> anims = AnimationFactory.getAnimations("/resources/zombSheet.png", true, 64, 64, 0.25);
+			Horde horde = new Horde(anims, map, null, player, 5.0, 4);
+			if(horde.size() != 0)
+				failedTest("Horde not empty initially.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing spawn and ids..");
+			int ids[] = new int[100];
+			horde.remove(0);
+			for(int i = 0; i < ids.length; i++)
+				ids[i] = horde.spawn(800.0 + (i % 10) * 40.0, 800.0 + (i / 10) * 40.0);
+			for(int i = 0; i < ids.length; i++)
+				if(horde.get_x(ids[i]) != 800.0 + (i % 10) * 40.0 || horde.get_y(ids[i]) != 800.0 + (i / 10) * 40.0)
+					failedTest("Id " + ids[i] + " gives the wrong Zombie.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing deferred removal..");
+			for(int i = 0; i < ids.length; i += 3)
+			{
+				horde.remove(ids[i]);
+				horde.remove(ids[i]);
+			}
+			if(horde.size() != ids.length)
+				failedTest("Zombies removed before the flush.");
+			horde.flush();
+			if(horde.size() != ids.length - (ids.length + 2) / 3)
+				failedTest("Invalid number of Zombies after the flush: " + horde.size());
+			for(int i = 1; i < ids.length; i++)
+				if(i % 3 != 0 && (horde.get_x(ids[i]) != 800.0 + (i % 10) * 40.0 || horde.get_y(ids[i]) != 800.0 + (i / 10) * 40.0))
+					failedTest("Id " + ids[i] + " broken by the flush.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the same movement as Zombie objects..");
+			Horde single = new Horde(anims, map, null, player, 5.0, 4);
+			ArrayList<Zombie> zombies = new ArrayList<Zombie>();
+			int singleIds[] = new int[8];
+			for(int i = 0; i < singleIds.length; i++)
+			{
+				double pos_x = 1000.0 + 200.0 * Math.cos(i * Math.PI / 4.0);
+				double pos_y = 1000.0 + 200.0 * Math.sin(i * Math.PI / 4.0);
+				Zombie zombie = new Zombie(AnimationFactory.cloneAnimations(anims), map, null, SoundFactory.getSilentClip(), player, 0.0, 0.0, 5.0);
+				zombie.reset(pos_x, pos_y);
+				zombies.add(zombie);
+				singleIds[i] = single.spawn(pos_x, pos_y);
+			}
+			kaninator.mechanics.SpatialIndex<Zombie> index = new kaninator.mechanics.SpatialIndex<Zombie>();
+			//Stops before the Zombies get close enough to each other to flock
+			for(int frame = 0; frame < 20; frame++)
+			{
+				index.clear();
+				for(Zombie zombie : zombies)
+					index.insert(zombie, zombie.getMainObject());
+				for(Zombie zombie : zombies)
+					zombie.observe();
+				for(Zombie zombie : zombies)
+					zombie.act(index);
+
+				single.index();
+				single.observe();
+				single.act();
+				for(int i = 0; i < singleIds.length; i++)
+				{
+					DynamicObject obj = zombies.get(i).getMainObject();
+					if(obj.get_x() != single.get_x(singleIds[i]) || obj.get_y() != single.get_y(singleIds[i])
+							|| obj.getHeight() != single.getHeight(singleIds[i]) || obj.getState() != single.getState(singleIds[i]))
+						failedTest("Zombie " + i + " moved differently on frame " + frame);
+				}
+			}
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the same path as a Zombie object..");
+			ArrayList<ArrayList<StaticObject>> ridged = new ArrayList<ArrayList<StaticObject>>();
+			for(int i = 0; i < 32; i++)
+			{
+				ArrayList<StaticObject> row = new ArrayList<StaticObject>();
+				for(int j = 0; j < 32; j++)
+					row.add(new FlatTile(null, null, (j == 17 && i > 8 && i < 24) ? 200.0 : 0.0, j, i));
+				ridged.add(row);
+			}
+			Map ridgedMap = new Map(ridged);
+			DynamicObject prey = new DynamicObject(AnimationFactory.getAnimations("/resources/theSheet.png", true, 64, 64, 0.30), 10.0);
+			Horde lone = new Horde(anims, ridgedMap, null, prey, 5.0, 1);
+			Zombie walker = new Zombie(AnimationFactory.cloneAnimations(anims), ridgedMap, null, SoundFactory.getSilentClip(), prey, 0.0, 0.0, 5.0);
+			walker.reset(1000.0, 1000.0);
+			int loneId = lone.spawn(1000.0, 1000.0);
+			kaninator.mechanics.SpatialIndex<Zombie> alone = new kaninator.mechanics.SpatialIndex<Zombie>();
+			//The player circles the Zombie, so it walks in every direction and runs into the ridge
+			for(int tick = 0; tick < 400; tick++)
+			{
+				double angle = (tick / 25) * Math.PI / 4.0;
+				prey.setPos(walker.getMainObject().get_x() + 250.0 * Math.cos(angle), walker.getMainObject().get_y() + 250.0 * Math.sin(angle));
+				alone.clear();
+				alone.insert(walker, walker.getMainObject());
+				walker.observe();
+				walker.act(alone);
+
+				lone.index();
+				lone.observe();
+				lone.act();
+				DynamicObject obj = walker.getMainObject();
+				if(obj.get_x() != lone.get_x(loneId) || obj.get_y() != lone.get_y(loneId)
+						|| obj.getHeight() != lone.getHeight(loneId) || obj.getState() != lone.getState(loneId))
+					failedTest("The Zombies took different paths on tick " + tick);
+			}
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing collisions..");
+			single.index();
+			int target = singleIds[0];
+			DynamicObject bullet = new DynamicObject(null, 4.0);
+			bullet.setPos(single.get_x(target) + 2.0, single.get_y(target));
+			bullet.setHeight(single.getHeight(target));
+			if(single.hitBy(bullet) != target)
+				failedTest("A bullet on top of a Zombie didn't hit it.");
+			bullet.setPos(-500.0, -500.0);
+			if(single.hitBy(bullet) != -1)
+				failedTest("A bullet far away hit a Zombie.");
+			if(single.touches(player))
+				failedTest("A Zombie far away touched the player.");
+			player.setPos(single.get_x(target), single.get_y(target) + single.getRadius());
+			if(!single.touches(player))
+				failedTest("A Zombie next to the player didn't touch it.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing kills..");
+			single.kill(target);
+			double dead_x = single.get_x(target);
+			single.observe();
+			single.act();
+			if(!single.isDead(target) || single.get_x(target) != dead_x)
+				failedTest("A dead Zombie moved.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
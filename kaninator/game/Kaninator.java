@@ -3,10 +3,15 @@
  */
 package kaninator.game;
 
+import java.awt.AWTException;
 import java.awt.Dimension;
+import java.io.IOException;
 
+import kaninator.graphics.ActiveScreen;
+import kaninator.graphics.Canvas;
 import kaninator.graphics.Drawable;
 import kaninator.graphics.ImageFactory;
+import kaninator.graphics.OffscreenCanvas;
 import kaninator.graphics.Screen;
 import kaninator.mechanics.*;
 import kaninator.io.*;
@@ -26,18 +31,110 @@ public class Kaninator
 {
 	public static final int SENTINEL = -1, NEW_GAME = 0, RESUME_GAME = 1, SETTINGS = 2, HIGH_SCORES = 3, MAIN_MENU = 4, GAME_OVER = 5;
 	public static final int FRAME_DELAY = 1000/30;
+	public static final int TICK_RATE = 30;
+	public static final int MAX_FPS = 120;
 	public static final int DEBOUNCE_DELAY = 1000/5;
+	private static final String TITLE = "Kaninator 0.1 BETA";
+	private static final String PROFILE_PATH = "profile.csv";
+	private static final String MAP_PATH = "/resources/gamemap.map";
+	private static final long HEADLESS_SEED = 0;
 	
 	/**
 	 * The main function. A state machine that switches between the GameStates in
 	 * an array until one of them returns the SENTINEL return value instead of an index
 	 * to the next state to be performed, where it promptly shuts down the program. 
-	 * @param args The command line parameters passed to the program. Not used.
+	 * @param args The command line parameters passed to the program. "-active" draws the game with ActiveScreen instead of Screen,
+	 * "-profile" starts the game with the FrameProfiler enabled, "-headless N" runs N frames of a game without a window and prints the timings.
+	 * "-record FILE" records the input of the first game to a file, "-replay FILE" plays the first game, or the headless one, from a recording.
+	 * "-threads N" updates the entities on N threads instead of one per processor, the game plays out the same with any number of threads.
+	 * "-tickrate N" updates the game N times per second instead of TICK_RATE, which also changes the speed of the game.
+	 * "-horde N" stores the Zombies in a Horde and lets the game have up to N of them.
+	 * @see kaninator.graphics.ActiveScreen
+	 * @see kaninator.io.InputRecorder
+	 * @see kaninator.io.InputReplay
+	 * @see kaninator.graphics.OffscreenCanvas
+	 * @see kaninator.game.FrameProfiler
+	 * @see kaninator.game.Horde
 	 */
 	public static void main(String args[])
 	{
 		//All the possible states of the game
 		GameState states[] = new GameState[4];
+		
+		int headlessFrames = 0, threads = 0, tickRate = TICK_RATE, hordeSize = 0;
+		boolean active = false, profile = false;
+		String recordPath = null, replayPath = null;
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equals("-active"))
+				active = true;
+			else if(args[i].equals("-profile"))
+				profile = true;
+			else if(args[i].equals("-record") && i + 1 < args.length)
+				recordPath = args[++i];
+			else if(args[i].equals("-replay") && i + 1 < args.length)
+				replayPath = args[++i];
+			else if(args[i].equals("-headless") && i + 1 < args.length)
+			{
+				try
+				{
+					headlessFrames = Integer.parseInt(args[++i]);
+				}
+				catch(NumberFormatException e)
+				{
+					System.out.println("ERR: Invalid number of frames: " + args[i]);
+				}
+			}
+			else if(args[i].equals("-threads") && i + 1 < args.length)
+			{
+				try
+				{
+					threads = Integer.parseInt(args[++i]);
+				}
+				catch(NumberFormatException e)
+				{
+					System.out.println("ERR: Invalid number of threads: " + args[i]);
+				}
+			}
+			else if(args[i].equals("-tickrate") && i + 1 < args.length)
+			{
+				try
+				{
+					tickRate = Integer.parseInt(args[++i]);
+				}
+				catch(NumberFormatException e)
+				{
+					System.out.println("ERR: Invalid tick rate: " + args[i]);
+				}
+			}
+			else if(args[i].equals("-horde") && i + 1 < args.length)
+			{
+				try
+				{
+					hordeSize = Integer.parseInt(args[++i]);
+				}
+				catch(NumberFormatException e)
+				{
+					System.out.println("ERR: Invalid horde size: " + args[i]);
+				}
+			}
+		}
+		//Has to be set before anything touches the graphics environment
+		if(headlessFrames > 0)
+			System.setProperty("java.awt.headless", "true");
+		
+		InputReplay replay = null;
+		if(replayPath != null)
+		{
+			try
+			{
+				replay = new InputReplay(replayPath);
+			}
+			catch(IOException e)
+			{
+				System.out.println("ERR: Couldn't read the recording, playing normally:\n" + e);
+			}
+		}
 
 		//Creates the dependencies for the components of the game.
 		Drawable background = ImageFactory.getImage("/resources/background.jpg");
@@ -47,14 +144,61 @@ public class Kaninator
 									new Dimension(1024, 600),
 									new Dimension(1024, 768)};
 		
+		ParallelUpdater updater = new ParallelUpdater(threads);
+		if(headlessFrames > 0)
+		{
+			runHeadless(resolutions[2], background, headlessFrames, replay, updater, hordeSize);
+			System.exit(0);
+		}
+		
 		//Creates the components used in the different states
 		JFrame frame = new JFrame();
-		Screen screen = new Screen(frame, resolutions, "Kaninator 0.1 BETA");
+		Canvas screen = null;
+		if(active)
+		{
+			try
+			{
+				screen = new ActiveScreen(frame, resolutions, TITLE);
+			}
+			catch(AWTException e)
+			{
+				System.out.println("ERR: Active rendering not available, using Screen instead:\n" + e);
+			}
+		}
+		if(screen == null)
+			screen = new Screen(frame, resolutions, TITLE);
 		GUI gui = new GUI(screen);
 		Camera camera = new Camera(screen, gui, background);
 		
+		//The input of the first game is recorded, if requested
+		InputRecorder recorder = null;
+		if(recordPath != null && replay == null)
+		{
+			try
+			{
+				recorder = new InputRecorder(recordPath, System.nanoTime());
+			}
+			catch(IOException e)
+			{
+				System.out.println("ERR: Couldn't create the recording: " + e);
+			}
+		}
+		
+		//The profiled frames and the recording are written to files when the program exits, however it exits
+		final FrameProfiler profiler = new FrameProfiler(gui, profile);
+		final InputRecorder finalRecorder = recorder;
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			public void run()
+			{
+				profiler.dump(PROFILE_PATH);
+				if(finalRecorder != null)
+					finalRecorder.close();
+			}
+		});
+		
 		Keyboard keyboard = new Keyboard();
-		Mouse mouse = new Mouse(screen.getInsets());
+		Mouse mouse = new Mouse(screen);
 		frame.addKeyListener(keyboard);
 		frame.addMouseListener(mouse.getMouseKeys());
 		frame.addMouseMotionListener(mouse.getMouseMotion());
@@ -88,7 +232,24 @@ public class Kaninator
 				case NEW_GAME:
 						try
 						{
-							states[0] = game = new Game(camera, gui, keyboard, mouse, screen, "/resources/gamemap.map");
+							long seed = System.nanoTime();
+							if(replay != null)
+								seed = replay.getSeed();
+							else if(recorder != null)
+								seed = recorder.getSeed();
+							
+							states[0] = game = new Game(camera, gui, keyboard, mouse, screen, profiler, updater, seed, MAP_PATH);
+							game.setTickRate(tickRate);
+							if(hordeSize > 0)
+								game.useHorde(hordeSize);
+							
+							//Only the first game is replayed or recorded
+							if(replay != null)
+								game.setReplay(replay);
+							else if(recorder != null)
+								game.setRecorder(recorder);
+							replay = null;
+							recorder = null;
 						}
 						catch(GameException e)
 						{
@@ -109,4 +270,62 @@ public class Kaninator
 		
 		System.exit(0);
 	}
+	
+	/**
+	 * Runs a game on an OffscreenCanvas as fast as possible, with the FrameProfiler enabled.
+	 * The input comes from the recording if there is one, otherwise there is no input and the game is started with a fixed seed,
+	 * so the hash of the last frame is the same on every run.
+	 * Prints the percentiles of the frame and render times, a hash of the last frame and the statistics of the pools,
+	 * and writes the frames to the profile file.
+	 * @param resolution The size of the frames.
+	 * @param background The background image of the camera.
+	 * @param frames The number of frames to run, fewer if the player dies or the recording ends before that.
+	 * @param replay The recording to replay, null for none.
+	 * @param updater The updater the entities are updated with.
+	 * @param hordeSize The number of Zombies in the Horde, 0 to use Zombie objects.
+	 * @see kaninator.game.Game#step()
+	 */
+	private static void runHeadless(Dimension resolution, Drawable background, int frames, InputReplay replay, ParallelUpdater updater, int hordeSize)
+	{
+		Dimension sizes[] = {resolution};
+		OffscreenCanvas canvas = new OffscreenCanvas(sizes);
+		GUI gui = new GUI(canvas);
+		Camera camera = new Camera(canvas, gui, background);
+		//The timings aren't shown, they would change the hash
+		FrameProfiler profiler = new FrameProfiler(null, true);
+		
+		Game game;
+		try
+		{
+			long seed = (replay != null) ? replay.getSeed() : HEADLESS_SEED;
+			game = new Game(camera, gui, new Keyboard(), new Mouse(canvas), canvas, profiler, updater, seed, MAP_PATH);
+			game.setReplay(replay);
+			if(hordeSize > 0)
+				game.useHorde(hordeSize);
+		}
+		catch(GameException e)
+		{
+			System.out.println("ERR: Couldn't create game: \n" + e);
+			return;
+		}
+		
+		game.enter();
+		int frame = 0;
+		long start = System.nanoTime();
+		while(frame < frames && game.hasInput() && !game.step())
+			frame++;
+		long elapsed = System.nanoTime() - start;
+		game.leave();
+		
+		System.out.println("Frames: " + frame + ", threads: " + updater.getThreads() + ", total: " + elapsed / 1000000 + " ms");
+		System.out.println("Frame p50/p95/p99: " + profiler.getPercentile(FrameProfiler.FRAME, 0.50) / 1000 + " / " +
+							profiler.getPercentile(FrameProfiler.FRAME, 0.95) / 1000 + " / " +
+							profiler.getPercentile(FrameProfiler.FRAME, 0.99) / 1000 + " us");
+		System.out.println("Render p50/p95/p99: " + profiler.getPercentile(FrameProfiler.RENDER, 0.50) / 1000 + " / " +
+							profiler.getPercentile(FrameProfiler.RENDER, 0.95) / 1000 + " / " +
+							profiler.getPercentile(FrameProfiler.RENDER, 0.99) / 1000 + " us");
+		System.out.println("Last frame hash: " + Long.toHexString(canvas.hash()));
+		game.printPools();
+		profiler.dump(PROFILE_PATH);
+	}
 }
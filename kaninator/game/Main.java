@@ -58,7 +58,6 @@ public class Main extends GameState
 	 */	
 	private void render()
 	{
-		camera.clearGUI();
 		menu.render();
 		camera.renderGUI();
 	}
@@ -96,7 +95,6 @@ public class Main extends GameState
 			
 		}
 		
-		camera.clearGUI();
 		menu.clear();
 		
 		return (retvalue == Kaninator.MAIN_MENU) ? Kaninator.SENTINEL : retvalue;
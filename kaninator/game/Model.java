@@ -4,7 +4,6 @@
 package kaninator.game;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 
 import kaninator.graphics.*;
 import kaninator.io.MapFactory;
@@ -13,18 +12,20 @@ import kaninator.mechanics.DynamicObject;
 /**
  * Contains all the relevant methods for moving a model around in the game.
  * Used to strap physics and controllable movement onto a DynamicObject.
+ * The steps of the movement and the physics are static, so the Horde moves its Zombies with exactly the same rules.
  * @see kaninator.mechanics.DynamicObject
  */
 public class Model
 {
-	private static final double GROUND_TOLERANCE = 4.0;
+	static final double GROUND_TOLERANCE = 4.0;
+	static final double GRAVITY = 1.5;
 	private double normalSpeed;
 	private double diagonalSpeed;
 	private double jumpSpeed = 13;
-	private double gravity = 1.5;
 	
 	private double vel_x, vel_y, vel_height;
 	private DynamicObject model, shadow;
+	private DynamicObject components[];
 	private Map map;
 
 	
@@ -52,40 +53,56 @@ public class Model
 		model.setPos(x, y);
 		model.setHeight(map.getHeight(model));
 
-		ArrayList<Animation> shadowAnimList = AnimationFactory.createAnimations(new Shadow(radius * 2));
+		ArrayList<Animation> shadowAnimList = AnimationFactory.createAnimations(Shadow.getShadow(radius * 2));
 	
 		shadow = new DynamicObject(shadowAnimList, radius);
 		shadow.setPos(x, y);
+		components = new DynamicObject[] {shadow, model};
 		
 		normalSpeed = speed;
 		diagonalSpeed = Math.sqrt(normalSpeed*normalSpeed/2.0);
 	}
 
 	
+	/**
+	 * Moves the model to a new position and puts it into the state it was created in:
+	 * standing still on the ground, in the first state, with the first frame of the animation.
+	 * Used to reuse the model for a new object.
+	 * @param x The new x coordinate for the model in the internal, isometric coordinate system.
+	 * @param y The new y coordinate for the model in the internal, isometric coordinate system.
+	 */
+	public void place(double x, double y)
+	{
+		vel_x = vel_y = vel_height = 0.0;
+		
+		model.setState(0);
+		model.reset();
+		model.setPos(x, y);
+		model.setHeight(map.getHeight(model));
+		model.forgetPosition();
+		
+		shadow.setPos(x, y);
+		shadow.setHeight(0.0);
+		shadow.forgetPosition();
+	}
+	
 	/**
 	 * Updates the model, in essence checking for collisions, moving it into the
 	 * correct direction and moving the shadow correspondingly.
 	 */
 	public void update()
 	{
-		vel_height -= gravity;
+		vel_height -= GRAVITY;
 		model.move_vert(vel_height);
 		double mapHeight = map.getHeight(model);
-		if(onGround())
+		if(onGround(vel_height, model.getHeight(), mapHeight))
 		{
 			vel_height = 0.0;
 			model.setHeight(mapHeight);
 		}
 
-		double old_x = model.get_x();
-		double old_y = model.get_y();
-		model.move_x(vel_x);
-		if(map.getHeight(model) >= model.getHeight() + MapFactory.getTileHeight()/2.0)
-			model.setPos(old_x, model.get_y());
-		
-		model.move_y(vel_y);
-		if(map.getHeight(model) >= model.getHeight() + MapFactory.getTileHeight()/2.0)
-			model.setPos(model.get_x(), old_y);
+		model.setPos(step_x(map, model.get_x(), model.get_y(), model.getHeight(), vel_x), model.get_y());
+		model.setPos(model.get_x(), step_y(map, model.get_x(), model.get_y(), model.getHeight(), vel_y));
 		
 		shadow.setHeight(mapHeight);
 		shadow.setPos(model.get_x(), model.get_y());
@@ -102,15 +119,9 @@ public class Model
 		else if(direction < 0)
 			direction = -1;
 		
-		if(Math.abs(vel_x) <= 0.001 || Math.abs(vel_y) <= 0.001)
-		{
-			vel_x = normalSpeed * direction;
-		}
-		else
-		{
-			vel_y = diagonalSpeed * Math.signum(vel_y);
-			vel_x = diagonalSpeed * direction;
-		}
+		double cross = crossSpeed(vel_x, vel_y, diagonalSpeed);
+		vel_x = moveSpeed(vel_x, vel_y, direction, normalSpeed, diagonalSpeed);
+		vel_y = cross;
 	}
 	
 	/**
@@ -124,15 +135,92 @@ public class Model
 		else if(direction < 0)
 			direction = -1;
 		
-		if(Math.abs(vel_x) <= 0.001 || Math.abs(vel_y) <= 0.001)
-		{
-			vel_y = normalSpeed * direction;
-		}
-		else
-		{
-			vel_x = diagonalSpeed * Math.signum(vel_x);
-			vel_y = diagonalSpeed * direction;
-		}
+		double cross = crossSpeed(vel_y, vel_x, diagonalSpeed);
+		vel_y = moveSpeed(vel_y, vel_x, direction, normalSpeed, diagonalSpeed);
+		vel_x = cross;
+	}
+	
+	/**
+	 * Calculates the velocity on the axis a model is set moving along. The speed is divided between the axes
+	 * if the model already moves along the other one, so it doesn't move faster diagonally.
+	 * @param vel The velocity on the axis.
+	 * @param other The velocity on the other axis.
+	 * @param direction 0 if there is no movement, -1 or 1 for the direction of the movement.
+	 * @param normalSpeed The speed when moving along a single axis.
+	 * @param diagonalSpeed The speed on either axis when moving diagonally.
+	 * @return The new velocity on the axis.
+	 * @see kaninator.game.Model#move_x(int)
+	 */
+	static double moveSpeed(double vel, double other, int direction, double normalSpeed, double diagonalSpeed)
+	{
+		if(Math.abs(vel) <= 0.001 || Math.abs(other) <= 0.001)
+			return normalSpeed * direction;
+		
+		return diagonalSpeed * direction;
+	}
+	
+	/**
+	 * Calculates the velocity on the other axis when a model is set moving along an axis.
+	 * @param vel The velocity on the axis.
+	 * @param other The velocity on the other axis.
+	 * @param diagonalSpeed The speed on either axis when moving diagonally.
+	 * @return The new velocity on the other axis.
+	 * @see kaninator.game.Model#moveSpeed(double, double, int, double, double)
+	 */
+	static double crossSpeed(double vel, double other, double diagonalSpeed)
+	{
+		if(Math.abs(vel) <= 0.001 || Math.abs(other) <= 0.001)
+			return other;
+		
+		return diagonalSpeed * Math.signum(other);
+	}
+	
+	/**
+	 * Checks if a model has landed on the ground.
+	 * @param vel_height The vertical velocity of the model.
+	 * @param height The height of the model.
+	 * @param mapHeight The height of the map under the model.
+	 * @return True if the model isn't moving up and is at most GROUND_TOLERANCE above the ground.
+	 */
+	static boolean onGround(double vel_height, double height, double mapHeight)
+	{
+		return vel_height <= 0.0 && height <= mapHeight + GROUND_TOLERANCE;
+	}
+	
+	/**
+	 * Moves a model along the x-axis, unless the map in front of it is too high to climb.
+	 * @param map The map the model moves on.
+	 * @param x The x coordinate of the model.
+	 * @param y The y coordinate of the model.
+	 * @param height The height of the model.
+	 * @param vel_x The velocity on the x-axis.
+	 * @return The new x coordinate.
+	 */
+	static double step_x(Map map, double x, double y, double height, double vel_x)
+	{
+		double new_x = x + vel_x;
+		if(map.getHeightAt(new_x, y) >= height + MapFactory.getTileHeight()/2.0)
+			return x;
+		
+		return new_x;
+	}
+	
+	/**
+	 * Moves a model along the y-axis, unless the map in front of it is too high to climb.
+	 * @param map The map the model moves on.
+	 * @param x The x coordinate of the model.
+	 * @param y The y coordinate of the model.
+	 * @param height The height of the model.
+	 * @param vel_y The velocity on the y-axis.
+	 * @return The new y coordinate.
+	 */
+	static double step_y(Map map, double x, double y, double height, double vel_y)
+	{
+		double new_y = y + vel_y;
+		if(map.getHeightAt(x, new_y) >= height + MapFactory.getTileHeight()/2.0)
+			return y;
+		
+		return new_y;
 	}
 	
 	/**
@@ -196,8 +284,7 @@ public class Model
 	 */
 	public boolean onGround()
 	{
-		double mapHeight = map.getHeight(model);
-		return vel_height <= 0.0 && model.getHeight() <= mapHeight + GROUND_TOLERANCE;
+		return onGround(vel_height, model.getHeight(), map.getHeight(model));
 	}
 	
 	/**
@@ -228,6 +315,16 @@ public class Model
 		model.setState(_state);
 	}
 	
+	/**
+	 * Stores the current positions of the model and its shadow, so they can be rendered in between ticks.
+	 * @see kaninator.mechanics.DynamicObject#storePosition()
+	 */
+	public void storePosition()
+	{
+		model.storePosition();
+		shadow.storePosition();
+	}
+	
 	/**
 	 * Advances the currently active Animation.
 	 * @see kaninator.graphics.Animation#advance()
@@ -256,14 +353,21 @@ public class Model
 	}
 	
 	/**
-	 * Gets all the DynamicObjects associated with the model. Ie. The model itself and its shadow.
-	 * @return A LinkedList of all the DynamicObjects associated with the model.
+	 * Gets the DynamicObject representing the shadow of the model.
+	 * @return The DynamicObject of the shadow.
+	 */
+	public DynamicObject getShadow()
+	{
+		return shadow;
+	}
+	
+	/**
+	 * Gets all the DynamicObjects associated with the model. Ie. The shadow and the model itself, in the order they are drawn.
+	 * The array is created once with the model and shared by all the callers, so it must not be modified.
+	 * @return An array of all the DynamicObjects associated with the model.
 	 */
-	public LinkedList<DynamicObject> getDynamicObjects()
+	public DynamicObject[] getDynamicObjects()
 	{
-		LinkedList<DynamicObject> objects = new LinkedList<DynamicObject>();
-		objects.add(shadow);
-		objects.add(model);
-		return objects;
+		return components;
 	}
 }
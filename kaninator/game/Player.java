@@ -4,11 +4,11 @@
 package kaninator.game;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 
 import kaninator.graphics.*;
 import kaninator.io.MapFactory;
 import kaninator.mechanics.DynamicObject;
+import kaninator.mechanics.SpatialIndex;
 import kaninator.sound.SoundClip;
 
 /**
@@ -28,10 +28,12 @@ public class Player
 	
 	private Gun gun;
 	private DynamicObject crosshair;
+	private DynamicObject components[];
 	
 	private Map map;
 	private Model model;
 	private SoundClip ow;
+	private ArrayList<Zombie> touching;
 	private int moveState;
 	private int hp, hurtDelay;
 	
@@ -53,10 +55,12 @@ public class Player
 		map = _map;
 		model = new Model(playerAnim, map, x, y, radius_constant, PLAYER_SPEED);
 		ow = _ow;
+		touching = new ArrayList<Zombie>();
 		
 		crosshair = new DynamicObject(crosshairAnim, 0);
 		gun = _gun;
 		gun.setWielder(model.getModel());
+		components = new DynamicObject[] {gun.getMainObject(), model.getShadow(), model.getModel(), crosshair};
 		
 		moveState = hurtDelay = 0;
 		hp = 100;
@@ -67,24 +71,22 @@ public class Player
 	/**
 	 * Updates the player. Advances the animation if the player is moving. Calls update for the model and the gun.
 	 * Performs collision detection with the Zombies provided as a parameter, calls hurt() if a collision occurs.
-	 * @param others The LinkedList of Zombies to perform collision detection against.
+	 * @param others The index of the Zombies to perform collision detection against.
 	 * @return False if the player is still alive, True if the player is deceased and the game is over.
 	 */
-	public boolean update(LinkedList<Zombie> others)
+	public boolean update(SpatialIndex<Zombie> others)
 	{
-		if(moveState > 0)
-			model.advanceAnimation();
-		
-		model.update();	
-		gun.update();
+		updateModel();
 		
 		if(others == null)
 			return (hp <= 0);
 			
-		for(Zombie other : others)
+		DynamicObject self = model.getModel();
+		others.queryRadius(self.get_x(), self.get_y(), self.getRadius() + others.getMaxRadius(), touching);
+		for(Zombie other : touching)
 		{
-			DynamicObject otherModel = other.getDynamicObjects().get(1);
-			if(otherModel.collide(model.getModel()))
+			DynamicObject otherModel = other.getMainObject();
+			if(otherModel.collide(self))
 			{
 				hurt(HURT_AMOUNT);
 			}
@@ -96,6 +98,36 @@ public class Player
 		return (hp <= 0);
 	}
 	
+	/**
+	 * Updates the player the same way as update(SpatialIndex), with the Zombies stored in a Horde.
+	 * @param horde The horde to perform collision detection against.
+	 * @return False if the player is still alive, True if the player is deceased and the game is over.
+	 */
+	public boolean update(Horde horde)
+	{
+		updateModel();
+		
+		if(horde.touches(model.getModel()))
+			hurt(HURT_AMOUNT);
+		
+		if(hurtDelay > 0)
+			hurtDelay--;
+		
+		return (hp <= 0);
+	}
+	
+	/**
+	 * Advances the animation if the player is moving, and calls update for the model and the gun.
+	 */
+	private void updateModel()
+	{
+		if(moveState > 0)
+			model.advanceAnimation();
+		
+		model.update();	
+		gun.update();
+	}
+	
 	/**
 	 * Approximates an internal isometric point from the on-screen coordinates provided as parameters. 
 	 * Aims the gun at that point and sets the crosshair position to that point as well.
@@ -251,14 +283,30 @@ public class Player
 	}
 	
 	/**
-	 * Gets all the DynamicObjects associated with the player. Ie. The player model itself,its shadow the gun and the crosshair.
-	 * @return A LinkedList of all the DynamicObjects associated with the player.
+	 * Getter for the DynamicObject representing the shadow of the player.
+	 * @return The DynamicObject of the shadow.
+	 */
+	public DynamicObject getShadow()
+	{
+		return model.getShadow();
+	}
+	
+	/**
+	 * Getter for the DynamicObject representing the crosshair.
+	 * @return The DynamicObject of the crosshair.
+	 */
+	public DynamicObject getCrosshair()
+	{
+		return crosshair;
+	}
+	
+	/**
+	 * Gets all the DynamicObjects associated with the player. Ie. The gun, the shadow, the player model itself and the crosshair.
+	 * The array is created once with the player and shared by all the callers, so it must not be modified.
+	 * @return An array of all the DynamicObjects associated with the player.
 	 */
-	public LinkedList<DynamicObject> getDynamicObjects()
+	public DynamicObject[] getDynamicObjects()
 	{
-		LinkedList<DynamicObject> objects = model.getDynamicObjects();
-		objects.addFirst(gun.getMainObject());
-		objects.add(crosshair);
-		return objects;
+		return components;
 	}
 }
@@ -0,0 +1,259 @@
+/**
+ * Contains all the high-level game functions and implements the actual gameplay.
+ */
+package kaninator.game;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of reusable game objects, like Bullets, Gore and Zombies.
+ * The objects are created up front by a factory, taken out of the pool with acquire() and reset by the caller,
+ * and put back with release() once they are done with. Released objects are only handed out again after the next flush(),
+ * so an object that is still referenced during the rest of the frame, by the EntityRegistry or a list of hits, isn't
+ * reused before the frame is over. The pool grows by creating new objects when it runs out, which is counted as a miss.
+ * The pool keeps count of the objects in use, so leaks can be found by comparing it with the number of live objects.
+ * @author phedman
+ * @param <T> The type of the pooled objects.
+ * @see kaninator.mechanics.EntityRegistry#flush()
+ */
+public class Pool<T>
+{
+	/**
+	 * Creates the objects of a pool.
+	 * @author phedman
+	 * @param <T> The type of the pooled objects.
+	 */
+	public interface Factory<T>
+	{
+		/**
+		 * Creates a new object for the pool.
+		 * @return The object.
+		 * @throws ModelException If the object couldn't be created.
+		 */
+		public T create() throws ModelException;
+	}
+
+	private String name;
+	private Factory<T> factory;
+	private ArrayList<T> free, released;
+	private int created, inUse, peak, misses;
+
+	/**
+	 * Creates a pool and fills it with objects.
+	 * @param _name The name of the pool, used in the statistics and the error messages.
+	 * @param _factory The factory creating the objects.
+	 * @param preallocate The number of objects created right away.
+	 * @throws ModelException If the factory couldn't create the objects.
+	 */
+	public Pool(String _name, Factory<T> _factory, int preallocate) throws ModelException
+	{
+		name = _name;
+		factory = _factory;
+		free = new ArrayList<T>(preallocate);
+		released = new ArrayList<T>(preallocate);
+		created = inUse = peak = misses = 0;
+
+		for(int i = 0; i < preallocate; i++)
+			free.add(factory.create());
+		created = preallocate;
+	}
+
+	/**
+	 * Takes an object out of the pool, or creates a new one if the pool is empty.
+	 * The object is in the state it was released in, the caller has to reset it.
+	 * @return The object.
+	 * @throws ModelException If the pool was empty and the factory couldn't create a new object.
+	 */
+	public T acquire() throws ModelException
+	{
+		T obj;
+		if(free.isEmpty())
+		{
+			obj = factory.create();
+			created++;
+			misses++;
+		}
+		else
+		{
+			obj = free.remove(free.size() - 1);
+		}
+
+		inUse++;
+		if(inUse > peak)
+			peak = inUse;
+		return obj;
+	}
+
+	/**
+	 * Puts an object back into the pool. It is handed out again after the next flush().
+	 * @param obj The object, which must have been acquired from this pool and must not be used anymore.
+	 */
+	public void release(T obj)
+	{
+		if(inUse == 0)
+		{
+			System.out.println("ERR: More objects released to the pool " + name + " than acquired.");
+			return;
+		}
+
+		released.add(obj);
+		inUse--;
+	}
+
+	/**
+	 * Makes the released objects available again. Should be called once per frame, at the start of the frame
+	 * or after the EntityRegistry has been flushed.
+	 */
+	public void flush()
+	{
+		for(int i = 0; i < released.size(); i++)
+			free.add(released.get(i));
+		released.clear();
+	}
+
+	/**
+	 * Compares the number of objects in use with the number of objects the owner of the pool still uses.
+	 * Prints an error if they differ, since the objects that weren't released are lost to the pool.
+	 * @param live The number of live objects.
+	 * @return True if no objects have leaked.
+	 */
+	public boolean checkLeaks(int live)
+	{
+		if(inUse == live)
+			return true;
+
+		System.out.println("ERR: The pool " + name + " has " + inUse + " objects in use, but " + live + " are live. " + (inUse - live) + " objects have leaked.");
+		return false;
+	}
+
+	/**
+	 * Getter for the name of the pool.
+	 * @return The name.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Getter for the number of objects the pool has created, including the preallocated ones.
+	 * @return The number of objects created.
+	 */
+	public int getCreated()
+	{
+		return created;
+	}
+
+	/**
+	 * Getter for the number of objects that are ready to be acquired.
+	 * @return The number of free objects.
+	 */
+	public int getFree()
+	{
+		return free.size();
+	}
+
+	/**
+	 * Getter for the number of objects that have been acquired but not released.
+	 * @return The number of objects in use.
+	 */
+	public int getInUse()
+	{
+		return inUse;
+	}
+
+	/**
+	 * Getter for the highest number of objects that have been in use at the same time.
+	 * @return The peak number of objects in use.
+	 */
+	public int getPeak()
+	{
+		return peak;
+	}
+
+	/**
+	 * Getter for the number of times the pool was empty and had to create a new object.
+	 * @return The number of misses.
+	 */
+	public int getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * Overrides the toString method in Object, describes the statistics of the pool.
+	 * @return The name of the pool followed by its statistics.
+	 */
+	public String toString()
+	{
+		return name + ": " + created + " created, " + inUse + " in use, peak " + peak + ", " + misses + " misses";
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			Factory<int[]> factory = new Factory<int[]>()
+			{
+				public int[] create()
+				{
+					return new int[1];
+				}
+			};
+			Pool<int[]> pool = new Pool<int[]>("test", factory, 4);
+			if(pool.getCreated() != 4 || pool.getFree() != 4 || pool.getInUse() != 0)
+				failedTest("Objects not preallocated.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing acquire and release..");
+			ArrayList<int[]> acquired = new ArrayList<int[]>();
+			for(int i = 0; i < 6; i++)
+				acquired.add(pool.acquire());
+			if(pool.getCreated() != 6 || pool.getMisses() != 2 || pool.getInUse() != 6 || pool.getPeak() != 6)
+				failedTest("Invalid statistics after acquiring: " + pool);
+
+			int released[] = acquired.remove(0);
+			pool.release(released);
+			if(pool.getFree() != 0 || pool.getInUse() != 5)
+				failedTest("A released object was available before the flush.");
+			pool.flush();
+			if(pool.getFree() != 1 || pool.acquire() != released || pool.getCreated() != 6)
+				failedTest("The released object wasn't reused after the flush.");
+			acquired.add(released);
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing leak detection..");
+			if(!pool.checkLeaks(acquired.size()))
+				failedTest("A leak was reported without one.");
+			System.out.print("..");
+			if(pool.checkLeaks(acquired.size() - 1))
+				failedTest("A leaked object wasn't reported.");
+			for(int obj[] : acquired)
+				pool.release(obj);
+			pool.release(released);
+			if(pool.getInUse() != 0 || !pool.checkLeaks(0))
+				failedTest("Releasing too many objects wasn't caught.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
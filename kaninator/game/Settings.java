@@ -22,11 +22,13 @@ public class Settings extends GameState
 {
 	private Canvas canvas;
 	private Menu menu;
-	private Text resolutionOn, resolutionOff, transparencyOn, transparencyOff;
+	private Text resolutionOn, resolutionOff, transparencyOn, transparencyOff, scaleOn, scaleOff;
+	private static final double RENDER_SCALES[] = {1.0, 0.75, 0.5};
+	private int scaleIndex;
 	
 	
 	/**
-	 * Creates the settings menu for the game, screen resolution and transparency settings are set from here.
+	 * Creates the settings menu for the game, screen resolution, render scale and transparency settings are set from here.
 	 * @param _camera The camera used to render the menu.
 	 * @param _gui The gui taking care of the menu.
 	 * @param _keyboard Used for input
@@ -51,18 +53,51 @@ public class Settings extends GameState
 		transparencyOn = new Text("Transparency: " + ((ImageFactory.getTransparency() == Transparency.BITMASK) ? 
 										"BITMASK" : "ALPHA"), "Impact", 32, Font.BOLD, Color.RED);
 		
+		scaleIndex = 0;
+		scaleOff = new Text(getScaleText(), "Impact", 32, Font.BOLD, Color.WHITE);
+		scaleOn = new Text(getScaleText(), "Impact", 32, Font.BOLD, Color.RED);
+		
 		menu.addEntry(resolutionOff, resolutionOn);
 		menu.addEntry(transparencyOff, transparencyOn);
+		menu.addEntry(scaleOff, scaleOn);
 		menu.addEntry(new Text("Menu!", "Impact", 32, Font.BOLD, Color.WHITE),
 						new Text("Menu!", "Impact", 32, Font.BOLD, Color.RED));
 	}
 	
+	/**
+	 * Creates the text for the render scale entry.
+	 * @return The current render scale as a string.
+	 */
+	private String getScaleText()
+	{
+		if(canvas.isAutoScale())
+			return "Render scale: AUTO";
+		
+		return "Render scale: " + (int)Math.round(canvas.getRenderScale() * 100) + "%";
+	}
+	
+	/**
+	 * Steps to the next render scale, after the smallest one the automatic mode is turned on.
+	 */
+	private void changeScale()
+	{
+		scaleIndex = (scaleIndex + 1) % (RENDER_SCALES.length + 1);
+		if(scaleIndex < RENDER_SCALES.length)
+		{
+			canvas.setRenderScale(RENDER_SCALES[scaleIndex]);
+		}
+		else
+		{
+			canvas.setRenderScale(1.0);
+			canvas.setAutoScale(Kaninator.FRAME_DELAY);
+		}
+	}
+	
 	/**
 	 * Renders the menu to the screen.
 	 */
 	private void render()
 	{
-		camera.clearGUI();
 		menu.render();
 		camera.renderGUI();
 	}
@@ -109,6 +144,13 @@ public class Settings extends GameState
 					transparencyOn.setText("Transparency: " + ((ImageFactory.getTransparency()  == Transparency.BITMASK) ? 
 											"BITMASK" : "ALPHA"));	
 				}
+				else if(retValue == 2)
+				{
+					changeScale();
+					
+					scaleOff.setText(getScaleText());
+					scaleOn.setText(getScaleText());
+				}
 				else
 				{
 					break;
@@ -117,7 +159,6 @@ public class Settings extends GameState
 			
 		}
 		
-		camera.clearGUI();
 		menu.clear();
 
 		return Kaninator.MAIN_MENU;
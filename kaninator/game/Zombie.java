@@ -4,36 +4,47 @@
 package kaninator.game;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 
 import kaninator.sound.SoundClip;
 import kaninator.graphics.Animation;
 import kaninator.mechanics.DynamicObject;
+import kaninator.mechanics.FlowField;
+import kaninator.mechanics.SpatialIndex;
 
 /**
  * The main enemy class of the game. The Zombies contain
  * model objects which represent them on screen. They can
  * also perform rudimentary AI, trying to flock up on the player.
+ * The way to the player is looked up from a FlowField shared by all the Zombies.
  * @author phedman
  */
 public class Zombie
 {
-	private static final int MAX_ACTIVE_DISTANCE = 333;
-	private static final int MIN_DISTANCE_BETWEEN = 48;
-	private static final int MAX_STRAFE_DIFFERENCE = 8;
-	private static final double ZOMBIE_SPEED = 5.0;
+	static final int MAX_ACTIVE_DISTANCE = 333;
+	static final int MIN_DISTANCE_BETWEEN = 48;
+	static final int MAX_STRAFE_DIFFERENCE = 8;
+	static final double ZOMBIE_SPEED = 5.0;
+	//The direction on either axis the Zombie walks in with the state it faces
+	static final int HEADING_X[] = {1, -1, 1, 0, 1, -1, -1, 0};
+	static final int HEADING_Y[] = {1, -1, -1, -1, 0, 1, 0, 1};
 	
 	private Map map;
+	private FlowField flowField;
 	private Model model;
 	private DynamicObject player;
 	private SoundClip squirt;
+	private ArrayList<Zombie> neighbours;
 	private double distance;
+	private double observedVel_x, observedVel_y;
+	private int observedState;
 	private boolean dead;
+	private int tier, phase;
 	
 	/**
 	 * Constructs a Zombie object and initializes all the objects it is dependent on.
 	 * @param animations The ArrayList of Animations that build up the Zombie model. Cannot be null or of the size 0.
 	 * @param _map The game map used for height checking.
+	 * @param _flowField The flow field leading to the player, or null to walk straight at the player.
 	 * @param _squirt The sound to be played when the Zombie is hit by a bullet.
 	 * @param _player The player object the Zombies are chasing.
 	 * @param x The starting x coordinate for the player.
@@ -41,15 +52,37 @@ public class Zombie
 	 * @param radius_constant How much the width of the Animations should be divided with to get a realistic estimate for the radius of the model.
 	 * @throws Exception Exception If the animation is null or of the size 0, since the Model object cannot be created without these.
 	 */
-	public Zombie(ArrayList<Animation> animations, Map _map, SoundClip _squirt, DynamicObject _player, double x, double y, double radius_constant) throws ModelException
+	public Zombie(ArrayList<Animation> animations, Map _map, FlowField _flowField, SoundClip _squirt, DynamicObject _player, double x, double y, double radius_constant) throws ModelException
 	{
 		map = _map;
+		flowField = _flowField;
 		model = new Model(animations, map, x, y, radius_constant, ZOMBIE_SPEED);
 		squirt = _squirt;
 		
 		player = _player;
+		neighbours = new ArrayList<Zombie>();
 		distance = Double.MAX_VALUE;
+		observedVel_x = observedVel_y = 0.0;
+		observedState = 0;
 		dead = false;
+		tier = phase = 0;
+	}
+	
+	/**
+	 * Brings the Zombie back to life at a new position, in the state it was constructed in. Used to reuse the Zombie from a Pool.
+	 * @param x The new x coordinate.
+	 * @param y The new y coordinate.
+	 * @see kaninator.game.Pool
+	 */
+	public void reset(double x, double y)
+	{
+		model.place(x, y);
+		neighbours.clear();
+		distance = Double.MAX_VALUE;
+		observedVel_x = observedVel_y = 0.0;
+		observedState = 0;
+		dead = false;
+		tier = phase = 0;
 	}
 	
 	/**
@@ -64,122 +97,185 @@ public class Zombie
 	}
 	
 	/**
-	 * Makes the >ombie follow the DynamicObject set as the target.
-	 * Doesn't perform pathfinding or anything fancy, just brute force following, even if a wall is in the way.
+	 * Makes the Zombie follow the DynamicObject set as the target. Walks towards the next tile of the
+	 * flow field while there is a walkable path to the tile of the target, and straight at the target once
+	 * it is on the same tile or if there is no such path.
 	 * @param target The DynamicObject the Zombie should follow.
 	 */
 	private void follow(DynamicObject target)
 	{
-		double delta_x = target.get_x() - model.getModel().get_x();
-		double delta_y = target.get_y() - model.getModel().get_y();
+		DynamicObject self = model.getModel();
+		if(flowField != null && flowField.hasPath(self.get_x(), self.get_y()))
+			walkTowards(flowField.getNext_x(self.get_x(), self.get_y()), flowField.getNext_y(self.get_x(), self.get_y()));
+		else
+			walkTowards(target.get_x(), target.get_y());
+	}
+	
+	/**
+	 * Makes the Zombie walk towards a point, in one of the eight directions it can face.
+	 * @param x The x coordinate of the point in the internal, isometric, coordinate system.
+	 * @param y The y coordinate of the point in the internal, isometric, coordinate system.
+	 */
+	private void walkTowards(double x, double y)
+	{
+		int heading = heading(x - model.getModel().get_x(), y - model.getModel().get_y());
+		if(HEADING_Y[heading] == 0)
+		{
+			model.move_x(HEADING_X[heading]);
+			model.move_y(0);
+		}
+		else
+		{
+			model.move_y(HEADING_Y[heading]);
+			model.move_x(HEADING_X[heading]);
+		}
+		model.setState(heading);
+	}
+	
+	/**
+	 * Picks the one of the eight directions a Zombie walks in towards a point. Walks diagonally if the point is
+	 * within MAX_STRAFE_DIFFERENCE of a diagonal, otherwise along the axis the point is further away on.
+	 * The axis the Zombie walks along is set moving first, on the y-axis when it walks diagonally.
+	 * @param delta_x The distance to the point on the internal, isometric, x-axis.
+	 * @param delta_y The distance to the point on the internal, isometric, y-axis.
+	 * @return The state facing the direction, HEADING_X and HEADING_Y give the direction on either axis.
+	 */
+	static int heading(double delta_x, double delta_y)
+	{
 		if(Math.abs(Math.abs(delta_x) - Math.abs(delta_y)) < MAX_STRAFE_DIFFERENCE)
 		{
 			if(delta_x > 0 && delta_y > 0)
-			{
-				model.move_y(1);
-				model.move_x(1);
-				model.setState(0);
-			}
+				return 0;
 			else if(delta_x < 0 && delta_y > 0)
-			{
-				model.move_y(1);
-				model.move_x(-1);
-				model.setState(5);
-			}
+				return 5;
 			else if(delta_x > 0 && delta_y < 0)
-			{
-				model.move_y(-1);
-				model.move_x(1);
-				model.setState(2);
-			}
+				return 2;
 			else
-			{
-				model.move_y(-1);	
-				model.move_x(-1);
-				model.setState(1);
-			}
+				return 1;
 		}
 		else if(Math.abs(delta_x) > Math.abs(delta_y))
-		{
-			if(delta_x > 0)
-			{
-				model.move_x(1);
-				model.move_y(0);
-				model.setState(4);
-			}
-			else
-			{
-				model.move_x(-1);
-				model.move_y(0);
-				model.setState(6);
-			}
-		}
+			return (delta_x > 0) ? 4 : 6;
 		else
-		{
-			if(delta_y > 0)
-			{
-				model.move_y(1);
-				model.move_x(0);
-				model.setState(7);
-			}
-			else
-			{
-				model.move_y(-1);
-				model.move_x(0);
-				model.setState(3);
-			}
-		}
+			return (delta_y > 0) ? 7 : 3;
 	}
 	
 	/**
 	 * Calculates the distance between the Zombie and the player and stores it in 
 	 * order to be able to compare distances with its peers later on.
+	 * Also stores the current movement of the Zombie, its peers copy it from here in act() instead of
+	 * from the model, which may already be changing. Only writes to the Zombie itself, so all the Zombies can be observed in parallel.
 	 */
 	public void observe()
 	{
 		distance = distanceTo(player);
+		observedVel_x = model.getVelX();
+		observedVel_y = model.getVelY();
+		observedState = model.getModel().getState();
 	}
 	
 	/**
-	 * Kills the Zombie. Effectively setting the dead value to true and playing the squish sound.
+	 * Getter for the distance to the player, as calculated by the latest call to observe().
+	 * @return The distance to the player, Double.MAX_VALUE if observe() hasn't been called yet.
+	 */
+	public double getDistance()
+	{
+		return distance;
+	}
+	
+	/**
+	 * Checks if the Zombie has been killed.
+	 * @return True if the Zombie is dead.
+	 */
+	public boolean isDead()
+	{
+		return dead;
+	}
+	
+	/**
+	 * Getter for the level of detail the ZombieScheduler updates the Zombie at.
+	 * @return The tier of the Zombie.
+	 * @see kaninator.game.ZombieScheduler
+	 */
+	int getTier()
+	{
+		return tier;
+	}
+	
+	/**
+	 * Setter for the level of detail the ZombieScheduler updates the Zombie at.
+	 * @param _tier The tier of the Zombie.
+	 */
+	void setTier(int _tier)
+	{
+		tier = _tier;
+	}
+	
+	/**
+	 * Getter for the frame, out of every few, the ZombieScheduler updates the Zombie on when it isn't updated every frame.
+	 * @return The phase of the Zombie.
+	 */
+	int getPhase()
+	{
+		return phase;
+	}
+	
+	/**
+	 * Setter for the frame, out of every few, the ZombieScheduler updates the Zombie on when it isn't updated every frame.
+	 * @param _phase The phase of the Zombie.
+	 */
+	void setPhase(int _phase)
+	{
+		phase = _phase;
+	}
+	
+	/**
+	 * Kills the Zombie. Effectively setting the dead value to true.
 	 */
 	public void kill()
 	{
 		dead = true;
 	}
 	
+	/**
+	 * Plays the squish sound of a dead Zombie. Kept out of act(), so the sounds can be played after all the Zombies have acted.
+	 */
+	public void playDeathSound()
+	{
+		squirt.playClip();
+	}
+	
 	
 	/**
 	 * Performs the actions the Zombie should do. If the Zombie is already dead it returns true so
 	 * the Zombie can be removed from the list in Game. The Zombie is inactive if the distance to the
-	 * player is less than MAX_ACTIVE_DISTANCE, otherwise it compares the distances to the player with its
-	 * peers and then mimics the Zombie with the closest distance to the player.
-	 * @param others The other Zombies the Zombie collaborates with.
+	 * player is less than MAX_ACTIVE_DISTANCE, otherwise it compares the distances to the player with the
+	 * peers within MIN_DISTANCE_BETWEEN and then mimics the Zombie with the closest distance to the player.
+	 * Only reads what the peers stored in observe(), and only writes to the Zombie itself, so once all the Zombies
+	 * have been observed they can act in parallel, with the same result in any order.
+	 * @param others The index of the other Zombies the Zombie collaborates with.
 	 * @return true if the Zombie is dead, otherwise false.
 	 */
-	public boolean act(LinkedList<Zombie> others)
+	public boolean act(SpatialIndex<Zombie> others)
 	{
 		if(dead) 
-		{
-			squirt.playClip();
 			return true;
-		}
 		
 		Zombie leader = null;
 		if(distance < MAX_ACTIVE_DISTANCE)
 		{
-			for(Zombie otherone : others)
+			DynamicObject self = model.getModel();
+			others.queryRadius(self.get_x(), self.get_y(), MIN_DISTANCE_BETWEEN, neighbours);
+			for(Zombie otherone : neighbours)
 			{
-				if(distanceTo(otherone.getMainObject()) < MIN_DISTANCE_BETWEEN)
-					if(distance > otherone.distance)
-						leader = otherone;
+				if(otherone.distance < distance && (leader == null || otherone.distance < leader.distance))
+					leader = otherone;
 			}
 			
 			if(leader != null)
 			{
-				model.setVelX(leader.model.getVelX());
-				model.setVelY(leader.model.getVelY());
-				model.setState(leader.model.getModel().getState());
+				model.setVelX(leader.observedVel_x);
+				model.setVelY(leader.observedVel_y);
+				model.setState(leader.observedState);
 				model.advanceAnimation();
 			}
 			else
@@ -199,6 +295,15 @@ public class Zombie
 		return false;
 	}
 	
+	/**
+	 * Stores the current position of the Zombie, so it can be rendered in between ticks.
+	 * @see kaninator.game.Model#storePosition()
+	 */
+	public void storePosition()
+	{
+		model.storePosition();
+	}
+	
 	/**
 	 * Getter for the DynamicObject representing the Zombie.
 	 * @return The DynamicObject representing the Zombie.
@@ -208,11 +313,21 @@ public class Zombie
 		return model.getModel();
 	}
 	
+	/**
+	 * Getter for the DynamicObject representing the shadow of the Zombie.
+	 * @return The DynamicObject of the shadow.
+	 */
+	public DynamicObject getShadow()
+	{
+		return model.getShadow();
+	}
+	
 	/**
 	 * Gets all the DynamicObjects associated with the Zombie. Ie. The Zombie model itself and its shadow.
-	 * @return A LinkedList of all the DynamicObjects associated with the Zombie.
+	 * The array is shared with the Model and must not be modified.
+	 * @return An array of all the DynamicObjects associated with the Zombie.
 	 */
-	public LinkedList<DynamicObject> getDynamicObjects()
+	public DynamicObject[] getDynamicObjects()
 	{
 		return model.getDynamicObjects();
 	}
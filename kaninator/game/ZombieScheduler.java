@@ -0,0 +1,408 @@
+/**
+ * Contains all the high-level game functions and implements the actual gameplay.
+ */
+package kaninator.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import kaninator.graphics.Animation;
+import kaninator.graphics.AnimationFactory;
+import kaninator.mechanics.DynamicObject;
+import kaninator.mechanics.FlatTile;
+import kaninator.mechanics.ParallelUpdater;
+import kaninator.mechanics.SpatialIndex;
+import kaninator.mechanics.StaticObject;
+import kaninator.sound.SoundFactory;
+
+/**
+ * Decides how often every Zombie is updated, depending on its distance to the player.
+ * Zombies close to the player run their AI every frame, Zombies further away only every REDUCED_INTERVAL frames,
+ * staggered so that the work is spread evenly over the frames. Zombies beyond SLEEP_DISTANCE become dormant:
+ * they aren't observed, updated or reindexed at all. Since they can't move, they are kept at the start of the
+ * spatial index, which is only rebuilt when a Zombie falls asleep or wakes up. Dormant Zombies are woken by a region query
+ * around the player whenever the player has moved far enough, or when they are hit by a bullet.
+ * The Zombies are observed and act in two parallel phases, the first one only writes what the second one reads.
+ * Everything that changes the lists, like deaths and tier changes, is done on the calling thread between the phases,
+ * in the order of the list, so the result is the same with any number of threads.
+ * @author phedman
+ * @see kaninator.game.Zombie
+ * @see kaninator.mechanics.SpatialIndex
+ */
+public class ZombieScheduler
+{
+	static final int DORMANT = 0, REDUCED = 1, FULL = 2;
+	private static final double FULL_RATE_DISTANCE = 400.0;
+	private static final double WAKE_DISTANCE = 700.0;
+	private static final double SLEEP_DISTANCE = 800.0;
+	private static final double WAKE_STEP = 32.0;
+	private static final int REDUCED_INTERVAL = 4;
+
+	private DynamicObject player;
+	private ArrayList<Zombie> awake, dormant, found;
+	private SpatialIndex<Zombie> index;
+	private ParallelUpdater.Job observeJob, actJob;
+	private boolean dormantChanged;
+	private double wake_x, wake_y;
+	private int frame, nextPhase;
+
+	/**
+	 * Creates a scheduler without any Zombies.
+	 * @param _player The object the distances are measured to.
+	 */
+	public ZombieScheduler(DynamicObject _player)
+	{
+		player = _player;
+		awake = new ArrayList<Zombie>();
+		dormant = new ArrayList<Zombie>();
+		found = new ArrayList<Zombie>();
+		index = new SpatialIndex<Zombie>();
+		dormantChanged = false;
+		wake_x = wake_y = Double.MAX_VALUE;
+		frame = nextPhase = 0;
+		
+		observeJob = new ParallelUpdater.Job()
+		{
+			public void run(int from, int to)
+			{
+				for(int i = from; i < to; i++)
+				{
+					Zombie zombie = awake.get(i);
+					if(isScheduled(zombie))
+						zombie.observe();
+				}
+			}
+		};
+		actJob = new ParallelUpdater.Job()
+		{
+			public void run(int from, int to)
+			{
+				for(int i = from; i < to; i++)
+				{
+					Zombie zombie = awake.get(i);
+					if(isScheduled(zombie))
+						zombie.act(index);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Adds a new Zombie. It is updated every frame until it has been observed for the first time.
+	 * @param zombie The Zombie.
+	 */
+	public void add(Zombie zombie)
+	{
+		zombie.setTier(FULL);
+		zombie.setPhase(nextPhase);
+		nextPhase = (nextPhase + 1) % REDUCED_INTERVAL;
+		awake.add(zombie);
+	}
+
+	/**
+	 * Getter for the number of Zombies, both awake and dormant.
+	 * @return The number of Zombies.
+	 */
+	public int size()
+	{
+		return awake.size() + dormant.size();
+	}
+
+	/**
+	 * Getter for the number of dormant Zombies.
+	 * @return The number of Zombies that aren't updated at all.
+	 */
+	public int getDormantCount()
+	{
+		return dormant.size();
+	}
+
+	/**
+	 * Getter for the spatial index of all the Zombies, as built by the latest call to index().
+	 * @return The index.
+	 */
+	public SpatialIndex<Zombie> getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Rebuilds the spatial index of the Zombies from their current positions. Only the Zombies that are awake are
+	 * reinserted, unless a Zombie has fallen asleep or woken up since the previous call.
+	 * Needs to be called whenever the Zombies have moved or died before the index is queried again.
+	 */
+	public void index()
+	{
+		if(dormantChanged)
+		{
+			index.clear();
+			for(Zombie zombie : dormant)
+				index.insert(zombie, zombie.getMainObject());
+			dormantChanged = false;
+		}
+		else
+			index.truncate(dormant.size());
+
+		for(Zombie zombie : awake)
+			index.insert(zombie, zombie.getMainObject());
+	}
+
+	/**
+	 * Wakes up a Zombie, so it is updated again starting from the current frame. Does nothing if it is already awake.
+	 * @param zombie The Zombie.
+	 */
+	public void wake(Zombie zombie)
+	{
+		if(zombie.getTier() != DORMANT)
+			return;
+
+		zombie.setTier(FULL);
+		awake.add(zombie);
+		dormantChanged = true;
+	}
+
+	/**
+	 * Stores the positions of the Zombies that are awake, so they can be rendered in between ticks.
+	 * The dormant ones don't move, their positions were stored when they fell asleep.
+	 */
+	public void storePositions()
+	{
+		for(Zombie zombie : awake)
+			zombie.storePosition();
+	}
+
+	/**
+	 * Starts a new frame. Wakes up the dormant Zombies around the player if the player has moved far enough
+	 * since they were last looked for, and calls observe() for the Zombies that are updated during the frame.
+	 * @param updater The updater the Zombies are observed with.
+	 */
+	public void observe(ParallelUpdater updater)
+	{
+		frame++;
+
+		double d_x = player.get_x() - wake_x;
+		double d_y = player.get_y() - wake_y;
+		if(d_x * d_x + d_y * d_y > WAKE_STEP * WAKE_STEP)
+		{
+			wake_x = player.get_x();
+			wake_y = player.get_y();
+			index.queryRadius(wake_x, wake_y, WAKE_DISTANCE, found);
+			for(Zombie zombie : found)
+				wake(zombie);
+		}
+
+		updater.run(observeJob, awake.size());
+	}
+
+	/**
+	 * Calls act() for the Zombies that are updated during the frame, and moves them between the tiers by their distance to the player.
+	 * The dead Zombies are removed from the scheduler, their sounds aren't played.
+	 * @param killed The list the dead Zombies are added to.
+	 * @param updater The updater the Zombies act with.
+	 */
+	public void act(ArrayList<Zombie> killed, ParallelUpdater updater)
+	{
+		if(dormantChanged)
+			removeWoken();
+
+		updater.run(actJob, awake.size());
+
+		int kept = 0;
+		for(int i = 0; i < awake.size(); i++)
+		{
+			Zombie zombie = awake.get(i);
+			if(isScheduled(zombie))
+			{
+				if(zombie.isDead())
+				{
+					killed.add(zombie);
+					continue;
+				}
+
+				double distance = zombie.getDistance();
+				if(distance > SLEEP_DISTANCE)
+				{
+					zombie.setTier(DORMANT);
+					zombie.storePosition();
+					dormant.add(zombie);
+					dormantChanged = true;
+					continue;
+				}
+				zombie.setTier((distance < FULL_RATE_DISTANCE) ? FULL : REDUCED);
+			}
+
+			awake.set(kept++, zombie);
+		}
+
+		for(int i = awake.size() - 1; i >= kept; i--)
+			awake.remove(i);
+	}
+
+	/**
+	 * Checks if a Zombie should be updated during the current frame. Dead Zombies are always updated, so they get removed right away.
+	 * @param zombie The Zombie.
+	 * @return True if observe() and act() should be called for the Zombie.
+	 */
+	private boolean isScheduled(Zombie zombie)
+	{
+		return zombie.getTier() == FULL || zombie.isDead() || (frame + zombie.getPhase()) % REDUCED_INTERVAL == 0;
+	}
+
+	/**
+	 * Removes the Zombies that have woken up from the list of dormant Zombies, keeping the order of the rest.
+	 */
+	private void removeWoken()
+	{
+		int kept = 0;
+		for(int i = 0; i < dormant.size(); i++)
+		{
+			Zombie zombie = dormant.get(i);
+			if(zombie.getTier() == DORMANT)
+				dormant.set(kept++, zombie);
+		}
+
+		for(int i = dormant.size() - 1; i >= kept; i--)
+			dormant.remove(i);
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			ArrayList<ArrayList<StaticObject>> tiles = new ArrayList<ArrayList<StaticObject>>();
+			for(int j = 0; j < 40; j++)
+			{
+				ArrayList<StaticObject> row = new ArrayList<StaticObject>();
+				for(int i = 0; i < 40; i++)
+					row.add(new FlatTile(null, null, 0.0, i, j));
+				tiles.add(row);
+			}
+			Map map = new Map(tiles);
+			DynamicObject player = new DynamicObject(null, 10.0);
+			player.setPos(100.0, 100.0);
+
+			ZombieScheduler scheduler = new ZombieScheduler(player);
+			ParallelUpdater updater = new ParallelUpdater(1);
+			ArrayList<Animation> anims = AnimationFactory.getAnimations("/resources/zombSheet.png", true, 64, 64, 0.25);
+			double positions[] = {150.0, 600.0, 2000.0, 2400.0};
+			ArrayList<Zombie> zombies = new ArrayList<Zombie>();
+			for(double pos : positions)
+			{
+				Zombie zombie = new Zombie(AnimationFactory.cloneAnimations(anims), map, null, SoundFactory.getSilentClip(), player, pos, 100.0, 5.0);
+				zombies.add(zombie);
+				scheduler.add(zombie);
+			}
+			if(scheduler.size() != 4 || scheduler.getDormantCount() != 0)
+				failedTest("New Zombies aren't awake.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the tiers..");
+			ArrayList<Zombie> killed = new ArrayList<Zombie>();
+			scheduler.index();
+			scheduler.observe(updater);
+			scheduler.act(killed, updater);
+			scheduler.index();
+			if(zombies.get(0).getTier() != FULL || zombies.get(1).getTier() != REDUCED)
+				failedTest("Invalid tiers for the Zombies close to the player.");
+			if(zombies.get(2).getTier() != DORMANT || zombies.get(3).getTier() != DORMANT || scheduler.getDormantCount() != 2)
+				failedTest("The Zombies far away didn't fall asleep.");
+			if(scheduler.getIndex().size() != 4)
+				failedTest("The index doesn't contain all the Zombies.");
+			System.out.print("..");
+
+			double dormant_x = zombies.get(2).getMainObject().get_x();
+			int updates = 0;
+			for(int i = 0; i < REDUCED_INTERVAL * 3; i++)
+			{
+				double before = zombies.get(1).getDistance();
+				player.setPos(100.0, 100.0 + i);
+				scheduler.observe(updater);
+				scheduler.act(killed, updater);
+				scheduler.index();
+				if(zombies.get(1).getDistance() != before)
+					updates++;
+			}
+			if(updates < 2 || updates > 4)
+				failedTest("The reduced Zombie was updated " + updates + " times.");
+			if(zombies.get(2).getMainObject().get_x() != dormant_x || scheduler.getIndex().size() != 4)
+				failedTest("A dormant Zombie was updated.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing waking up..");
+			player.setPos(1500.0, 100.0);
+			scheduler.observe(updater);
+			if(zombies.get(2).getTier() == DORMANT || zombies.get(3).getTier() != DORMANT)
+				failedTest("The region query woke the wrong Zombies.");
+			scheduler.act(killed, updater);
+			scheduler.index();
+			if(zombies.get(0).getTier() != DORMANT || zombies.get(2).getTier() == DORMANT)
+				failedTest("The tiers weren't swapped around.");
+			System.out.print("..");
+
+			zombies.get(0).kill();
+			scheduler.wake(zombies.get(0));
+			scheduler.observe(updater);
+			scheduler.act(killed, updater);
+			scheduler.index();
+			if(killed.size() != 1 || killed.get(0) != zombies.get(0) || scheduler.size() != 3 || scheduler.getIndex().size() != 3)
+				failedTest("The dead Zombie wasn't removed.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing threads..");
+			double results[][] = new double[2][];
+			int threads[] = {1, 4};
+			for(int t = 0; t < threads.length; t++)
+			{
+				ParallelUpdater parallel = new ParallelUpdater(threads[t]);
+				scheduler = new ZombieScheduler(player);
+				player.setPos(1280.0, 1280.0);
+				zombies.clear();
+				for(int i = 0; i < 300; i++)
+				{
+					Zombie zombie = new Zombie(AnimationFactory.cloneAnimations(anims), map, null, SoundFactory.getSilentClip(), player,
+												1000.0 + (i * 37) % 560, 1000.0 + (i * 91) % 560, 5.0);
+					zombies.add(zombie);
+					scheduler.add(zombie);
+				}
+
+				for(int frame = 0; frame < 40; frame++)
+				{
+					scheduler.index();
+					scheduler.observe(parallel);
+					scheduler.act(killed, parallel);
+				}
+				parallel.shutdown();
+
+				results[t] = new double[zombies.size() * 2];
+				for(int i = 0; i < zombies.size(); i++)
+				{
+					results[t][i * 2] = zombies.get(i).getMainObject().get_x();
+					results[t][i * 2 + 1] = zombies.get(i).getMainObject().get_y();
+				}
+			}
+			if(!Arrays.equals(results[0], results[1]))
+				failedTest("The Zombies moved differently with more threads.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
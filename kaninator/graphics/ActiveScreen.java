@@ -0,0 +1,338 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.MemoryImageSource;
+
+/**
+ * Implements the Canvas interface with the Java2D library using active rendering.
+ * Does the same job as Screen, but instead of asking Swing to repaint the window the frames are drawn
+ * directly from the game loop to a BufferStrategy, preferably with page flipping, when draw() is called.
+ * Every method should consequently be called from the game thread.
+ * @see kaninator.graphics.Canvas
+ * @see kaninator.graphics.Screen
+ * @see java.awt.image.BufferStrategy
+ * @author phedman
+ */
+public class ActiveScreen implements Canvas
+{
+	/**
+	 * Passes the mouse events from the drawing surface on to the window, where the listeners of the game are.
+	 * Unlike a JPanel, a heavyweight component doesn't let the window see the mouse events over it.
+	 * @author phedman
+	 */
+	private class MouseForwarder extends MouseAdapter
+	{
+		/**
+		 * Converts the event to the coordinates of the window and dispatches it there.
+		 * @param event The event received by the drawing surface.
+		 */
+		private void forward(MouseEvent event)
+		{
+			frame.dispatchEvent(SwingUtilities.convertMouseEvent(surface, event, frame));
+		}
+
+		/**
+		 * Overrides the mousePressed method, forwards the event to the window.
+		 */
+		public void mousePressed(MouseEvent event)
+		{
+			forward(event);
+		}
+
+		/**
+		 * Overrides the mouseReleased method, forwards the event to the window.
+		 */
+		public void mouseReleased(MouseEvent event)
+		{
+			forward(event);
+		}
+
+		/**
+		 * Overrides the mouseMoved method, forwards the event to the window.
+		 */
+		public void mouseMoved(MouseEvent event)
+		{
+			forward(event);
+		}
+
+		/**
+		 * Overrides the mouseDragged method, forwards the event to the window.
+		 */
+		public void mouseDragged(MouseEvent event)
+		{
+			forward(event);
+		}
+	}
+
+	private static final int NUM_BUFFERS = 2;
+	private static final Cursor HIDDEN_CURSOR = Toolkit.getDefaultToolkit().createCustomCursor(
+												Toolkit.getDefaultToolkit().createImage(new MemoryImageSource(16, 16, new int[16 * 16], 0, 16)),
+												new Point(0, 0),
+												"HIDDEN_CURSOR");
+	private static final Cursor DEFAULT_CURSOR = new Cursor(Cursor.DEFAULT_CURSOR);
+
+	private JFrame frame;
+	private Color clearColor;
+	private DisplayList drawList, overlay;
+	private java.awt.Canvas surface;
+	private BufferStrategy strategy;
+	private Dimension sizes[];
+	private int resIndex;
+	private RenderScaler scaler;
+
+
+	/**
+	 * Creates and initializes a window, shows it on the screen and creates the BufferStrategy for it.
+	 * Page flipping is used if the system supports it, otherwise the back buffer is copied to the screen.
+	 * @param _frame The window the game will be drawn in.
+	 * @param _sizes An array of Dimensions containing the allowed resolutions
+	 * @param title The window title
+	 * @throws AWTException If no BufferStrategy could be created, the drawing surface is removed from the window before this is thrown.
+	 * @see java.awt.Dimension
+	 */
+	public ActiveScreen(JFrame _frame, Dimension _sizes[], String title) throws AWTException
+	{
+		resIndex = 0;
+		sizes = _sizes;
+		drawList = new DisplayList();
+		overlay = new DisplayList();
+		scaler = new RenderScaler();
+
+		frame = _frame;
+		surface = new java.awt.Canvas();
+		surface.setIgnoreRepaint(true);
+		//The keyboard listener is on the window, so it has to keep the focus
+		surface.setFocusable(false);
+		MouseForwarder forwarder = new MouseForwarder();
+		surface.addMouseListener(forwarder);
+		surface.addMouseMotionListener(forwarder);
+
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setSize(sizes[resIndex]);
+		frame.setTitle(title);
+		frame.add(surface);
+
+		frame.setResizable(false);
+		frame.setVisible(true);
+
+		try
+		{
+			try
+			{
+				surface.createBufferStrategy(NUM_BUFFERS, new BufferCapabilities(new ImageCapabilities(true),
+						new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED));
+			}
+			catch(AWTException e)
+			{
+				//No page flipping, let AWT pick the best strategy available
+				surface.createBufferStrategy(NUM_BUFFERS);
+			}
+
+			strategy = surface.getBufferStrategy();
+			if(strategy == null)
+				throw new AWTException("No BufferStrategy available");
+		}
+		catch(IllegalStateException e)
+		{
+			frame.remove(surface);
+			throw new AWTException("Couldn't create a BufferStrategy: " + e);
+		}
+		catch(AWTException e)
+		{
+			frame.remove(surface);
+			throw e;
+		}
+
+		clearColor = new Color(0, 0, 0);
+	}
+
+	/**
+	 * Adds a VisibleElement to the tail of the drawing queue.
+	 * @see kaninator.graphics.VisibleElement
+	 */
+	public void addElement(VisibleElement elem)
+	{
+		drawList.add(elem);
+	}
+
+	/**
+	 * Copies a range of elements from a DisplayList to the tail of the drawing queue.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void addElements(DisplayList list, int from, int to)
+	{
+		drawList.addAll(list, from, to);
+	}
+
+	/**
+	 * Replaces the overlay layer.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void setOverlay(DisplayList list)
+	{
+		overlay.clear();
+		overlay.addAll(list, 0, list.size());
+	}
+
+	/**
+	 * Empties the drawing queue.
+	 */
+	public void clear()
+	{
+		drawList.clear();
+	}
+
+	/**
+	 * Clears the top of the drawing queue.
+	 * @param n The number of elements to clear.
+	 */
+	public void clearTop(int n)
+	{
+		drawList.removeLast(n);
+	}
+
+	/**
+	 * Wraps the getWidth() method in java.awt.Canvas, scaled with the render scale.
+	 * @return The width of the actual drawable area.
+	 */
+	public int getWidth()
+	{
+		return scaler.scaled(surface.getWidth());
+	}
+
+	/**
+	 * Wraps the getHeight() method in java.awt.Canvas, scaled with the render scale.
+	 * @return The height of the actual drawable area.
+	 */
+	public int getHeight()
+	{
+		return scaler.scaled(surface.getHeight());
+	}
+
+	/**
+	 * Sets the fraction of the window size the game is rendered at, turning the automatic mode off.
+	 * The elements are laid out for the smaller size and the frame is scaled up to the window when it is drawn.
+	 * @param scale The render scale, between 0.5 and 1.0.
+	 * @see kaninator.graphics.RenderScaler
+	 */
+	public void setRenderScale(double scale)
+	{
+		scaler.setScale(scale);
+	}
+
+	/**
+	 * Getter for the current render scale.
+	 * @return The fraction of the window size the game is rendered at.
+	 */
+	public double getRenderScale()
+	{
+		return scaler.getScale();
+	}
+
+	/**
+	 * Turns the automatic render scale on or off.
+	 * @param frameBudget The time in milliseconds a frame may take, 0 turns the automatic mode off.
+	 */
+	public void setAutoScale(int frameBudget)
+	{
+		scaler.setAutoScale(frameBudget);
+	}
+
+	/**
+	 * Checks if the render scale is adjusted automatically.
+	 * @return True if the automatic mode is on.
+	 */
+	public boolean isAutoScale()
+	{
+		return scaler.isAutoScale();
+	}
+
+	/**
+	 * Wraps the getHeight() method in JFrame.
+	 * @return The height of the window.
+	 */
+	public int getResHeight()
+	{
+		return frame.getHeight();
+	}
+
+	/**
+	 * Wraps the getWidth() method in JFrame.
+	 * @return The width of the window.
+	 */
+	public int getResWidth()
+	{
+		return frame.getWidth();
+	}
+
+	/**
+	 * Changes the window size according to the values in an internal array.
+	 */
+	public void changeSize()
+	{
+		resIndex++;
+		if(resIndex >= sizes.length)
+			resIndex = 0;
+
+		frame.setSize(sizes[resIndex]);
+	}
+
+	/**
+	 * Getter for the window insets
+	 * @return The top/left border size.
+	 */
+	public Dimension getInsets()
+	{
+		Dimension insets = new Dimension();
+
+		insets.width = (frame.getWidth() - surface.getWidth()) / 2;
+		insets.height = frame.getHeight() - surface.getHeight() - insets.width;
+
+		return insets;
+	}
+
+	/**
+	 * Hides alternatively shows the mouse cursor when above the window.
+	 * @param hide True to hide, false to show the cursor.
+	 */
+	public void hideCursor(boolean hide)
+	{
+		if(hide)
+			surface.setCursor(HIDDEN_CURSOR);
+		else
+			surface.setCursor(DEFAULT_CURSOR);
+	}
+
+	/**
+	 * Draws the drawing queue and the overlay to the back buffer and shows it, before returning.
+	 * Redraws the frame if the contents of the buffers were lost or restored in the meantime.
+	 */
+	public void draw()
+	{
+		do
+		{
+			do
+			{
+				Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+
+				scaler.draw(g, drawList, overlay, clearColor, surface.getWidth(), surface.getHeight(), scaler.getScale());
+
+				g.dispose();
+			}
+			while(strategy.contentsRestored());
+
+			strategy.show();
+		}
+		while(strategy.contentsLost());
+
+		Toolkit.getDefaultToolkit().sync();
+		scaler.frameFinished();
+	}
+}
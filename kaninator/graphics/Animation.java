@@ -56,6 +56,53 @@ public class Animation implements Drawable
 		frames.get((int)currentFrame).draw(g, x, y);
 	}
 
+	/**
+	 * Getter for the active frame of the Animation. The frame doesn't change when the Animation is advanced,
+	 * so it can be drawn later on, or on another thread, without the Animation.
+	 * @return The Drawable of the active frame, null if the Animation has no frames.
+	 */
+	public Drawable getCurrentFrame()
+	{
+		return (frames == null || frames.size() == 0) ? null : frames.get((int)currentFrame);
+	}
+
+	/**
+	 * Getter for the number of frames in the Animation.
+	 * @return The number of frames.
+	 */
+	public int getFrameCount()
+	{
+		return (frames == null) ? 0 : frames.size();
+	}
+	
+	/**
+	 * Getter for a frame of the Animation. Lets the frames be shared by objects that keep track of the active frame themselves.
+	 * @param i The index of the frame, from 0 to getFrameCount() - 1.
+	 * @return The Drawable of the frame.
+	 */
+	public Drawable getFrame(int i)
+	{
+		return frames.get(i);
+	}
+	
+	/**
+	 * Getter for the speed of the Animation.
+	 * @return The amount of frames the Animation advances each time it's advanced.
+	 */
+	public double getSpeed()
+	{
+		return speed;
+	}
+	
+	/**
+	 * Getter for the Animation lock.
+	 * @return True if the Animation stops at the last frame, False if it loops.
+	 */
+	public boolean isLocked()
+	{
+		return lock;
+	}
+	
 	/**
 	 * Getter for the height of the current frame of the Animation.
 	 * @return The height of the current frame of the Animation.
@@ -24,39 +24,100 @@ public final class AnimationFactory
 	private static HashMap<String, ArrayList<Animation>> animMap = new HashMap<String, ArrayList<Animation>>();
 	
 	/**
-	 * Internal method which creates an Animation from a BufferedImage containing the animation sheet.
-	 * And then adds it to the ArrayList containing the different animation states.
+	 * Internal method which cuts a column of the animation sheet into the frames of an Animation.
 	 * @param buffer The BufferedImage containing the animation sheet.
-	 * @param mirror Whether the animation should be mirrored or not, effectively adding the mirrored animation to the ArrayList as well.
+	 * @param mirror Whether the frames should be mirrored or not.
 	 * @param height The height of a single animation frame.
 	 * @param width The width of a single animation frame.
-	 * @param column The column of the animation sheet we want to create an Animation from.
+	 * @param column The column of the animation sheet we want the frames of.
+	 * @return The frames of the column from the top down.
+	 */
+	private static BufferedImage[] sliceColumn(BufferedImage buffer, boolean mirror, int height, int width, int column)
+	{
+		AffineTransform at = AffineTransform.getScaleInstance(-1, 1); 
+		at.translate(-width, 0);
+		AffineTransformOp op = new AffineTransformOp(at, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
+		
+		BufferedImage frames[] = new BufferedImage[buffer.getHeight()/height];
+		for(int i = 0; i < frames.length; i++)
+		{
+			BufferedImage subImage = buffer.getSubimage(column * width, i * height, width, height);
+			frames[i] = (mirror) ? op.filter(subImage, null) : subImage;
+		}
+		
+		return frames;
+	}
+	
+	/**
+	 * Reads the sprite sheet at the file path and cuts it into the frames of its Animations, without packing them into the TextureAtlas.
+	 * @param filepath The path to the image file containing the sprite sheet.
+	 * @param mirror Whether the the animations after the first two should be mirrored as well. (The first two are the top/down directions and consequently cannot be mirrored)
+	 * @param height The height of a single animation frame.
+	 * @param width The width of a single animation frame.
+	 * @return The frames of every Animation, in the order the Animations are created in.
+	 * @throws IOException If the sprite sheet cannot be found or read.
+	 */
+	static ArrayList<BufferedImage[]> sliceSheet(String filepath, boolean mirror, int height, int width) throws IOException
+	{
+		if(filepath == null)
+			throw new IOException("ERR: File not found: " + filepath);
+		
+		URL url = AnimationFactory.class.getResource(filepath);
+		if(url == null)
+			throw new IOException("ERR: File not found: " + filepath);
+		
+		BufferedImage buffer = ImageIO.read(url);
+		ArrayList<BufferedImage[]> animations = new ArrayList<BufferedImage[]>();
+		int numCol = buffer.getWidth()/width;
+		for(int i = 0; i < numCol; i++)
+			animations.add(sliceColumn(buffer, false, height, width, i));
+		
+		if(mirror && numCol >= 2)
+		{
+			for(int i = 2; i < numCol; i++)
+				animations.add(sliceColumn(buffer, true, height, width, i));
+		}
+		
+		return animations;
+	}
+	
+	/**
+	 * Internal method which creates an Animation from frames of the animation sheet, packing them into the TextureAtlas.
+	 * @param frames The frames of the Animation.
 	 * @param speed The speed which the created Animation will run at.
 	 * @return A single Animation.
 	 * @see kaninator.graphics.Animation
 	 */
-	private static Animation createAnimation(BufferedImage buffer, boolean mirror, int height, int width, int column, double speed)
+	private static Animation packAnimation(BufferedImage frames[], double speed)
 	{
 		ArrayList<Drawable> drawList = new ArrayList<Drawable>();
-		if(buffer != null)
-		{
-			AffineTransform at = AffineTransform.getScaleInstance(-1, 1); 
-			at.translate(-width, 0);
-			AffineTransformOp op = new AffineTransformOp(at, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
-			
-			int numRow = buffer.getHeight()/height;
-			for(int i = 0; i < numRow; i++)
-			{
-				BufferedImage subImage = buffer.getSubimage(column * width, i * height, width, height);
-				drawList.add(new Image((mirror) ? op.filter(subImage, null) : subImage));
-			}
-		}
+		for(BufferedImage frame : frames)
+			drawList.add(ImageFactory.pack(frame));
 	
 		return new Animation(drawList, speed);
 	}
 	
 	/**
-	 * Internal method that creates an ArrayList of Animations from the sprite sheet contained at the file path. 
+	 * Internal method which creates an Animation from a BufferedImage containing the animation sheet.
+	 * @param buffer The BufferedImage containing the animation sheet.
+	 * @param mirror Whether the animation should be mirrored or not.
+	 * @param height The height of a single animation frame.
+	 * @param width The width of a single animation frame.
+	 * @param column The column of the animation sheet we want to create an Animation from.
+	 * @param speed The speed which the created Animation will run at.
+	 * @return A single Animation, without any frames if the buffer is null.
+	 * @see kaninator.graphics.Animation
+	 */
+	private static Animation createAnimation(BufferedImage buffer, boolean mirror, int height, int width, int column, double speed)
+	{
+		if(buffer == null)
+			return packAnimation(new BufferedImage[0], speed);
+		
+		return packAnimation(sliceColumn(buffer, mirror, height, width, column), speed);
+	}
+	
+	/**
+	 * Creates an ArrayList of Animations from the sprite sheet contained at the file path.
 	 * Handles errors internally and returns a dummy ArrayList of animations with the size 0 if the sprite sheet cannot be found or read.
 	 * @param filepath The path to the image file containing the sprite sheet.
 	 * @param mirror Whether the the animations after the first two should be mirrored as well. (The first two are the top/down directions and consequently cannot be mirrored)
@@ -71,23 +132,8 @@ public final class AnimationFactory
 		ArrayList<Animation> returnList = new ArrayList<Animation>();
 		try
 		{
-			if(filepath == null)
-				throw new IOException("ERR: File not found: " + filepath);
-			
-			URL url = returnList.getClass().getResource(filepath);
-			if(url == null)
-				throw new IOException("ERR: File not found: " + filepath);
-			
-			BufferedImage buffer = ImageIO.read(url);
-			int numCol = buffer.getWidth()/width;
-			for(int i = 0; i < numCol; i++)
-				returnList.add(createAnimation(buffer, false, height, width, i, speed));
-			
-			if(mirror && numCol >= 2)
-			{
-				for(int i = 2; i < numCol; i++)
-					returnList.add(createAnimation(buffer, true, height, width, i, speed));
-			}
+			for(BufferedImage frames[] : sliceSheet(filepath, mirror, height, width))
+				returnList.add(packAnimation(frames, speed));
 		}
 		catch(IOException e)
 		{
@@ -97,6 +143,32 @@ public final class AnimationFactory
 		return returnList;
 	}
 	
+	/**
+	 * Reads the sprite sheet at the file path and cuts it into frames like getAnimations, but only counts them.
+	 * Neither the cache nor the TextureAtlas is touched, so it can be called any number of times.
+	 * Used to measure the loading of the sprite sheets.
+	 * @param filepath The path to the image file containing the sprite sheet.
+	 * @param mirror Whether the the animations after the first two should be mirrored as well.
+	 * @param height The height of a single animation frame.
+	 * @param width The width of a single animation frame.
+	 * @return The number of frames in all the Animations, 0 if the sprite sheet cannot be found or read.
+	 */
+	public static int countFrames(String filepath, boolean mirror, int height, int width)
+	{
+		int frames = 0;
+		try
+		{
+			for(BufferedImage animation[] : sliceSheet(filepath, mirror, height, width))
+				frames += animation.length;
+		}
+		catch(IOException e)
+		{
+			System.out.println("ERR: Spritesheet not found: " + filepath + "\n" + e);
+		}
+		
+		return frames;
+	}
+	
 	
 	/**
 	 * Updates the transparency values for all the Animations that the AnimationFactory knows about.
@@ -250,6 +322,15 @@ public final class AnimationFactory
 				failedTest("Created invalid Animation instead of a dummy one. (Spritesheet method)");
 			System.out.println(".. Test Ok!");
 			
+			System.out.println("Testing frame counting method...");
+			if(countFrames("/resources/theSheet.png", true, 64, 64) != testAnim.size() * 3)
+				failedTest("Frame count differs from the loaded Animations (Frame counting method)");
+			System.out.print("..");
+			
+			if(countFrames("töttöröödz", true, 64, 64) != 0)
+				failedTest("Counted frames of an invalid path (Frame counting method)");
+			System.out.println(".. Test Ok!");
+			
 			System.out.println("Testing cloning method...");
 			//valid clone
 			ArrayList<Animation> cloneAnim = cloneAnimations(testAnim);
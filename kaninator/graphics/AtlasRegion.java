@@ -0,0 +1,100 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import java.awt.Graphics2D;
+
+/**
+ * A drawable part of a TextureAtlas page.
+ * Behaves exactly like an Image of its own, but draws a rectangle of the shared page instead.
+ * @author phedman
+ * @see kaninator.graphics.TextureAtlas
+ * @see kaninator.graphics.Drawable
+ */
+final class AtlasRegion implements Drawable
+{
+	private TextureAtlas.Page page;
+	private int src_x, src_y, width, height;
+
+	/**
+	 * Creates a region of an atlas page. Only created by the TextureAtlas.
+	 * @param _page The page the region is on.
+	 * @param _src_x The x coordinate of the region on the page.
+	 * @param _src_y The y coordinate of the region on the page.
+	 * @param _width The width of the region.
+	 * @param _height The height of the region.
+	 */
+	AtlasRegion(TextureAtlas.Page _page, int _src_x, int _src_y, int _width, int _height)
+	{
+		page = _page;
+		src_x = _src_x;
+		src_y = _src_y;
+		width = _width;
+		height = _height;
+	}
+
+	/**
+	 * Draws the region to the coordinates in the parameters.
+	 * @param g The graphics context the region will be drawn to.
+	 * @param x The x coordinate for the region.
+	 * @param y The y coordinate for the region.
+	 */
+	public void draw(Graphics2D g, int x, int y)
+	{
+		page.getImage().drawRegion(g, x, y, src_x, src_y, width, height);
+	}
+
+	/**
+	 * Getter for the page the region is on.
+	 * @return The atlas page.
+	 */
+	TextureAtlas.Page getPage()
+	{
+		return page;
+	}
+
+	/**
+	 * Getter for the x coordinate of the region on the page.
+	 * @return The x coordinate.
+	 */
+	int get_x()
+	{
+		return src_x;
+	}
+
+	/**
+	 * Getter for the y coordinate of the region on the page.
+	 * @return The y coordinate.
+	 */
+	int get_y()
+	{
+		return src_y;
+	}
+
+	/**
+	 * Getter for the width of the region.
+	 * @return The width of the region.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Getter for the height of the region.
+	 * @return The height of the region.
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Updates the page the region is on, effectively moving it to vram again before it is drawn the next time.
+	 */
+	public void update()
+	{
+		page.invalidate();
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+/**
+ * A font rendered in advance to images, one for every character in the Latin-1 character set.
+ * The glyphs are packed into the TextureAtlas, so drawing a line of text is a series of blits from the
+ * same surface instead of a full text layout every frame.
+ * BitmapFonts should only be created with getFont() to prevent duplicates.
+ * @author phedman
+ * @see kaninator.graphics.BitmapText
+ * @see kaninator.graphics.TextureAtlas
+ */
+public final class BitmapFont
+{
+	private static final int FIRST_CHAR = 32;
+	private static final int LAST_CHAR = 255;
+	private static final char REPLACEMENT_CHAR = '?';
+
+	private static HashMap<String, BitmapFont> fontMap = new HashMap<String, BitmapFont>();
+
+	private Drawable glyphs[];
+	private int advances[];
+	private int ascent, lineHeight;
+
+	/**
+	 * Renders every glyph of the font to an image of its own and packs them into the atlas.
+	 * @param font The font to be rendered.
+	 * @param color The color of the glyphs.
+	 */
+	private BitmapFont(Font font, Color color)
+	{
+		//A scratch image is needed for the metrics
+		Graphics2D scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		scratch.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		FontMetrics metrics = scratch.getFontMetrics(font);
+		scratch.dispose();
+
+		ascent = metrics.getAscent();
+		lineHeight = metrics.getAscent() + metrics.getDescent();
+		glyphs = new Drawable[LAST_CHAR + 1];
+		advances = new int[LAST_CHAR + 1];
+
+		for(int c = FIRST_CHAR; c <= LAST_CHAR; c++)
+		{
+			advances[c] = metrics.charWidth((char)c);
+			if(!font.canDisplay((char)c) || advances[c] <= 0)
+				continue;
+
+			BufferedImage glyph = new BufferedImage(advances[c], lineHeight, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = glyph.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setFont(font);
+			g.setColor(color);
+			g.drawString(String.valueOf((char)c), 0, ascent);
+			g.dispose();
+
+			glyphs[c] = ImageFactory.pack(glyph);
+		}
+	}
+
+	/**
+	 * Returns the BitmapFont for the font in question, rendering it the first time it is asked for.
+	 * @param name The name of the font
+	 * @param size The size of the font
+	 * @param style The style of the font using the flags from java.awt.Font
+	 * @param color The color of the text
+	 * @return The BitmapFont.
+	 * @see java.awt.Font
+	 */
+	public static synchronized BitmapFont getFont(String name, int size, int style, Color color)
+	{
+		String key = name + "/" + size + "/" + style + "/" + color.getRGB();
+		BitmapFont font = fontMap.get(key);
+		if(font == null)
+		{
+			font = new BitmapFont(new Font(name, style, size), color);
+			fontMap.put(key, font);
+		}
+
+		return font;
+	}
+
+	/**
+	 * Getter for the height of a line of text, ie. the ascent and descent of the font.
+	 * @return The height of a line.
+	 */
+	public int getLineHeight()
+	{
+		return lineHeight;
+	}
+
+	/**
+	 * Gets how far a character moves the following ones to the right.
+	 * @param c The character.
+	 * @return The advance of the character in pixels.
+	 */
+	public int getAdvance(char c)
+	{
+		return advances[map(c)];
+	}
+
+	/**
+	 * Draws characters from a buffer so that the top of the line is at the coordinates in the parameters.
+	 * @param g The graphics context the characters will be drawn to.
+	 * @param chars The buffer containing the characters.
+	 * @param length The number of characters to draw from the start of the buffer.
+	 * @param x The x coordinate for the line.
+	 * @param y The y coordinate for the line.
+	 */
+	public void drawChars(Graphics2D g, char chars[], int length, int x, int y)
+	{
+		for(int i = 0; i < length; i++)
+		{
+			int c = map(chars[i]);
+			if(glyphs[c] != null)
+				glyphs[c].draw(g, x, y);
+			x += advances[c];
+		}
+	}
+
+	/**
+	 * Maps a character to the index of a glyph, characters outside of the font are replaced.
+	 * @param c The character.
+	 * @return The index of the glyph.
+	 */
+	private static int map(char c)
+	{
+		return (c < FIRST_CHAR || c > LAST_CHAR) ? REPLACEMENT_CHAR : c;
+	}
+}
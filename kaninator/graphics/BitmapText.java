@@ -0,0 +1,234 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+/**
+ * A drawable line of text drawn with a BitmapFont.
+ * The text is kept in a mutable character buffer, so it can be changed every frame, numbers included,
+ * without creating any Strings. The width of the text is kept up to date as characters are appended.
+ * @author phedman
+ * @see kaninator.graphics.BitmapFont
+ * @see kaninator.graphics.Drawable
+ */
+public class BitmapText implements Drawable
+{
+	private static final int INITIAL_CAPACITY = 32;
+
+	private BitmapFont font;
+	private char chars[];
+	private int length, width;
+
+	/**
+	 * Creates the Drawable text, takes the same parameters as Text.
+	 * @param _text The text string to be drawn
+	 * @param _font The name of the font
+	 * @param _size The size of the font
+	 * @param _style The style of the font using the flags from java.awt.Font
+	 * @param _color The color of the text to be drawn
+	 * @see kaninator.graphics.Text
+	 * @see java.awt.Font
+	 */
+	public BitmapText(String _text, String _font, int _size, int _style, Color _color)
+	{
+		font = BitmapFont.getFont(_font, _size, _style, _color);
+		chars = new char[Math.max(INITIAL_CAPACITY, _text.length())];
+		length = width = 0;
+		append(_text);
+	}
+
+	/**
+	 * Draws the text to the coordinates in the parameters.
+	 * @param g The graphics context the text will be drawn to.
+	 * @param x The x coordinate for the text
+	 * @param y The y coordinate for the text
+	 */
+	public void draw(Graphics2D g, int x, int y)
+	{
+		//The text may be modified while it is drawn, so only use what is consistent
+		char buffer[] = chars;
+		font.drawChars(g, buffer, Math.min(length, buffer.length), x, y);
+	}
+
+	/**
+	 * Getter for the height of the text.
+	 * @return The height of a line in the font.
+	 */
+	public int getHeight()
+	{
+		return font.getLineHeight();
+	}
+
+	/**
+	 * Getter for the width of the text.
+	 * @return The width of the text.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Removes all the characters.
+	 * @return The BitmapText itself, so the calls can be chained.
+	 */
+	public BitmapText clear()
+	{
+		length = width = 0;
+		return this;
+	}
+
+	/**
+	 * Replaces the text.
+	 * @param text The new text.
+	 */
+	public void setText(String text)
+	{
+		clear();
+		append(text);
+	}
+
+	/**
+	 * Appends a character to the end of the text.
+	 * @param c The character.
+	 * @return The BitmapText itself, so the calls can be chained.
+	 */
+	public BitmapText append(char c)
+	{
+		if(length == chars.length)
+			chars = Arrays.copyOf(chars, chars.length * 2);
+
+		chars[length++] = c;
+		width += font.getAdvance(c);
+		return this;
+	}
+
+	/**
+	 * Appends a string to the end of the text.
+	 * @param text The string.
+	 * @return The BitmapText itself, so the calls can be chained.
+	 */
+	public BitmapText append(String text)
+	{
+		for(int i = 0; i < text.length(); i++)
+			append(text.charAt(i));
+		return this;
+	}
+
+	/**
+	 * Appends an integer in decimal form to the end of the text without creating a String.
+	 * @param value The integer.
+	 * @return The BitmapText itself, so the calls can be chained.
+	 */
+	public BitmapText append(long value)
+	{
+		if(value < 0)
+		{
+			append('-');
+		}
+		else
+		{
+			//Work with negative values, so that the smallest long doesn't overflow
+			value = -value;
+		}
+
+		long divisor = 1;
+		while(value / divisor <= -10)
+			divisor *= 10;
+
+		for(; divisor != 0; divisor /= 10)
+		{
+			append((char)('0' - value / divisor));
+			value %= divisor;
+		}
+		return this;
+	}
+
+	/**
+	 * Getter for the number of characters in the text.
+	 * @return The number of characters.
+	 */
+	public int length()
+	{
+		return length;
+	}
+
+	/**
+	 * Getter for a single character.
+	 * @param i The index of the character.
+	 * @return The character.
+	 */
+	public char charAt(int i)
+	{
+		return chars[i];
+	}
+
+	/**
+	 * Dummy method needed to implement the Drawable interface.
+	 * The glyphs are updated along with the rest of the atlas.
+	 */
+	public void update()
+	{
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			BitmapText text = new BitmapText("HP: ", "Impact", 16, java.awt.Font.PLAIN, Color.RED);
+			if(text.length() != 4 || text.getWidth() <= 0 || text.getHeight() <= 0)
+				failedTest("Invalid text after construction.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing append..");
+			long values[] = {0, 7, -7, 10, 99, 100, 123456789, -2147483648L, Long.MAX_VALUE, Long.MIN_VALUE};
+			for(long value : values)
+			{
+				text.clear().append("HP: ").append(value);
+				String expected = "HP: " + value;
+				if(text.length() != expected.length())
+					failedTest("Invalid length after appending " + value);
+				for(int i = 0; i < expected.length(); i++)
+					if(text.charAt(i) != expected.charAt(i))
+						failedTest("Invalid characters after appending " + value);
+				System.out.print("..");
+			}
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing width..");
+			BitmapText other = new BitmapText("HP: 100", "Impact", 16, java.awt.Font.PLAIN, Color.RED);
+			text.setText("HP: ");
+			text.append(100);
+			if(text.getWidth() != other.getWidth())
+				failedTest("Width differs between appended and constructed text.");
+			text.clear();
+			if(text.getWidth() != 0)
+				failedTest("Width not 0 after clear.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -31,18 +31,36 @@ public interface Canvas
 	public void addElement(VisibleElement element);
 	
 	/**
-	 * Draws the drawing queue in order to the screen.
+	 * Adds a range of elements from a DisplayList to the tail of the drawing queue.
+	 * The elements are copied, so the DisplayList can be reused as soon as the method returns.
+	 * @param list The DisplayList containing the elements.
+	 * @param from The index of the first element to be added.
+	 * @param to The index after the last element to be added.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void addElements(DisplayList list, int from, int to);
+	
+	/**
+	 * Replaces the overlay layer, which is drawn on top of the drawing queue every frame until it is replaced again.
+	 * The elements are copied, so the DisplayList can be reused as soon as the method returns.
+	 * @param list The DisplayList containing the elements of the overlay.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void setOverlay(DisplayList list);
+	
+	/**
+	 * Draws the drawing queue in order to the screen, followed by the overlay.
 	 */
 	public void draw();
 	
 	/**
-	 * Getter for the width of the drawable area.
+	 * Getter for the width of the drawable area, at the current render scale.
 	 * @return The width of the drawable area.
 	 */
 	public int getWidth();
 	
 	/**
-	 * Getter for the height of the drawable area.
+	 * Getter for the height of the drawable area, at the current render scale.
 	 * @return The height of the drawable area..
 	 */
 	public int getHeight();
@@ -70,6 +88,32 @@ public interface Canvas
 	 */
 	public void changeSize();
 	
+	/**
+	 * Sets the fraction of the window size the game is rendered at, turning the automatic mode off.
+	 * The width and height of the drawable area are scaled accordingly.
+	 * @param scale The render scale, between 0.5 and 1.0.
+	 */
+	public void setRenderScale(double scale);
+	
+	/**
+	 * Getter for the current render scale.
+	 * @return The fraction of the window size the game is rendered at.
+	 */
+	public double getRenderScale();
+	
+	/**
+	 * Turns the automatic render scale on or off. The automatic mode adjusts the render scale
+	 * so that the frames stay within the frame budget.
+	 * @param frameBudget The time in milliseconds a frame may take, 0 turns the automatic mode off.
+	 */
+	public void setAutoScale(int frameBudget);
+	
+	/**
+	 * Checks if the render scale is adjusted automatically.
+	 * @return True if the automatic mode is on.
+	 */
+	public boolean isAutoScale();
+	
 	/**
 	 * Hides alternatively shows the mouse cursor when above the window.
 	 * @param hide True to hide, false to show the cursor.
@@ -0,0 +1,232 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.util.Arrays;
+
+/**
+ * A reusable list of Drawables together with their on screen coordinates.
+ * Does the same job as a list of VisibleElements, but stores the coordinates in parallel arrays
+ * that only grow and are reused after the list has been cleared. Filling the list every frame
+ * consequently doesn't create any garbage once it has grown large enough.
+ * The list can also contain clipping commands, which limit the area the following elements are drawn to.
+ * @see kaninator.graphics.VisibleElement
+ * @see kaninator.graphics.Canvas
+ * @author phedman
+ */
+public class DisplayList
+{
+	private static final int INITIAL_CAPACITY = 256;
+
+	private int size;
+	private Drawable drawables[];
+	private int pos_x[], pos_y[], heights[], clip_w[];
+
+	/**
+	 * Creates an empty display list.
+	 */
+	public DisplayList()
+	{
+		size = 0;
+		drawables = new Drawable[INITIAL_CAPACITY];
+		pos_x = new int[INITIAL_CAPACITY];
+		pos_y = new int[INITIAL_CAPACITY];
+		heights = new int[INITIAL_CAPACITY];
+		clip_w = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Empties the list. Keeps the internal arrays so they can be reused.
+	 */
+	public void clear()
+	{
+		removeLast(size);
+	}
+
+	/**
+	 * Removes elements from the tail of the list.
+	 * @param n The number of elements to remove.
+	 */
+	public void removeLast(int n)
+	{
+		if(n > size)
+			n = size;
+
+		for(int i = size - n; i < size; i++)
+			drawables[i] = null;
+
+		size -= n;
+	}
+
+	/**
+	 * Adds a Drawable to the tail of the list.
+	 * @param drawable The Drawable to be drawn.
+	 * @param x The x-coordinate for the element.
+	 * @param y The y-coordinate for the element.
+	 * @param height The height the element is positioned at.
+	 */
+	public void add(Drawable drawable, int x, int y, int height)
+	{
+		if(size == drawables.length)
+			grow(size + 1);
+
+		drawables[size] = drawable;
+		pos_x[size] = x;
+		pos_y[size] = y;
+		heights[size] = height;
+		size++;
+	}
+
+	/**
+	 * Adds a clipping command to the tail of the list. The elements after it will only be drawn
+	 * inside of the rectangle, until the next clipping command.
+	 * @param x The x-coordinate of the rectangle.
+	 * @param y The y-coordinate of the rectangle.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 */
+	public void addClip(int x, int y, int width, int height)
+	{
+		if(size == drawables.length)
+			grow(size + 1);
+
+		drawables[size] = null;
+		pos_x[size] = x;
+		pos_y[size] = y;
+		heights[size] = height;
+		clip_w[size] = width;
+		size++;
+	}
+
+	/**
+	 * Adds a clipping command that removes the clip set by the previous one.
+	 */
+	public void addClipReset()
+	{
+		addClip(0, 0, -1, -1);
+	}
+
+	/**
+	 * Adds the contents of a VisibleElement to the tail of the list.
+	 * @param elem The VisibleElement to be added.
+	 */
+	public void add(VisibleElement elem)
+	{
+		add(elem.getDrawable(), elem.get_x(), elem.get_y(), elem.getHeight());
+	}
+
+	/**
+	 * Adds a range of elements from another list to the tail of this one.
+	 * @param list The list to copy the elements from.
+	 * @param from The index of the first element to be copied.
+	 * @param to The index after the last element to be copied.
+	 */
+	public void addAll(DisplayList list, int from, int to)
+	{
+		int n = to - from;
+		if(n <= 0)
+			return;
+
+		if(size + n > drawables.length)
+			grow(size + n);
+
+		System.arraycopy(list.drawables, from, drawables, size, n);
+		System.arraycopy(list.pos_x, from, pos_x, size, n);
+		System.arraycopy(list.pos_y, from, pos_y, size, n);
+		System.arraycopy(list.heights, from, heights, size, n);
+		System.arraycopy(list.clip_w, from, clip_w, size, n);
+		size += n;
+	}
+
+	/**
+	 * Getter for the number of elements in the list.
+	 * @return The number of elements.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the Drawable at the index.
+	 * @param i The index of the element.
+	 * @return The Drawable, null if the element is a clipping command.
+	 */
+	public Drawable getDrawable(int i)
+	{
+		return drawables[i];
+	}
+
+	/**
+	 * Gets the x-coordinate at the index.
+	 * @param i The index of the element.
+	 * @return The x-coordinate for the element.
+	 */
+	public int get_x(int i)
+	{
+		return pos_x[i];
+	}
+
+	/**
+	 * Gets the y-coordinate at the index.
+	 * @param i The index of the element.
+	 * @return The y-coordinate for the element.
+	 */
+	public int get_y(int i)
+	{
+		return pos_y[i];
+	}
+
+	/**
+	 * Gets the height at the index.
+	 * @param i The index of the element.
+	 * @return The height the element is positioned at.
+	 */
+	public int getHeight(int i)
+	{
+		return heights[i];
+	}
+
+	/**
+	 * Draws the elements in order to the graphics context.
+	 * @param g The graphics context the elements will be drawn to.
+	 */
+	public void draw(Graphics2D g)
+	{
+		Shape base = g.getClip();
+		for(int i = 0; i < size; i++)
+		{
+			if(drawables[i] != null)
+			{
+				drawables[i].draw(g, pos_x[i], pos_y[i] - heights[i]);
+				continue;
+			}
+
+			//The clipping commands only ever narrow down the clip the context had to begin with
+			g.setClip(base);
+			if(clip_w[i] >= 0)
+				g.clipRect(pos_x[i], pos_y[i], clip_w[i], heights[i]);
+		}
+		g.setClip(base);
+	}
+
+	/**
+	 * Grows the internal arrays so they can hold at least the amount of elements given.
+	 * @param capacity The minimum amount of elements the list should be able to hold.
+	 */
+	private void grow(int capacity)
+	{
+		int length = drawables.length;
+		while(length < capacity)
+			length *= 2;
+
+		drawables = Arrays.copyOf(drawables, length);
+		pos_x = Arrays.copyOf(pos_x, length);
+		pos_y = Arrays.copyOf(pos_y, length);
+		heights = Arrays.copyOf(heights, length);
+		clip_w = Arrays.copyOf(clip_w, length);
+	}
+}
@@ -13,7 +13,8 @@ import java.net.URL;
 /**
  * A drawable image object.
  * Makes it possible to draw images with the drawable interface.
- * Uses VolatileImage from the java awt library.
+ * Uses VolatileImage from the java awt library. When there is no screen device, for example when
+ * running with java.awt.headless=true, a BufferedImage in a format that is fast to draw is used instead.
  * @see kaninator.graphics.Drawable
  * @author phedman
  */
@@ -22,6 +23,7 @@ public class Image implements Drawable
 
 	private BufferedImage buffer;
 	private VolatileImage vramImg;
+	private BufferedImage fallbackImg;
 	private GraphicsConfiguration gfxConf;
 	
 	
@@ -33,10 +35,7 @@ public class Image implements Drawable
 	 */
 	protected Image(String filepath) throws IOException
 	{
-		//Obtain the current system graphical settings
-		gfxConf = GraphicsEnvironment.
-	    getLocalGraphicsEnvironment().getDefaultScreenDevice().
-	    getDefaultConfiguration();
+		gfxConf = getConfiguration();
 	
 		URL url = this.getClass().getResource(filepath);
 		if(url == null)
@@ -47,12 +46,13 @@ public class Image implements Drawable
 		maintainImg();
 	}
 	
+	/**
+	 * Creates an image from image data already in memory.
+	 * @param _buffer The image data.
+	 */
 	protected Image(BufferedImage _buffer)
 	{
-		//Obtain the current system graphical settings
-		gfxConf = GraphicsEnvironment.
-	    getLocalGraphicsEnvironment().getDefaultScreenDevice().
-	    getDefaultConfiguration();
+		gfxConf = getConfiguration();
 	
 		buffer = _buffer;
 		moveToVram();
@@ -68,7 +68,25 @@ public class Image implements Drawable
 	public void draw(Graphics2D g, int x, int y)
 	{
 		maintainImg();
-		g.drawImage(vramImg, x, y, null);
+		g.drawImage(getSurface(), x, y, null);
+	}
+
+	/**
+	 * Draws a rectangular part of the image to the coordinates in the parameters.
+	 * Used to draw the regions of a TextureAtlas page.
+	 * @param g The graphics context the image will be drawn to.
+	 * @param x The x coordinate for the part.
+	 * @param y The y coordinate for the part.
+	 * @param src_x The x coordinate of the part in the image.
+	 * @param src_y The y coordinate of the part in the image.
+	 * @param width The width of the part.
+	 * @param height The height of the part.
+	 * @see kaninator.graphics.TextureAtlas
+	 */
+	public void drawRegion(Graphics2D g, int x, int y, int src_x, int src_y, int width, int height)
+	{
+		maintainImg();
+		g.drawImage(getSurface(), x, y, x + width, y + height, src_x, src_y, src_x + width, src_y + height, null);
 	}
 
 	/**
@@ -98,16 +116,50 @@ public class Image implements Drawable
 		moveToVram();
 	}
 	
+	/**
+	 * Obtains the current system graphical settings.
+	 * @return The default configuration of the default screen device, null if there is no screen device.
+	 */
+	private static GraphicsConfiguration getConfiguration()
+	{
+		if(GraphicsEnvironment.isHeadless())
+			return null;
+		
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+	}
+	
+	/**
+	 * Getter for the image that is actually drawn.
+	 * @return The VolatileImage, or the fallback BufferedImage if there is no screen device.
+	 */
+	private java.awt.Image getSurface()
+	{
+		return (vramImg != null) ? vramImg : fallbackImg;
+	}
+	
 	/**
 	 * Creates a VolatileImage from the BufferedImage.
 	 * Effectively copying the image to vram.
+	 * Without a screen device the image is copied to a BufferedImage with premultiplied alpha instead,
+	 * which is the format Java2D composites fastest in software.
 	 * @see java.awt.image.VolatileImage
 	 * @see java.awt.image.BufferedImage
 	 */
 	private void moveToVram()
 	{
-	    //Create new VolatileImage
 		int transparency = (buffer.getTransparency() == Transparency.OPAQUE) ? Transparency.OPAQUE : ImageFactory.getTransparency();
+		if(gfxConf == null)
+		{
+			int type = (transparency == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+			fallbackImg = new BufferedImage(buffer.getWidth(), buffer.getHeight(), type);
+			Graphics2D g2d = fallbackImg.createGraphics();
+			g2d.setComposite(AlphaComposite.Src);
+			g2d.drawImage(buffer, 0, 0, null);
+			g2d.dispose();
+			return;
+		}
+		
+	    //Create new VolatileImage
 	    vramImg = gfxConf.createCompatibleVolatileImage(buffer.getWidth(),
 	    			buffer.getHeight(), transparency);
 
@@ -131,7 +183,7 @@ public class Image implements Drawable
 	 */
 	private void maintainImg()
 	{
-		if(vramImg.contentsLost())
+		if(vramImg != null && vramImg.contentsLost())
 		{
 			moveToVram();
 			maintainImg();
@@ -146,6 +198,9 @@ public class Image implements Drawable
 		if(vramImg != null)
 			vramImg.flush();
 		
+		if(fallbackImg != null)
+			fallbackImg.flush();
+		
 		if(buffer != null)
 			buffer.flush();
 	}
@@ -4,20 +4,27 @@
 package kaninator.graphics;
 
 import java.util.HashMap;
+import java.awt.image.BufferedImage;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Transparency;
+import java.io.IOException;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
 /**
  * The only way to create Images.
  * Uses a HashMap to keep track of the Images that have already been loaded in order to avoid duplicates.
  * Also handles error checking internally, effectively returning a dummy Drawable if the loading fails.
+ * Small images are packed into a TextureAtlas, so they share their accelerated surface with the other small images.
  * @author phedman
  * @see kaninator.graphics.Image
  * @see kaninator.graphics.Drawable
  */
 public final class ImageFactory
 {
-	private static HashMap<String, Image> imageMap = new HashMap<String, Image>();
+	private static HashMap<String, Drawable> imageMap = new HashMap<String, Drawable>();
+	private static TextureAtlas atlas = new TextureAtlas();
 	private static Text notFound =  new Text("Image not found!", "Tahoma", 12, Font.PLAIN, Color.RED);
 	private static int transparency = Transparency.BITMASK;
 	
@@ -59,14 +66,18 @@ public final class ImageFactory
 	 */
 	public static Drawable getImage(String filepath)
 	{
-		Image retImage = imageMap.get(filepath);
+		Drawable retImage = imageMap.get(filepath);
 		
 		if(retImage != null)
 			return retImage;
 		
 		try
 		{
-			retImage = new Image(filepath);
+			URL url = ImageFactory.class.getResource(filepath);
+			if(url == null)
+				throw new IOException("ERR: File not found: " + filepath);
+			
+			retImage = pack(ImageIO.read(url));
 		}
 		catch(Exception e)
 		{
@@ -79,13 +90,42 @@ public final class ImageFactory
 	}
 	
 	
+	/**
+	 * Creates an Image from image data generated at runtime, for example pre-rendered parts of the map.
+	 * The Image isn't stored in the internal HashMap, the caller is responsible for keeping track of it.
+	 * @param buffer The image data.
+	 * @return An Image containing the image data.
+	 * @see kaninator.graphics.Image
+	 */
+	public static Drawable createImage(BufferedImage buffer)
+	{
+		return new Image(buffer);
+	}
+	
+	/**
+	 * Creates a Drawable from image data loaded by the graphics package.
+	 * Packs the image into the TextureAtlas if it is small enough, otherwise creates an Image of its own.
+	 * @param buffer The image data.
+	 * @return A Drawable drawing the image data.
+	 * @see kaninator.graphics.TextureAtlas
+	 */
+	static Drawable pack(BufferedImage buffer)
+	{
+		AtlasRegion region = atlas.pack(buffer);
+		if(region != null)
+			return region;
+		
+		return new Image(buffer);
+	}
+	
 	/**
 	 * Updates the transparency values for all the Images that the ImageFactory knows about.
 	 */
 	private static void updateTransparencies()
 	{
-		for(Image img : imageMap.values())
+		for(Drawable img : imageMap.values())
 			img.update();
+		atlas.update();
 	}
 	
 	/**
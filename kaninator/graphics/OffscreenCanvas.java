@@ -0,0 +1,316 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Implements the Canvas interface without a window, by drawing every frame into a BufferedImage.
+ * Works with java.awt.headless=true, so the rendering can be run and timed on machines without a display.
+ * The frames are drawn synchronously in draw(), and can be inspected afterwards with getImage() or
+ * compared against earlier runs with hash().
+ * @see kaninator.graphics.Canvas
+ * @see kaninator.graphics.Screen
+ * @author phedman
+ */
+public class OffscreenCanvas implements Canvas
+{
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private BufferedImage image;
+	private Color clearColor;
+	private DisplayList drawList, overlay;
+	private RenderScaler scaler;
+	private Dimension sizes[];
+	private int resIndex;
+
+	/**
+	 * Creates the canvas and the image for the first resolution.
+	 * @param _sizes An array of Dimensions containing the allowed resolutions
+	 * @see java.awt.Dimension
+	 */
+	public OffscreenCanvas(Dimension _sizes[])
+	{
+		resIndex = 0;
+		sizes = _sizes;
+		drawList = new DisplayList();
+		overlay = new DisplayList();
+		scaler = new RenderScaler();
+		clearColor = new Color(0, 0, 0);
+		createImage();
+	}
+
+	/**
+	 * Adds a VisibleElement to the tail of the drawing queue.
+	 * @see kaninator.graphics.VisibleElement
+	 */
+	public void addElement(VisibleElement elem)
+	{
+		drawList.add(elem);
+	}
+
+	/**
+	 * Copies a range of elements from a DisplayList to the tail of the drawing queue.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void addElements(DisplayList list, int from, int to)
+	{
+		drawList.addAll(list, from, to);
+	}
+
+	/**
+	 * Replaces the overlay layer.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void setOverlay(DisplayList list)
+	{
+		overlay.clear();
+		overlay.addAll(list, 0, list.size());
+	}
+
+	/**
+	 * Empties the drawing queue.
+	 */
+	public void clear()
+	{
+		drawList.clear();
+	}
+
+	/**
+	 * Clears the top of the drawing queue.
+	 * @param n The number of elements to clear.
+	 */
+	public void clearTop(int n)
+	{
+		drawList.removeLast(n);
+	}
+
+	/**
+	 * Draws the drawing queue and the overlay into the image before returning.
+	 */
+	public void draw()
+	{
+		Graphics2D g = image.createGraphics();
+		scaler.draw(g, drawList, overlay, clearColor, image.getWidth(), image.getHeight(), scaler.getScale());
+		g.dispose();
+
+		scaler.frameFinished();
+	}
+
+	/**
+	 * Getter for the image the frames are drawn into.
+	 * @return The image containing the last frame drawn.
+	 */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
+	/**
+	 * Calculates a hash of the pixels of the last frame drawn, using 64 bit FNV-1a.
+	 * Two frames drawn from the same elements at the same resolution have the same hash,
+	 * so it can be compared against a hash recorded earlier to catch changes in the rendering.
+	 * @return The hash of the image.
+	 */
+	public long hash()
+	{
+		int pixels[] = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		long hash = FNV_OFFSET;
+		for(int pixel : pixels)
+		{
+			for(int shift = 0; shift < 32; shift += 8)
+			{
+				hash ^= (pixel >>> shift) & 0xff;
+				hash *= FNV_PRIME;
+			}
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Getter for the width of the image, scaled with the render scale.
+	 * @return The width of the drawable area.
+	 */
+	public int getWidth()
+	{
+		return scaler.scaled(image.getWidth());
+	}
+
+	/**
+	 * Getter for the height of the image, scaled with the render scale.
+	 * @return The height of the drawable area.
+	 */
+	public int getHeight()
+	{
+		return scaler.scaled(image.getHeight());
+	}
+
+	/**
+	 * Getter for the width of the image, there is no window around it.
+	 * @return The width of the image.
+	 */
+	public int getResWidth()
+	{
+		return image.getWidth();
+	}
+
+	/**
+	 * Getter for the height of the image, there is no window around it.
+	 * @return The height of the image.
+	 */
+	public int getResHeight()
+	{
+		return image.getHeight();
+	}
+
+	/**
+	 * Getter for the window insets, always empty since there is no window.
+	 * @return An empty Dimension.
+	 */
+	public Dimension getInsets()
+	{
+		return new Dimension();
+	}
+
+	/**
+	 * Changes the image size according to the values in an internal array.
+	 */
+	public void changeSize()
+	{
+		resIndex++;
+		if(resIndex >= sizes.length)
+			resIndex = 0;
+
+		createImage();
+	}
+
+	/**
+	 * Sets the fraction of the image size the game is rendered at, turning the automatic mode off.
+	 * @param scale The render scale, between 0.5 and 1.0.
+	 * @see kaninator.graphics.RenderScaler
+	 */
+	public void setRenderScale(double scale)
+	{
+		scaler.setScale(scale);
+	}
+
+	/**
+	 * Getter for the current render scale.
+	 * @return The fraction of the image size the game is rendered at.
+	 */
+	public double getRenderScale()
+	{
+		return scaler.getScale();
+	}
+
+	/**
+	 * Turns the automatic render scale on or off.
+	 * @param frameBudget The time in milliseconds a frame may take, 0 turns the automatic mode off.
+	 */
+	public void setAutoScale(int frameBudget)
+	{
+		scaler.setAutoScale(frameBudget);
+	}
+
+	/**
+	 * Checks if the render scale is adjusted automatically.
+	 * @return True if the automatic mode is on.
+	 */
+	public boolean isAutoScale()
+	{
+		return scaler.isAutoScale();
+	}
+
+	/**
+	 * Dummy method needed to implement the Canvas interface, there is no cursor to hide.
+	 * @param hide Ignored here.
+	 */
+	public void hideCursor(boolean hide)
+	{
+	}
+
+	/**
+	 * Creates the image for the current resolution.
+	 */
+	private void createImage()
+	{
+		image = new BufferedImage(sizes[resIndex].width, sizes[resIndex].height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			Dimension sizes[] = {new Dimension(320, 240), new Dimension(640, 480)};
+			OffscreenCanvas canvas = new OffscreenCanvas(sizes);
+			if(canvas.getWidth() != 320 || canvas.getHeight() != 240 || canvas.getInsets().width != 0)
+				failedTest("Invalid dimensions after construction.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing draw..");
+			Drawable tile = ImageFactory.getImage("/resources/flat.png");
+			canvas.draw();
+			long empty = canvas.hash();
+			canvas.addElement(new VisibleElement(tile, 10, 20, 0));
+			canvas.draw();
+			long drawn = canvas.hash();
+			if(drawn == empty)
+				failedTest("The element wasn't drawn.");
+			System.out.print("..");
+
+			canvas.draw();
+			if(canvas.hash() != drawn)
+				failedTest("The same frame has a different hash.");
+			System.out.print("..");
+
+			canvas.clear();
+			canvas.draw();
+			if(canvas.hash() != empty)
+				failedTest("The canvas wasn't cleared.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the render scale..");
+			canvas.addElement(new VisibleElement(tile, 10, 20, 0));
+			canvas.setRenderScale(0.5);
+			if(canvas.getWidth() != 160 || canvas.getResWidth() != 320)
+				failedTest("Invalid dimensions at half scale.");
+			canvas.draw();
+			if(canvas.hash() == empty)
+				failedTest("The element wasn't drawn at half scale.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing changeSize..");
+			canvas.changeSize();
+			if(canvas.getResWidth() != 640 || canvas.getResHeight() != 480)
+				failedTest("Invalid dimensions after changeSize.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws a DisplayList at a lower internal resolution and scales the result up to the window in a single blit.
+ * Used by the Canvas implementations to implement the render scale. The scale can either be set directly,
+ * or adjusted automatically so that the time between frames, or the time it takes to build and draw them, stays within a frame budget.
+ * The automatic mode is measured on the thread that draws the frames, which keeps the counters to itself.
+ * Turning the automatic mode on only flags them to be reset the next time a frame is finished.
+ * @author phedman
+ * @see kaninator.graphics.Screen
+ * @see kaninator.graphics.ActiveScreen
+ */
+final class RenderScaler
+{
+	private static final double MIN_SCALE = 0.5;
+	private static final double SCALE_STEP = 0.05;
+	private static final double BUDGET_TOLERANCE = 1.1;
+	private static final int FRAMES_BEFORE_DOWN = 5;
+	private static final int FRAMES_BEFORE_UP = 60;
+
+	private volatile double scale;
+	private volatile long budget;
+	private AtomicBoolean reset;
+	private long lastFrame;
+	private int framesOver, framesUnder;
+	private VolatileImage buffer;
+
+	/**
+	 * Creates a scaler with the scale 1.0 and the automatic mode turned off.
+	 */
+	RenderScaler()
+	{
+		scale = 1.0;
+		budget = 0;
+		reset = new AtomicBoolean(false);
+		lastFrame = 0;
+		framesOver = framesUnder = 0;
+		buffer = null;
+	}
+
+	/**
+	 * Sets the render scale and turns off the automatic mode.
+	 * @param _scale The fraction of the window size to render at, clamped to [MIN_SCALE, 1.0].
+	 */
+	void setScale(double _scale)
+	{
+		budget = 0;
+		scale = clamp(_scale);
+	}
+
+	/**
+	 * Getter for the current render scale.
+	 * @return The fraction of the window size that is rendered.
+	 */
+	double getScale()
+	{
+		return scale;
+	}
+
+	/**
+	 * Turns the automatic mode on or off. The automatic mode starts from the current scale,
+	 * without the frames measured before.
+	 * @param frameBudget The time in milliseconds a frame may take, 0 turns the automatic mode off.
+	 */
+	void setAutoScale(int frameBudget)
+	{
+		reset.set(true);
+		budget = frameBudget * 1000000L;
+	}
+
+	/**
+	 * Checks if the automatic mode is on.
+	 * @return True if the scale is adjusted automatically.
+	 */
+	boolean isAutoScale()
+	{
+		return budget > 0;
+	}
+
+	/**
+	 * Scales a window dimension to the internal resolution.
+	 * @param size The width or height of the window.
+	 * @return The corresponding internal width or height.
+	 */
+	int scaled(int size)
+	{
+		return Math.max(1, (int)(size * scale));
+	}
+
+	/**
+	 * Should be called once every time a frame is finished, on the thread that draws the frames. Measures the time since
+	 * the previous frame and adjusts the scale with it.
+	 * @see kaninator.graphics.RenderScaler#frameFinished(long)
+	 */
+	void frameFinished()
+	{
+		if(budget <= 0)
+			return;
+
+		long now = System.nanoTime();
+		long frameTime = (lastFrame == 0 || reset.get()) ? 0 : now - lastFrame;
+		lastFrame = now;
+
+		frameFinished(frameTime);
+	}
+
+	/**
+	 * Should be called once every time a frame is finished, on the thread that draws the frames, with the time the frame took.
+	 * Used when the frames are built on another thread than the one drawing them, where the time between the frames
+	 * is set by the thread building them. Adjusts the scale if the automatic mode is on: lowers it if the frames keep exceeding the budget,
+	 * and raises it again once they have stayed within it for a while.
+	 * @param frameTime The time the frame took in nanoseconds.
+	 */
+	void frameFinished(long frameTime)
+	{
+		if(budget <= 0)
+			return;
+		if(reset.compareAndSet(true, false))
+			framesOver = framesUnder = 0;
+
+		if(frameTime > budget * BUDGET_TOLERANCE)
+		{
+			framesUnder = 0;
+			if(++framesOver >= FRAMES_BEFORE_DOWN)
+			{
+				scale = clamp(scale - SCALE_STEP);
+				framesOver = 0;
+			}
+		}
+		else
+		{
+			framesOver = 0;
+			if(++framesUnder >= FRAMES_BEFORE_UP)
+			{
+				scale = clamp(scale + SCALE_STEP);
+				framesUnder = 0;
+			}
+		}
+	}
+
+	/**
+	 * Clears the graphics context and draws a DisplayList and the overlay on top of it at the scale given.
+	 * At full scale the list is drawn directly, otherwise it is drawn to an offscreen buffer which is then scaled to the window.
+	 * @param g The graphics context of the window.
+	 * @param list The elements to draw, laid out for the internal resolution.
+	 * @param overlay The elements to draw on top of the others, laid out for the internal resolution.
+	 * @param clearColor The color the frame is cleared with.
+	 * @param width The width of the window.
+	 * @param height The height of the window.
+	 * @param frameScale The scale the DisplayList was laid out for.
+	 */
+	void draw(Graphics2D g, DisplayList list, DisplayList overlay, Color clearColor, int width, int height, double frameScale)
+	{
+		if(frameScale >= 1.0)
+		{
+			g.setColor(clearColor);
+			g.fillRect(0, 0, width, height);
+			list.draw(g);
+			overlay.draw(g);
+			return;
+		}
+
+		int internalWidth = Math.max(1, (int)(width * frameScale));
+		int internalHeight = Math.max(1, (int)(height * frameScale));
+		GraphicsConfiguration gfxConf = g.getDeviceConfiguration();
+
+		do
+		{
+			if(buffer == null || buffer.getWidth() != internalWidth || buffer.getHeight() != internalHeight ||
+					buffer.validate(gfxConf) == VolatileImage.IMAGE_INCOMPATIBLE)
+			{
+				if(buffer != null)
+					buffer.flush();
+				buffer = gfxConf.createCompatibleVolatileImage(internalWidth, internalHeight, Transparency.OPAQUE);
+			}
+
+			Graphics2D bufferGfx = buffer.createGraphics();
+			bufferGfx.setColor(clearColor);
+			bufferGfx.fillRect(0, 0, internalWidth, internalHeight);
+			list.draw(bufferGfx);
+			overlay.draw(bufferGfx);
+			bufferGfx.dispose();
+
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(buffer, 0, 0, width, height, 0, 0, internalWidth, internalHeight, null);
+		}
+		while(buffer.contentsLost());
+	}
+
+	/**
+	 * Clamps a scale to the allowed range.
+	 * @param value The scale.
+	 * @return The scale clamped to [MIN_SCALE, 1.0].
+	 */
+	private static double clamp(double value)
+	{
+		return Math.max(MIN_SCALE, Math.min(1.0, value));
+	}
+}
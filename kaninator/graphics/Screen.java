@@ -6,12 +6,17 @@ package kaninator.graphics;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.MemoryImageSource;
-import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implements the Canvas interface with the Java2D library.
  * Takes a number of VisibleElement objects and draws them to the screen with the Java2D API.
  * Also responsible for creating and initializing the window.
+ * The game thread builds the next frame in a display list of its own, and hands a finished copy of it to the
+ * Swing thread through an atomic swap, so neither thread ever waits for the other and a half-built frame is never painted.
+ * All the methods except draw() only touch the game thread's list, so they should all be called from the same thread.
+ * The automatic render scale is fed the whole cost of a frame: the time the game thread took to build it, from clear() to draw(),
+ * plus the time the Swing thread takes to paint it.
  * @see kaninator.graphics.Canvas
  * @see kaninator.graphics.VisibleElement
  * @see javax.swing.JFrame
@@ -35,30 +40,42 @@ public class Screen implements Canvas
 
 		/**
 		 * Draws the VisibleElements contained in the drawing queue in order.
+		 * The painting of every new frame is timed and added to the time it took to build it for the automatic render scale.
 		 */
 		public void paintComponent(Graphics graphics)
 		{
 			super.paintComponent(graphics);
 			Graphics2D g = (Graphics2D)graphics;
 			
-			g.setColor(clearColor);
-			g.fillRect(0, 0, getWidth(), getHeight());
+			//Swap in the newest published frame, if there is one we haven't painted yet
+			boolean newFrame = published.get().sequence > front.sequence;
+			if(newFrame)
+				front = published.getAndSet(front);
 			
-			synchronized(canvas)
-			{
-				for(VisibleElement elem : drawList)
-				{
-					//Unwrap the drawable contained in the VisibleElement and draw it to the screen
-					Drawable drawable = elem.getDrawable();
-					drawable.draw(g, elem.get_x(), elem.get_y() - elem.getHeight());
-				}
-			}
+			long start = System.nanoTime();
+			scaler.draw(g, front.list, front.overlay, clearColor, getWidth(), getHeight(), front.scale);
+			if(newFrame)
+				scaler.frameFinished(front.buildTime + System.nanoTime() - start);
 			
 			g.dispose();
 		}
 		
 	}
 	
+	/**
+	 * A finished frame together with its sequence number, the render scale it was laid out for and the time it took to build.
+	 * The overlay is only copied to the frame when it has changed since the frame was used the last time.
+	 * @author phedman
+	 */
+	private static class Frame
+	{
+		private DisplayList list = new DisplayList();
+		private DisplayList overlay = new DisplayList();
+		private long sequence = 0, overlayVersion = 0;
+		private double scale = 1.0;
+		private long buildTime = 0;
+	}
+	
 	private static final Cursor HIDDEN_CURSOR = Toolkit.getDefaultToolkit().createCustomCursor(
 												Toolkit.getDefaultToolkit().createImage(new MemoryImageSource(16, 16, new int[16 * 16], 0, 16)),
 												new Point(0, 0),
@@ -67,7 +84,12 @@ public class Screen implements Canvas
 	
 	private JFrame frame;
 	private Color clearColor;
-	private LinkedList<VisibleElement> drawList;
+	private DisplayList drawList, overlay;
+	private long overlayVersion;
+	private Frame spare, front;
+	private AtomicReference<Frame> published;
+	private long frameCount, buildStart;
+	private RenderScaler scaler;
 	private InternalCanvas canvas;
 	private Dimension sizes[];
 	private int resIndex;
@@ -83,7 +105,14 @@ public class Screen implements Canvas
 	{
 		resIndex = 0;
 		sizes = _sizes;
-		drawList = new LinkedList<VisibleElement>();
+		drawList = new DisplayList();
+		overlay = new DisplayList();
+		overlayVersion = 0;
+		spare = new Frame();
+		front = new Frame();
+		published = new AtomicReference<Frame>(new Frame());
+		frameCount = buildStart = 0;
+		scaler = new RenderScaler();
 		
 		frame = _frame;
 		canvas = new InternalCanvas();
@@ -107,21 +136,36 @@ public class Screen implements Canvas
 	 */
 	public void addElement(VisibleElement elem)
 	{
-		synchronized(canvas)
-		{
-			drawList.addLast(elem);
-		}
+		drawList.add(elem);
+	}
+	
+	/**
+	 * Copies a range of elements from a DisplayList to the tail of the drawing queue.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void addElements(DisplayList list, int from, int to)
+	{
+		drawList.addAll(list, from, to);
 	}
 
 	/**
-	 * Empties the drawing queue.
+	 * Replaces the overlay layer. The overlay is handed to the Swing thread along with the next frame.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void setOverlay(DisplayList list)
+	{
+		overlay.clear();
+		overlay.addAll(list, 0, list.size());
+		overlayVersion++;
+	}
+	
+	/**
+	 * Empties the drawing queue, which starts building the next frame.
 	 */
 	public void clear()
 	{
-		synchronized(canvas)
-		{
-			drawList.clear();
-		}
+		buildStart = System.nanoTime();
+		drawList.clear();
 	}
 	
 	/**
@@ -130,29 +174,63 @@ public class Screen implements Canvas
 	 */
 	public void clearTop(int n)
 	{
-		synchronized(canvas)
-		{
-			for(int i = 0; i < n; i++)
-				drawList.removeLast();
-		}
+		drawList.removeLast(n);
 	}
 
 	/**
-	 * Wraps the getWidth() method in JPanel.
+	 * Wraps the getWidth() method in JPanel, scaled with the render scale.
 	 * @return The width of the actual drawable area.
 	 */
 	public int getWidth()
 	{
-		return canvas.getWidth();
+		return scaler.scaled(canvas.getWidth());
 	}
 	
 	/**
-	 * Wraps the getHeight() method in JPanel.
+	 * Wraps the getHeight() method in JPanel, scaled with the render scale.
 	 * @return The height of the actual drawable area.
 	 */
 	public int getHeight()
 	{
-		return canvas.getHeight();
+		return scaler.scaled(canvas.getHeight());
+	}
+
+	/**
+	 * Sets the fraction of the window size the game is rendered at, turning the automatic mode off.
+	 * The elements are laid out for the smaller size and the frame is scaled up to the window when it is drawn.
+	 * @param scale The render scale, between 0.5 and 1.0.
+	 * @see kaninator.graphics.RenderScaler
+	 */
+	public void setRenderScale(double scale)
+	{
+		scaler.setScale(scale);
+	}
+	
+	/**
+	 * Getter for the current render scale.
+	 * @return The fraction of the window size the game is rendered at.
+	 */
+	public double getRenderScale()
+	{
+		return scaler.getScale();
+	}
+	
+	/**
+	 * Turns the automatic render scale on or off.
+	 * @param frameBudget The time in milliseconds a frame may take, 0 turns the automatic mode off.
+	 */
+	public void setAutoScale(int frameBudget)
+	{
+		scaler.setAutoScale(frameBudget);
+	}
+	
+	/**
+	 * Checks if the render scale is adjusted automatically.
+	 * @return True if the automatic mode is on.
+	 */
+	public boolean isAutoScale()
+	{
+		return scaler.isAutoScale();
 	}
 	
 	/**
@@ -212,10 +290,25 @@ public class Screen implements Canvas
 	}
 	
 	/**
-	 * Sends the repaint signal to the JPanel, effectively drawing the game.
+	 * Publishes a copy of the drawing queue and the overlay as the newest finished frame and sends the repaint signal to the JPanel,
+	 * effectively drawing the game. The drawing queue itself is left untouched so it can be modified further.
 	 */
 	public void draw()
 	{
+		spare.list.clear();
+		spare.list.addAll(drawList, 0, drawList.size());
+		if(spare.overlayVersion != overlayVersion)
+		{
+			spare.overlay.clear();
+			spare.overlay.addAll(overlay, 0, overlay.size());
+			spare.overlayVersion = overlayVersion;
+		}
+		spare.sequence = ++frameCount;
+		spare.scale = scaler.getScale();
+		spare.buildTime = (buildStart == 0) ? 0 : System.nanoTime() - buildStart;
+		buildStart = 0;
+		spare = published.getAndSet(spare);
+		
 		canvas.repaint();
 	}
 }
@@ -4,26 +4,76 @@
 package kaninator.graphics;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
 
 /**
  * An object implementing the Drawable interface that basically draws a shadow.
  * In essence it draws a black ellipse with the alpha value of 0.5.
+ * The ellipse is rendered once to a translucent image, so drawing a Shadow is a simple blit.
+ * Shadows of the same width look the same, so they should be shared through getShadow().
  * @author phedman
  * @see kaninator.graphics.Drawable
  */
 public class Shadow implements Drawable
 {
+	private static HashMap<Integer, Shadow> shadowMap = new HashMap<Integer, Shadow>();
+	
 	private Color color;
 	private double width;
+	private BufferedImage image;
 	
 	/**
 	 * Constructs a Shadow from the given radius.
+	 * Use getShadow() instead unless you need a Shadow of your own.
 	 * @param _width The width of the ellipse.
 	 */
 	public Shadow(double _width)
 	{
 		color = new Color(0.0f, 0.0f, 0.0f, 0.50f);
 		width = _width;
+		image = rasterize();
+	}
+	
+	/**
+	 * Returns a shared Shadow of the given width, creating it the first time it is asked for.
+	 * @param width The width of the ellipse.
+	 * @return A Shadow with the width in question.
+	 */
+	public static synchronized Shadow getShadow(double width)
+	{
+		Shadow shadow = shadowMap.get((int)width);
+		if(shadow == null)
+		{
+			shadow = new Shadow((int)width);
+			shadowMap.put((int)width, shadow);
+		}
+		
+		return shadow;
+	}
+	
+	/**
+	 * Renders the ellipse to a translucent image, compatible with the screen if there is one.
+	 * @return The image containing the ellipse.
+	 */
+	private BufferedImage rasterize()
+	{
+		int w = Math.max(1, getWidth());
+		int h = Math.max(1, getHeight());
+		
+		BufferedImage buffer;
+		if(GraphicsEnvironment.isHeadless())
+			buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		else
+			buffer = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().
+					getDefaultConfiguration().createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+		
+		Graphics2D g = buffer.createGraphics();
+		g.setColor(color);
+		g.fillOval(0, 0, getWidth(), getHeight());
+		g.dispose();
+		
+		return buffer;
 	}
 
 	/**
@@ -34,8 +84,7 @@ public class Shadow implements Drawable
 	 */
 	public void draw(Graphics2D g, int x, int y)
 	{
-		g.setColor(color);
-		g.fillOval(x, y, (int)width, (int)(width/2));
+		g.drawImage(image, x, y, null);
 	}
 
 	/**
@@ -73,12 +73,13 @@ public class Text implements Drawable
 	}
 	
 	/**
-	 * Setter for the text to be displayed.
+	 * Setter for the text to be displayed. Updates the layout as well, so the width and height stay correct.
 	 * @param _text The text you want the Text object to draw.
 	 */
 	public void setText(String _text)
 	{
 		text = _text;
+		layout = new TextLayout(text, font, new FontRenderContext(null, false, false));
 	}
 	
 	/**
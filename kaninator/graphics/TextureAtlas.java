@@ -0,0 +1,228 @@
+/**
+ * Wrapper package for the 2D library used for the graphics.
+ */
+package kaninator.graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/**
+ * Packs small images into a few large pages so that they share the same accelerated surface.
+ * The images are placed on shelves: rows as high as their tallest image, filled from left to right.
+ * Every page is drawn through a single Image, so drawing a lot of tiles and sprite frames doesn't
+ * switch between hundreds of separate VolatileImages.
+ * The atlas is used by the ImageFactory and the AnimationFactory, it shouldn't be needed elsewhere.
+ * @author phedman
+ * @see kaninator.graphics.AtlasRegion
+ * @see kaninator.graphics.ImageFactory
+ */
+final class TextureAtlas
+{
+	private static final int PAGE_SIZE = 1024;
+	private static final int MAX_REGION_SIZE = 256;
+	private static final int PADDING = 1;
+
+	/**
+	 * A single page of the atlas. Keeps the packed image data in a BufferedImage and copies it to
+	 * the accelerated Image whenever it has changed.
+	 * @author phedman
+	 */
+	static final class Page
+	{
+		private BufferedImage buffer;
+		private Image image;
+		private volatile boolean dirty;
+		private int shelf_y, shelfHeight, cursor_x;
+
+		/**
+		 * Creates an empty page.
+		 */
+		private Page()
+		{
+			buffer = new BufferedImage(PAGE_SIZE, PAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+			image = null;
+			dirty = true;
+			shelf_y = shelfHeight = cursor_x = 0;
+		}
+
+		/**
+		 * Tries to find room for an image on the page and copies it there.
+		 * @param src The image to be packed.
+		 * @return The region the image was packed to, null if the page is full.
+		 */
+		private synchronized AtlasRegion pack(BufferedImage src)
+		{
+			int width = src.getWidth(), height = src.getHeight();
+
+			//Start a new shelf if the image doesn't fit on the current one
+			if(cursor_x + width > PAGE_SIZE)
+			{
+				shelf_y += shelfHeight + PADDING;
+				shelfHeight = 0;
+				cursor_x = 0;
+			}
+			if(shelf_y + height > PAGE_SIZE)
+				return null;
+
+			Graphics2D g = buffer.createGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(src, cursor_x, shelf_y, null);
+			g.dispose();
+
+			AtlasRegion region = new AtlasRegion(this, cursor_x, shelf_y, width, height);
+			cursor_x += width + PADDING;
+			shelfHeight = Math.max(shelfHeight, height);
+			dirty = true;
+
+			return region;
+		}
+
+		/**
+		 * Gets the accelerated Image of the page, copies the packed images to it first if they have changed.
+		 * @return The Image containing the whole page.
+		 */
+		Image getImage()
+		{
+			if(dirty)
+			{
+				synchronized(this)
+				{
+					if(image == null)
+						image = new Image(buffer);
+					else if(dirty)
+						image.update();
+					dirty = false;
+				}
+			}
+			return image;
+		}
+
+		/**
+		 * Marks the page as changed so it is copied to the accelerated Image again before it's drawn the next time.
+		 */
+		void invalidate()
+		{
+			dirty = true;
+		}
+	}
+
+	private ArrayList<Page> pages;
+
+	/**
+	 * Creates an empty atlas.
+	 */
+	TextureAtlas()
+	{
+		pages = new ArrayList<Page>();
+	}
+
+	/**
+	 * Packs an image into the atlas. Tries the existing pages first and creates a new one if none of them has room left.
+	 * @param src The image to be packed.
+	 * @return A Drawable drawing the packed image, null if the image is too large for the atlas.
+	 */
+	synchronized AtlasRegion pack(BufferedImage src)
+	{
+		if(src.getWidth() > MAX_REGION_SIZE || src.getHeight() > MAX_REGION_SIZE)
+			return null;
+
+		for(Page page : pages)
+		{
+			AtlasRegion region = page.pack(src);
+			if(region != null)
+				return region;
+		}
+
+		Page page = new Page();
+		pages.add(page);
+		return page.pack(src);
+	}
+
+	/**
+	 * Getter for the number of pages in the atlas.
+	 * @return The number of pages.
+	 */
+	synchronized int getNumPages()
+	{
+		return pages.size();
+	}
+
+	/**
+	 * Marks every page as changed, for example after the transparency setting has changed.
+	 */
+	synchronized void update()
+	{
+		for(Page page : pages)
+			page.invalidate();
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			TextureAtlas atlas = new TextureAtlas();
+			if(atlas.getNumPages() != 0)
+				failedTest("Atlas not empty initially.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing pack..");
+			if(atlas.pack(new BufferedImage(MAX_REGION_SIZE + 1, 16, BufferedImage.TYPE_INT_ARGB)) != null)
+				failedTest("Packed an image larger than the maximum region size.");
+			System.out.print("..");
+
+			ArrayList<AtlasRegion> regions = new ArrayList<AtlasRegion>();
+			for(int i = 0; i < 400; i++)
+			{
+				BufferedImage image = new BufferedImage(32 + (i * 13) % 100, 32 + (i * 7) % 70, BufferedImage.TYPE_INT_ARGB);
+				image.setRGB(0, 0, 0xff000000 | i);
+				AtlasRegion region = atlas.pack(image);
+				if(region == null || region.getWidth() != image.getWidth() || region.getHeight() != image.getHeight())
+					failedTest("Invalid region for a packed image.");
+				regions.add(region);
+			}
+			System.out.print("..");
+
+			for(int i = 0; i < regions.size(); i++)
+			{
+				AtlasRegion a = regions.get(i);
+				if(a.getPage().buffer.getRGB(a.get_x(), a.get_y()) != (0xff000000 | i))
+					failedTest("The image data wasn't copied to the page.");
+
+				for(int j = i + 1; j < regions.size(); j++)
+				{
+					AtlasRegion b = regions.get(j);
+					if(a.getPage() == b.getPage() && a.get_x() < b.get_x() + b.getWidth() && b.get_x() < a.get_x() + a.getWidth() &&
+							a.get_y() < b.get_y() + b.getHeight() && b.get_y() < a.get_y() + a.getHeight())
+						failedTest("Regions overlap.");
+				}
+			}
+			System.out.print("..");
+
+			if(atlas.getNumPages() < 2)
+				failedTest("No new page was created when the first one was full.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
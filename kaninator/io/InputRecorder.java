@@ -0,0 +1,101 @@
+/**
+ * Input from the keyboard and mouse and file input/output are wrapped
+ * in this package to keep the design modular.
+ */
+package kaninator.io;
+
+import java.io.*;
+
+/**
+ * Records the input of a game to a binary file, frame by frame, so the game can be replayed later with InputReplay.
+ * The file starts with a header containing the seed of the game's random number generator, followed by 9 bytes
+ * for every frame: the pressed keys and the point aimed at.
+ * @author phedman
+ * @see kaninator.io.InputReplay
+ * @see kaninator.io.InputState
+ */
+public class InputRecorder
+{
+	static final int MAGIC = 0x4b524543; //"KREC"
+	static final int VERSION = 1;
+	
+	private DataOutputStream output;
+	private long seed;
+	private int frames;
+	
+	/**
+	 * Creates the recording file and writes the header.
+	 * @param path The path of the file.
+	 * @param _seed The seed the game is started with.
+	 * @throws IOException If the file can't be created.
+	 */
+	public InputRecorder(String path, long _seed) throws IOException
+	{
+		seed = _seed;
+		frames = 0;
+		output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+		output.writeInt(MAGIC);
+		output.writeByte(VERSION);
+		output.writeLong(seed);
+	}
+	
+	/**
+	 * Getter for the seed the recorded game is started with.
+	 * @return The seed.
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+	
+	/**
+	 * Getter for the number of frames recorded.
+	 * @return The number of frames.
+	 */
+	public int getFrames()
+	{
+		return frames;
+	}
+	
+	/**
+	 * Appends the input of a frame to the recording. Does nothing once the recorder is closed.
+	 * @param input The input read during the frame.
+	 */
+	public synchronized void record(InputState input)
+	{
+		if(output == null)
+			return;
+		
+		try
+		{
+			output.writeByte(input.getFlags());
+			output.writeInt(input.get_x());
+			output.writeInt(input.get_y());
+			frames++;
+		}
+		catch(IOException e)
+		{
+			System.out.println("ERR: Couldn't write the recording, stopped recording: " + e);
+			close();
+		}
+	}
+	
+	/**
+	 * Writes the rest of the recording to the file and closes it.
+	 */
+	public synchronized void close()
+	{
+		if(output == null)
+			return;
+		
+		try
+		{
+			output.close();
+		}
+		catch(IOException e)
+		{
+			System.out.println("ERR: Couldn't close the recording: " + e);
+		}
+		output = null;
+	}
+}
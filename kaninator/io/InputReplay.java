@@ -0,0 +1,181 @@
+/**
+ * Input from the keyboard and mouse and file input/output are wrapped
+ * in this package to keep the design modular.
+ */
+package kaninator.io;
+
+import java.io.*;
+
+/**
+ * Plays back the input recorded by an InputRecorder, one frame at a time.
+ * The whole recording is read to memory when the replay is created, so reading the input doesn't touch the disk
+ * while the game is running.
+ * @author phedman
+ * @see kaninator.io.InputRecorder
+ * @see kaninator.io.InputState
+ */
+public class InputReplay
+{
+	private static final int FRAME_SIZE = 9;
+	
+	private long seed;
+	private byte flags[];
+	private int aim_x[], aim_y[];
+	private int frames, cursor;
+	
+	/**
+	 * Reads a recording from a file.
+	 * @param path The path of the file.
+	 * @throws IOException If the file can't be read or isn't a recording.
+	 */
+	public InputReplay(String path) throws IOException
+	{
+		File file = new File(path);
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try
+		{
+			if(input.readInt() != InputRecorder.MAGIC)
+				throw new IOException("ERR: Not a recording: " + path);
+			if(input.readUnsignedByte() != InputRecorder.VERSION)
+				throw new IOException("ERR: Unsupported recording version: " + path);
+			seed = input.readLong();
+			
+			int capacity = (int)(file.length() / FRAME_SIZE);
+			flags = new byte[capacity];
+			aim_x = new int[capacity];
+			aim_y = new int[capacity];
+			frames = cursor = 0;
+			
+			//A recording cut short ends at the last whole frame
+			try
+			{
+				while(frames < capacity)
+				{
+					flags[frames] = input.readByte();
+					aim_x[frames] = input.readInt();
+					aim_y[frames] = input.readInt();
+					frames++;
+				}
+			}
+			catch(EOFException e)
+			{
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+	
+	/**
+	 * Getter for the seed the recorded game was started with.
+	 * @return The seed.
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+	
+	/**
+	 * Getter for the number of frames in the recording.
+	 * @return The number of frames.
+	 */
+	public int getFrames()
+	{
+		return frames;
+	}
+	
+	/**
+	 * Checks if there are frames left to replay.
+	 * @return True if next() has another frame to return.
+	 */
+	public boolean hasNext()
+	{
+		return cursor < frames;
+	}
+	
+	/**
+	 * Copies the input of the next frame to an InputState. Leaves it as it is if the replay has ended.
+	 * @param input The InputState to copy the input to.
+	 * @return False if the replay has ended.
+	 */
+	public boolean next(InputState input)
+	{
+		if(cursor >= frames)
+			return false;
+		
+		input.set(flags[cursor], aim_x[cursor], aim_y[cursor]);
+		cursor++;
+		return true;
+	}
+	
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			File file = File.createTempFile("kaninator", ".rec");
+			file.deleteOnExit();
+			
+			System.out.println("Testing recording..");
+			InputRecorder recorder = new InputRecorder(file.getPath(), 1234567890123L);
+			InputState input = new InputState();
+			for(int i = 0; i < 100; i++)
+			{
+				input.set(i % 64, i * 7 - 300, -i * 13);
+				recorder.record(input);
+			}
+			recorder.close();
+			recorder.record(input);
+			if(recorder.getFrames() != 100)
+				failedTest("Recorded a frame after closing.");
+			if(file.length() != 13 + 100 * FRAME_SIZE)
+				failedTest("Invalid file size: " + file.length());
+			System.out.println(".. Test Ok!");
+			
+			System.out.println("Testing replay..");
+			InputReplay replay = new InputReplay(file.getPath());
+			if(replay.getSeed() != 1234567890123L || replay.getFrames() != 100)
+				failedTest("Invalid header.");
+			for(int i = 0; i < 100; i++)
+			{
+				if(!replay.next(input))
+					failedTest("Replay ended too early.");
+				if(input.getFlags() != i % 64 || input.get_x() != i * 7 - 300 || input.get_y() != -i * 13)
+					failedTest("Invalid input in frame " + i);
+			}
+			if(replay.hasNext() || replay.next(input))
+				failedTest("Replay didn't end.");
+			System.out.println(".. Test Ok!");
+			
+			System.out.println("Testing an invalid file..");
+			try
+			{
+				new InputReplay("invalidtestfile");
+				failedTest("Replayed an invalid file.");
+			}
+			catch(IOException e)
+			{
+			}
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+	
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
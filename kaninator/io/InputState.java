@@ -0,0 +1,108 @@
+/**
+ * Input from the keyboard and mouse and file input/output are wrapped
+ * in this package to keep the design modular.
+ */
+package kaninator.io;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * The input the game reads during a single frame: the movement keys, the fire button and the point the player aims at.
+ * Captured from the Keyboard and the Mouse while playing, or read from a recording while replaying, so the game
+ * doesn't need to know where its input comes from.
+ * @author phedman
+ * @see kaninator.io.InputRecorder
+ * @see kaninator.io.InputReplay
+ */
+public class InputState
+{
+	public static final int UP = 1, DOWN = 2, LEFT = 4, RIGHT = 8, JUMP = 16, FIRE = 32;
+	
+	private int flags;
+	private int aim_x, aim_y;
+	
+	/**
+	 * Creates an empty input state, with nothing pressed.
+	 */
+	public InputState()
+	{
+		flags = aim_x = aim_y = 0;
+	}
+	
+	/**
+	 * Reads the current state of the keyboard and the mouse.
+	 * @param keyboard The keyboard.
+	 * @param mouse The mouse.
+	 * @param offset_x Added to the x-coordinate of the cursor, to get the point in the game world the cursor is over.
+	 * @param offset_y Added to the y-coordinate of the cursor, to get the point in the game world the cursor is over.
+	 */
+	public void capture(Keyboard keyboard, Mouse mouse, int offset_x, int offset_y)
+	{
+		flags = 0;
+		if(keyboard.isPressed(KeyEvent.VK_W))
+			flags |= UP;
+		if(keyboard.isPressed(KeyEvent.VK_S))
+			flags |= DOWN;
+		if(keyboard.isPressed(KeyEvent.VK_A))
+			flags |= LEFT;
+		if(keyboard.isPressed(KeyEvent.VK_D))
+			flags |= RIGHT;
+		if(keyboard.isPressed(KeyEvent.VK_SPACE))
+			flags |= JUMP;
+		if(mouse.isPressed(0))
+			flags |= FIRE;
+		
+		aim_x = mouse.get_x() + offset_x;
+		aim_y = mouse.get_y() + offset_y;
+	}
+	
+	/**
+	 * Sets the whole state at once.
+	 * @param _flags The pressed keys and buttons, as a combination of the flags in InputState.
+	 * @param _aim_x The x-coordinate of the point aimed at.
+	 * @param _aim_y The y-coordinate of the point aimed at.
+	 */
+	public void set(int _flags, int _aim_x, int _aim_y)
+	{
+		flags = _flags;
+		aim_x = _aim_x;
+		aim_y = _aim_y;
+	}
+	
+	/**
+	 * Checks if a key or button was pressed during the frame.
+	 * @param flag One of the flags in InputState.
+	 * @return True if pressed.
+	 */
+	public boolean isPressed(int flag)
+	{
+		return (flags & flag) != 0;
+	}
+	
+	/**
+	 * Getter for all the pressed keys and buttons.
+	 * @return The flags of the pressed keys and buttons combined.
+	 */
+	public int getFlags()
+	{
+		return flags;
+	}
+	
+	/**
+	 * Getter for the x-coordinate of the point aimed at.
+	 * @return The x-coordinate in the game world, as drawn on the screen.
+	 */
+	public int get_x()
+	{
+		return aim_x;
+	}
+	
+	/**
+	 * Getter for the y-coordinate of the point aimed at.
+	 * @return The y-coordinate in the game world, as drawn on the screen.
+	 */
+	public int get_y()
+	{
+		return aim_y;
+	}
+}
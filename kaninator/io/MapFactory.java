@@ -61,28 +61,43 @@ public final class MapFactory
 	 * Reads the file found at the filepath, parses it, creates the necessary StaticObjects, and creates a game map from them.
 	 * @param filepath The path that points to the map file.
 	 * @return A the Map created from the text file.
-	 * @throws IOException If the file is not found or cannot be read.
+	 * @throws MapException If the file is not found or cannot be read.
 	 */
 	public static Map readMap(String filepath) throws MapException
 	{	
-		ArrayList<ArrayList<StaticObject>> objects = new ArrayList<ArrayList<StaticObject>>();
-
-
-		Scanner parser;
+		InputStream stream;
 		try
 		{		
-			URL url = objects.getClass().getResource(filepath);
+			URL url = MapFactory.class.getResource(filepath);
 			
 			if(url == null)
 				throw new IOException("ERR: File not found: " + filepath);
 			
-			parser = new Scanner(url.openStream());
+			stream = url.openStream();
 		}
 		catch(Exception e)
 		{
 			throw new MapException("Couldn't load map: \n" + e);
 		}
 		
+		return readMap(stream);
+	}
+	
+	/**
+	 * Parses map data from a stream, creates the necessary StaticObjects, and creates a game map from them.
+	 * Makes it possible to create maps generated at runtime, for example for the benchmarks. Closes the stream when done.
+	 * @param stream The stream containing the map data, in the same format as the map files.
+	 * @return A the Map created from the map data.
+	 * @throws MapException If the stream is null.
+	 */
+	public static Map readMap(InputStream stream) throws MapException
+	{
+		if(stream == null)
+			throw new MapException("Couldn't load map: \nERR: No map data.");
+		
+		ArrayList<ArrayList<StaticObject>> objects = new ArrayList<ArrayList<StaticObject>>();
+		Scanner parser = new Scanner(stream);
+		
 		loadTiles();
 		int y = 0;
 		while(parser.hasNext())
@@ -99,9 +114,31 @@ public final class MapFactory
 		}
 		
 		parser.close();
+		calculateColumns(objects);
 		return new Map(objects);
 	}
 	
+	/**
+	 * Calculates how much of the column under every tile can be seen.
+	 * A column is covered up to the lower of the two tiles in front of it, the tiles on the edges of the map are visible all the way down.
+	 * @param objects The rows of StaticObjects in the map.
+	 */
+	private static void calculateColumns(ArrayList<ArrayList<StaticObject>> objects)
+	{
+		for(int i = 0; i < objects.size(); i++)
+		{
+			ArrayList<StaticObject> row = objects.get(i);
+			for(int j = 0; j < row.size(); j++)
+			{
+				int base = 0;
+				if(j < row.size() - 1 && i < objects.size() - 1 && j < objects.get(i + 1).size())
+					base = Math.min(objects.get(i + 1).get(j).renderHeight() + 1, row.get(j + 1).renderHeight() + 1);
+				
+				row.get(j).setColumnBase(base);
+			}
+		}
+	}
+	
 	
 	/**
 	 * Initializes the images for the tiles.
@@ -298,7 +335,7 @@ public final class MapFactory
 			//invalid call: null string
 			try
 			{
-				readMap(null);
+				readMap((String)null);
 				failedTest("readMap didn't throw exception for null filename.");
 			}
 			catch(MapException e)
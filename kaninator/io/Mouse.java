@@ -7,6 +7,8 @@ package kaninator.io;
 import java.awt.Dimension;
 import java.awt.event.*;
 
+import kaninator.graphics.Canvas;
+
 /**
  * Wraps the functionality in the awt/swing library and provides information about the keystates and the cursor position.
  * @see java.awt.event.MouseAdapter
@@ -20,6 +22,7 @@ public class Mouse
 	private MouseKeys mouseKeys;
 	private MouseMotion mouseMotion;
 	private Dimension insets;
+	private Canvas canvas;
 	
 	/**
 	 * Extends the MouseAdapter class, stores the keystates in an boolean array.
@@ -120,12 +123,14 @@ public class Mouse
 	
 	/**
 	 * Creates all the member objects and initializes all the variables to 0 and false.
+	 * @param _canvas The canvas the cursor coordinates are converted to, taking the window borders and the render scale into account.
 	 */
-	public Mouse(Dimension _insets)
+	public Mouse(Canvas _canvas)
 	{
 		x = y = 0;
 		keyStates = new boolean[3];
-		insets = _insets;
+		canvas = _canvas;
+		insets = canvas.getInsets();
 		
 		for(int i = 0; i < keyStates.length; i++)
 			keyStates[i] = false;
@@ -149,20 +154,20 @@ public class Mouse
 	
 	/**
 	 * Getter method for the x-coordinate.
-	 * @return The x-coordinate of the cursor in relation to the window.
+	 * @return The x-coordinate of the cursor in relation to the drawable area of the canvas.
 	 */
 	public int get_x()
 	{
-		return x - insets.width;
+		return (int)((x - insets.width) * canvas.getRenderScale());
 	}
 
 	/**
 	 * Getter method for the y-coordinate.
-	 * @return The y-coordinate of the cursor in relation to the window.
+	 * @return The y-coordinate of the cursor in relation to the drawable area of the canvas.
 	 */
 	public int get_y()
 	{
-		return y - insets.height;
+		return (int)((y - insets.height) * canvas.getRenderScale());
 	}
 	
 	/**
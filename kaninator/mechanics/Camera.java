@@ -27,15 +27,19 @@ public class Camera
 	private static final int OFF_TOP = 1, OFF_BOTTOM = 2, OFF_LEFT = 4, OFF_RIGHT = 8;
 	private static final int CAMERA_MARGIN = 4;
 
-	private int x, y, numHorizontalTiles;
+	//Read by the simulation thread to convert the mouse coordinates
+	private volatile int x, y;
+	private int numHorizontalTiles;
 	
-	private LinkedList<DynamicObject> playerObjects;
-	private LinkedList<DynamicObject> objects;
-	private LinkedList<DynamicObject> enemyObjects;
+	private EntityRegistry entities;
 	private ArrayList<ArrayList<StaticObject>> tiles;
 	
-	private TreeMap<Integer, ArrayList<VisibleElement>> orderedObjects;
-	private VisibleElement background;
+	private WorldSnapshot snapshot;
+	private RenderQueue orderedObjects, occluders;
+	private DisplayList elements;
+	private Drawable background;
+	private TerrainCache terrain;
+	private boolean terrainBaking;
 
 
 	/**
@@ -46,99 +50,80 @@ public class Camera
 	{
 		canvas = _canvas;
 		gui = _gui;
-		background = new VisibleElement(_background, 0, 0, 0);
+		background = _background;
 		
 		x = y = 0;
 		numHorizontalTiles = 1 + (int)(canvas.getWidth()/(MapFactory.getTileSize() * 2));
 
-		playerObjects = null;
-		objects = null;
-		enemyObjects = null;
+		entities = null;
 		tiles = null;
-		orderedObjects = new TreeMap<Integer, ArrayList<VisibleElement>>();
+		snapshot = new WorldSnapshot(0);
+		orderedObjects = new RenderQueue();
+		occluders = new RenderQueue();
+		elements = new DisplayList();
+		terrain = null;
+		terrainBaking = true;
 	}
 
 	/**
-	 * Parses the GUI and sends the elements to the canvas.
+	 * Updates the GUI, passes it on to the canvas as the overlay if it has changed and draws the canvas.
 	 * @see kaninator.mechanics.GUI
-	 * @see kaninator.graphics.VisibleElement
+	 * @see kaninator.graphics.Canvas#setOverlay(DisplayList)
 	 */
 	public void renderGUI()
 	{
-		ArrayList<VisibleElement> guiElems = gui.render();
-
-		for(VisibleElement elem : guiElems)
-			canvas.addElement(elem);
+		if(gui.update())
+			canvas.setOverlay(gui.getElements());
 
 		canvas.draw();
 	}
-
-	/**
-	 * Clears the GUI from the canvas so it can be redrawn.
-	 */
-	public void clearGUI()
-	{
-		canvas.clearTop(gui.size());
-	}
 	
 	/**
-	 * Sets the DynamicObjects belonging to the player the  camera should be aware of.
-	 * @param _playerObjects The DynamicObjects you want to show on screen.
+	 * Sets the DynamicObjects the camera should be aware of. The categories are drawn in the order
+	 * enemies, player, projectiles and effects, where the objects have the same depth.
+	 * @param _entities The registry of the DynamicObjects you want to show on screen.
 	 */
-	public void setPlayerObjects(LinkedList<DynamicObject> _playerObjects)
+	public void setEntities(EntityRegistry _entities)
 	{
-		playerObjects = _playerObjects;
+		entities = _entities;
 	}
 
 	/**
-	 * Clears the DynamicObjects belonging to the player from the camera.
+	 * Clears the DynamicObjects from the camera.
 	 */
-	public void clearPlayerObjects()
+	public void clearEntities()
 	{
-		playerObjects = null;
+		entities = null;
 	}
 	
 	/**
-	 * Sets the DynamicObjects that are projectiles.
-	 * @param _bulletObjects The DynamicObjects you want to show on screen.
+	 * Sets the static objects the camera is aware of.
+	 * @param _tiles A 2 dimensional ArrayList of StaticObjects
 	 */
-	public void setOtherObjects(LinkedList<DynamicObject> _objects)
+	public void setTiles(ArrayList<ArrayList<StaticObject>> _tiles)
 	{
-		objects = _objects;
-	}
+		//The pre-rendered terrain can be kept as long as the map stays the same
+		if(_tiles != tiles)
+			terrain = null;
 
-	/**
-	 * Clears the DynamicObjects that are projectiles from the camera.
-	 */
-	public void clearOtherObjects()
-	{
-		enemyObjects = null;
+		tiles = _tiles;
+		if(terrainBaking && terrain == null && tiles != null)
+			terrain = new TerrainCache(tiles);
 	}
 	
 	/**
-	 * Sets the DynamicObjects belonging to the enemies the  camera should be aware of.
-	 * @param _enemyObjects The DynamicObjects you want to show on screen.
+	 * Sets whether the terrain should be drawn from pre-rendered chunks or one slice at a time.
+	 * Baking is on by default.
+	 * @param on True if the terrain should be pre-rendered.
+	 * @see kaninator.mechanics.TerrainCache
 	 */
-	public void setEnemyObjects(LinkedList<DynamicObject> _enemyObjects)
+	public void setTerrainBaking(boolean on)
 	{
-		enemyObjects = _enemyObjects;
-	}
-
-	/**
-	 * Clears the DynamicObjects belonging to the enemies from the camera.
-	 */
-	public void clearEnemyObjects()
-	{
-		enemyObjects = null;
-	}
-
-	/**
-	 * Sets the static objects the camera is aware of.
-	 * @param _tiles A 2 dimensional ArrayList of StaticObjects
-	 */
-	public void setTiles(ArrayList<ArrayList<StaticObject>> _tiles)
-	{
-		tiles = _tiles;
+		terrainBaking = on;
+		if(!terrainBaking)
+			terrain = null;
+		else if(terrain == null && tiles != null)
+			terrain = new TerrainCache(tiles);
 	}
 	
 	
@@ -166,8 +151,42 @@ public class Camera
 	 */
 	public void follow(DynamicObject obj)
 	{
-		double d_x = obj.render_x() - x;
-		double d_y = obj.render_y() - obj.getHeight() - y;
+		follow(obj, 1.0);
+	}
+	
+	/**
+	 * Makes the camera smoothly follow a dynamic object at its interpolated position. Should be called every frame.
+	 * @param obj The object you want the camera to follow.
+	 * @param alpha How far between its previous (0.0) and current (1.0) position the object is followed.
+	 * @see kaninator.mechanics.DynamicObject#storePosition()
+	 */
+	public void follow(DynamicObject obj, double alpha)
+	{
+		follow(obj.render_x(alpha), obj.render_y(alpha) - obj.getHeight(alpha));
+	}
+	
+	/**
+	 * Makes the camera smoothly follow the focus of a WorldSnapshot at its interpolated position. Should be called every frame.
+	 * Does nothing if the snapshot has no focus.
+	 * @param snapshot The snapshot of the world.
+	 * @param alpha How far between its previous (0.0) and current (1.0) position the focus is followed.
+	 * @see kaninator.mechanics.WorldSnapshot#setFocus(DynamicObject)
+	 */
+	public void follow(WorldSnapshot snapshot, double alpha)
+	{
+		if(snapshot.hasFocus())
+			follow(snapshot.renderFocus_x(alpha), snapshot.renderFocus_y(alpha) - snapshot.getFocusHeight(alpha));
+	}
+	
+	/**
+	 * Moves the camera towards the point it follows.
+	 * @param target_x The on screen x-coordinate of the point.
+	 * @param target_y The on screen y-coordinate of the point.
+	 */
+	private void follow(double target_x, double target_y)
+	{
+		double d_x = target_x - x;
+		double d_y = target_y - y;
 
 		if(d_x < canvas.getWidth() * FOLLOW_BORDER_SIZE)
 			x -= (canvas.getWidth() * FOLLOW_BORDER_SIZE - d_x)/FOLLOW_SPEED;
@@ -181,27 +200,90 @@ public class Camera
 	}
 
 	/**
-	 * Clears the Canvas object and sends new VisbleElements to it.
+	 * Clears the Canvas object and sends new elements to it.
 	 * Parses the internal game data and sends it to a Canvas object to be drawn.
 	 * @see Canvas
-	 * @see VisibleElement
+	 * @see DisplayList
 	 */
 	public void render()
+	{
+		render(1.0);
+	}
+	
+	/**
+	 * Clears the Canvas object and sends new elements to it, with the DynamicObjects interpolated between
+	 * their previous and current positions. Lets the frames be rendered more often than the objects are moved.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) positions the objects are rendered.
+	 * @see kaninator.mechanics.DynamicObject#storePosition()
+	 */
+	public void render(double alpha)
+	{
+		snapshot.clear();
+		for(int category = 0; category < EntityRegistry.NUM_CATEGORIES; category++)
+			snapshot.addAll(entities, category);
+		render(snapshot, alpha);
+	}
+	
+	/**
+	 * Clears the Canvas object and sends new elements to it, with the DynamicObjects taken from a WorldSnapshot
+	 * instead of the objects given to the camera. The objects aren't touched, so the simulation can go on updating them
+	 * on another thread while the snapshot is rendered.
+	 * @param world The snapshot of the DynamicObjects.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) positions the objects are rendered.
+	 * @see kaninator.mechanics.SnapshotExchange
+	 */
+	public void render(WorldSnapshot world, double alpha)
 	{
 		canvas.clear();
 		orderedObjects.clear();
-		canvas.addElement(background);
+		elements.clear();
+		elements.add(background, 0, 0, 0);
 
-		orderStatics();
-		orderDynamics(enemyObjects);
-		orderDynamics(playerObjects);
-		orderDynamics(objects);
+		if(terrain != null)
+		{
+			terrain.addChunks(elements, x, y, canvas.getWidth(), canvas.getHeight());
+			orderDynamics(world, alpha);
 
-		for(ArrayList<VisibleElement> list : orderedObjects.values())
+			orderedObjects.sort();
+			addOccluded();
+		}
+		else
 		{
-			for(VisibleElement e : list)
-				canvas.addElement(e);
-		}	  
+			orderStatics();
+			orderDynamics(world, alpha);
+
+			orderedObjects.sort();
+			orderedObjects.copyTo(elements);
+		}
+		canvas.addElements(elements, 0, elements.size());
+	}
+	
+	/**
+	 * Adds the sorted DynamicObjects on top of the pre-rendered terrain.
+	 * The parts of the terrain that are in front of an object are drawn again after it, clipped to the area of the object.
+	 * @see kaninator.mechanics.TerrainCache
+	 */
+	private void addOccluded()
+	{
+		for(int rank = 0; rank < orderedObjects.size(); rank++)
+		{
+			Drawable drawable = orderedObjects.getDrawable(rank);
+			int obj_x = orderedObjects.get_x(rank);
+			int obj_y = orderedObjects.get_y(rank);
+			int height = orderedObjects.getHeight(rank);
+			elements.add(drawable, obj_x, obj_y, height);
+
+			occluders.clear();
+			terrain.addOccluders(occluders, obj_x, obj_y - height, drawable.getWidth(), drawable.getHeight(),
+					orderedObjects.getDepth(rank), x, y);
+			if(occluders.size() == 0)
+				continue;
+
+			occluders.sort();
+			elements.addClip(obj_x, obj_y - height, drawable.getWidth(), drawable.getHeight());
+			occluders.copyTo(elements);
+			elements.addClipReset();
+		}
 	}
 	
 	/**
@@ -229,42 +311,62 @@ public class Camera
 	}
 	
 	/**
-	 * Loops through the DynamicObjects, creates VisibleElements from them
-	 * and orders them according to their depth.
+	 * Divides and rounds towards negative infinity.
+	 * @param a The dividend.
+	 * @param b The divisor, must be positive.
+	 * @return The rounded quotient.
 	 */
-	private void orderDynamics(LinkedList<DynamicObject> objects)
+	private static int floor(int a, int b)
 	{
-		if(objects == null)
-			return;
-		
-		for(DynamicObject object : objects)
+		return (a >= 0) ? a / b : -((-a + b - 1) / b);
+	}
+	
+	/**
+	 * Divides and rounds towards positive infinity.
+	 * @param a The dividend.
+	 * @param b The divisor, must be positive.
+	 * @return The rounded quotient.
+	 */
+	private static int ceil(int a, int b)
+	{
+		return -floor(-a, b);
+	}
+	
+	/**
+	 * Loops through the DynamicObjects of a snapshot and adds the ones on screen to the
+	 * queue ordering them according to their depth.
+	 * @param world The snapshot of the DynamicObjects.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) positions the objects are rendered.
+	 */
+	private void orderDynamics(WorldSnapshot world, double alpha)
+	{
+		for(int i = 0; i < world.size(); i++)
 		{
-			int key = object.getDepth();
-			int obj_x = object.render_x() - x;
-			int obj_y = object.render_y() - y;
+			Drawable frame = world.getDrawable(i);
+			int key = world.getDepth(i);
+			int obj_x = world.render_x(i, alpha) - x;
+			int obj_y = world.render_y(i, alpha) - y;
+			int height = (int)world.getHeight(i, alpha);
 			
-			if(offScreen(obj_x, obj_y, (int)object.getHeight(), object.getAnimation().getWidth(), object.getAnimation().getHeight()) > 0)
+			if(offScreen(obj_x, obj_y, height, frame.getWidth(), frame.getHeight()) > 0)
 				continue;
 			
-			ArrayList<VisibleElement> list = orderedObjects.get(key);
-			if(list == null)
-			{
-				list = new ArrayList<VisibleElement>();
-				orderedObjects.put(key, list);	 
-			}
-			list.add(new VisibleElement(object.getAnimation(),
+			orderedObjects.add(frame,
 					obj_x, obj_y,
-					(int)object.getHeight()));	
+					height, key);
 		}
 		
 	}
 	
 	/**
-	 * Loops through the StaticObjects, creates VisibleElements from them
-	 * and orders them according to their depth.
+	 * Loops through the StaticObjects and adds the ones on screen to the
+	 * queue ordering them according to their depth.
 	 */
 	private void orderStatics()
 	{
+		//The width of the canvas changes with the render scale
+		numHorizontalTiles = 1 + (int)(canvas.getWidth()/(MapFactory.getTileSize() * 2));
+		
 		int camIndex_x = x / (int)MapFactory.getTileSize();
 		int camIndex_y = y / (int)MapFactory.getTileHeight();
 		
@@ -296,30 +398,25 @@ public class Camera
 				if((offScreen(obj_x, obj_y, object.renderHeight(), (int)MapFactory.getTileSize() * 2, (int)MapFactory.getTileSize()) & OFF_BOTTOM) > 0)
 					break;
 
-				//If there are no tiles with the same depth value, create a new array for the depth value
-				ArrayList<VisibleElement> list = orderedObjects.get(key);
-				if(list == null)
-				{
-					list = new ArrayList<VisibleElement>();
-					orderedObjects.put(key, list);	 
-				}
-
-				//If they aren't covered up by the surrounding tiles, then fill the lower tiles first
-				int lowestHeight = 0;
-				if(j < tiles.get(i).size() - 1 && i < tiles.size() - 1)
-					lowestHeight = Math.min(tiles.get(i + 1).get(j).renderHeight() + 1, tiles.get(i).get(j + 1).renderHeight() + 1);
-				
-				for(int height = lowestHeight; height < (int)object.renderHeight(); height+=32)
+				//Fill the part of the column that isn't covered up by the surrounding tiles first,
+				//only the slices between the top and the bottom of the screen
+				if((offScreen(obj_x, obj_y, 0, (int)MapFactory.getTileSize() * 2, (int)MapFactory.getTileSize()) & (OFF_LEFT | OFF_RIGHT)) == 0)
 				{
-					if(offScreen(obj_x, obj_y, height, (int)MapFactory.getTileSize() * 2, (int)MapFactory.getTileSize()) == 0)
-						list.add(new VisibleElement(object.getLowerDrawable(),
+					int base = object.getColumnBase();
+					int tileHeight = (int)MapFactory.getTileHeight();
+					int margin = CAMERA_MARGIN * tileHeight;
+					int first = Math.max(0, ceil(obj_y - canvas.getHeight() - margin - base, tileHeight));
+					int last = Math.min(object.getColumnSlices() - 1, floor(obj_y + (int)MapFactory.getTileSize() + margin - base, tileHeight));
+					
+					for(int slice = first; slice <= last; slice++)
+						orderedObjects.add(object.getLowerDrawable(),
 								obj_x, obj_y,
-								height));
+								base + slice * tileHeight, key);
 				}
 				//And top it off with the highest one
-				list.add(new VisibleElement(object.getDrawable(),
+				orderedObjects.add(object.getDrawable(),
 						obj_x, obj_y,
-						object.renderHeight()));
+						object.renderHeight(), key);
 			}
 		}
 	}
@@ -19,8 +19,12 @@ public class DynamicObject
 	private static final int DEPTH_OFFSET_Y = 100;
 	
 	private double x, y, h, radius, offsetHeight, offset_x, offset_y;
+	private double prev_x, prev_y, prev_h;
+	private boolean stored;
 	
 	private int state;
+	//The handle in the EntityRegistry the object is in, -1 if it isn't in one
+	int handle;
 	private ArrayList<Animation> animations;
 	
 	/**
@@ -34,6 +38,9 @@ public class DynamicObject
 		radius = _radius;
 		
 		x = y = h = offsetHeight = offset_x = offset_y = state = 0;
+		prev_x = prev_y = prev_h = 0;
+		stored = false;
+		handle = -1;
 	}
 	
 	/**
@@ -51,6 +58,15 @@ public class DynamicObject
 				&& Math.abs(h - other.h) <= other.getAnimation().getHeight());
 	}
 	
+	/**
+	 * Getter for the radius used in collision detection.
+	 * @return The collision radius of the object.
+	 */
+	public double getRadius()
+	{
+		return radius;
+	}
+	
 	/**
 	 * Set a height offset in order to fool the depth checking algorithms in Camera.
 	 * @param _offset The offset to be added to the height of the object.
@@ -148,6 +164,98 @@ public class DynamicObject
 	}
 	
 	
+	/**
+	 * Stores the current position as the previous one, the rendering interpolates between the two.
+	 * Should be called at the start of every simulation tick, before the object is moved.
+	 */
+	public void storePosition()
+	{
+		prev_x = x;
+		prev_y = y;
+		prev_h = h;
+		stored = true;
+	}
+	
+	/**
+	 * Forgets the stored position, so the object is rendered at its current position until the next storePosition().
+	 * Used when the object is moved somewhere else instantly, like when it is reused from a pool.
+	 */
+	public void forgetPosition()
+	{
+		stored = false;
+	}
+	
+	/**
+	 * Interpolates the x-coordinate between the previous and the current position. Is fooled by the x-offset.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the object is rendered.
+	 * @return The interpolated x-coordinate, the current one if no position has been stored.
+	 */
+	public double get_x(double alpha)
+	{
+		return interpolate(prev_x, x, alpha) + offset_x;
+	}
+	
+	/**
+	 * Interpolates the y-coordinate between the previous and the current position. Is fooled by the y-offset.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the object is rendered.
+	 * @return The interpolated y-coordinate, the current one if no position has been stored.
+	 */
+	public double get_y(double alpha)
+	{
+		return interpolate(prev_y, y, alpha) + offset_y;
+	}
+	
+	/**
+	 * Interpolates the height between the previous and the current position. Is fooled by the heightOffset.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the object is rendered.
+	 * @return The interpolated height, the current one if no position has been stored.
+	 */
+	public double getHeight(double alpha)
+	{
+		return interpolate(prev_h, h, alpha) + offsetHeight;
+	}
+	
+	/**
+	 * Interpolates between the previous and the current value of a coordinate.
+	 * @param previous The stored value.
+	 * @param current The current value.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) value to interpolate.
+	 * @return The interpolated value, exactly the current one at 1.0 or if no position has been stored.
+	 */
+	private double interpolate(double previous, double current, double alpha)
+	{
+		if(!stored || alpha >= 1.0)
+			return current;
+		
+		return previous + (current - previous) * alpha;
+	}
+	
+	/**
+	 * Renders the interpolated internal coordinates to a 2-dimensional x coordinate to be able to draw it on the screen.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the object is rendered.
+	 * @return The x-coordinate on the screen.
+	 */
+	public int render_x(double alpha)
+	{
+		double left_x = (get_x(alpha) - get_y(alpha));
+		left_x -= getAnimation().getWidth()/2.0;
+		
+		return (int)left_x;
+	}
+	
+	/**
+	 * Renders the interpolated internal coordinates to a 2-dimensional y coordinate to be able to draw it on the screen.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the object is rendered.
+	 * @return The y-coordinate on the screen.
+	 */
+	public int render_y(double alpha)
+	{
+		double top_y = (get_x(alpha) + get_y(alpha))/2;
+		top_y -= getAnimation().getHeight();
+		
+		return (int)top_y;
+	}
+	
 	/**
 	 * Renders the internal coordinates to a 2-dimensional x coordinate to be able to draw it on the screen.
 	 * @return The x-coordinate on the screen.
@@ -178,6 +286,20 @@ public class DynamicObject
 	 * @see kaninator.mechanics.Camera
 	 */
 	public int getDepth()
+	{
+		return getDepth(x, y, h);
+	}
+	
+	/**
+	 * Calculates the depth of an object at a position, the same way as for a DynamicObject. Used for objects that
+	 * are stored without a DynamicObject of their own.
+	 * @param x The x coordinate of the object in the internal, isometric, coordinate system.
+	 * @param y The y coordinate of the object in the internal, isometric, coordinate system.
+	 * @param h The height of the object.
+	 * @return The depth of the object.
+	 * @see kaninator.mechanics.Camera
+	 */
+	public static int getDepth(double x, double y, double h)
 	{
 		int depth = (int)y / (int)MapFactory.getTileSize() * DEPTH_OFFSET_Y;
 		depth = depth + (int)x / (int)MapFactory.getTileSize() * DEPTH_OFFSET_X;
@@ -0,0 +1,337 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps track of all the DynamicObjects of the game, sorted into categories the Camera renders in order.
+ * Every category is stored densely in an array, so iterating over a category is a plain loop over the indices.
+ * Every added object gets an integer handle, which stays valid until the object is removed, no matter how the
+ * objects are moved around in the arrays. The handle is also stored in the object itself, so an object can be
+ * removed without searching for it.
+ * Removals are deferred: remove() only marks the object, it stays in its category until flush() is called at the end
+ * of the frame, which swaps the last object of the category into its place. Adding and removing are consequently
+ * constant time, and the objects can be removed while a category is being iterated over. The order of a category
+ * changes when objects are removed. Handles are reused once their objects have been flushed out.
+ * An object can only be in one registry at a time.
+ * @author phedman
+ * @see kaninator.mechanics.Camera#setEntities(EntityRegistry)
+ */
+public class EntityRegistry
+{
+	public static final int ENEMIES = 0, PLAYER = 1, PROJECTILES = 2, EFFECTS = 3, NUM_CATEGORIES = 4;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int FREE = -1;
+
+	private DynamicObject objects[][];
+	private int owners[][];
+	private int sizes[];
+	private int categories[], indices[];
+	private boolean removed[];
+	private int freeHandles[], pending[];
+	private int numHandles, numFree, numPending;
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public EntityRegistry()
+	{
+		objects = new DynamicObject[NUM_CATEGORIES][INITIAL_CAPACITY];
+		owners = new int[NUM_CATEGORIES][INITIAL_CAPACITY];
+		sizes = new int[NUM_CATEGORIES];
+		categories = new int[INITIAL_CAPACITY];
+		indices = new int[INITIAL_CAPACITY];
+		removed = new boolean[INITIAL_CAPACITY];
+		freeHandles = new int[INITIAL_CAPACITY];
+		pending = new int[INITIAL_CAPACITY];
+		numHandles = numFree = numPending = 0;
+	}
+
+	/**
+	 * Adds a DynamicObject to the tail of a category.
+	 * @param obj The DynamicObject.
+	 * @param category The category, one of ENEMIES, PLAYER, PROJECTILES and EFFECTS.
+	 * @return The handle of the object, or its current handle if it already is in the registry.
+	 */
+	public int add(DynamicObject obj, int category)
+	{
+		if(obj.handle != FREE)
+			return obj.handle;
+
+		int handle;
+		if(numFree > 0)
+		{
+			handle = freeHandles[--numFree];
+		}
+		else
+		{
+			if(numHandles == categories.length)
+				growHandles();
+			handle = numHandles++;
+		}
+
+		int index = sizes[category]++;
+		if(index == objects[category].length)
+		{
+			objects[category] = Arrays.copyOf(objects[category], index * 2);
+			owners[category] = Arrays.copyOf(owners[category], index * 2);
+		}
+
+		objects[category][index] = obj;
+		owners[category][index] = handle;
+		categories[handle] = category;
+		indices[handle] = index;
+		removed[handle] = false;
+		obj.handle = handle;
+		return handle;
+	}
+
+	/**
+	 * Adds an array of DynamicObjects to the tail of a category, in the order of the array.
+	 * @param objs The DynamicObjects.
+	 * @param category The category, one of ENEMIES, PLAYER, PROJECTILES and EFFECTS.
+	 */
+	public void addAll(DynamicObject objs[], int category)
+	{
+		for(int i = 0; i < objs.length; i++)
+			add(objs[i], category);
+	}
+
+	/**
+	 * Marks an object to be removed at the next flush(). Does nothing if the handle isn't in use or already marked.
+	 * @param handle The handle of the object.
+	 */
+	public void remove(int handle)
+	{
+		if(handle < 0 || handle >= numHandles || categories[handle] == FREE || removed[handle])
+			return;
+
+		removed[handle] = true;
+		if(numPending == pending.length)
+			pending = Arrays.copyOf(pending, numPending * 2);
+		pending[numPending++] = handle;
+	}
+
+	/**
+	 * Marks an object to be removed at the next flush(). Does nothing if it isn't in the registry.
+	 * @param obj The DynamicObject.
+	 */
+	public void remove(DynamicObject obj)
+	{
+		remove(obj.handle);
+	}
+
+	/**
+	 * Removes the marked objects, moving the last object of their category into their place.
+	 * Should be called at the end of every frame, when nothing is iterating over the registry.
+	 */
+	public void flush()
+	{
+		for(int i = 0; i < numPending; i++)
+		{
+			int handle = pending[i];
+			int category = categories[handle];
+			int index = indices[handle];
+			int last = --sizes[category];
+
+			objects[category][index].handle = FREE;
+			objects[category][index] = objects[category][last];
+			owners[category][index] = owners[category][last];
+			indices[owners[category][index]] = index;
+			objects[category][last] = null;
+
+			categories[handle] = FREE;
+			removed[handle] = false;
+			freeHandles[numFree++] = handle;
+		}
+		numPending = 0;
+	}
+
+	/**
+	 * Removes all the objects right away.
+	 */
+	public void clear()
+	{
+		for(int category = 0; category < NUM_CATEGORIES; category++)
+		{
+			for(int i = 0; i < sizes[category]; i++)
+			{
+				objects[category][i].handle = FREE;
+				objects[category][i] = null;
+			}
+			sizes[category] = 0;
+		}
+		numHandles = numFree = numPending = 0;
+	}
+
+	/**
+	 * Gets the object of a handle.
+	 * @param handle The handle.
+	 * @return The DynamicObject, null if the handle isn't in use.
+	 */
+	public DynamicObject get(int handle)
+	{
+		if(handle < 0 || handle >= numHandles || categories[handle] == FREE)
+			return null;
+
+		return objects[categories[handle]][indices[handle]];
+	}
+
+	/**
+	 * Checks if an object has been marked for removal.
+	 * @param handle The handle of the object.
+	 * @return True if the object will be removed at the next flush().
+	 */
+	public boolean isRemoved(int handle)
+	{
+		return handle >= 0 && handle < numHandles && removed[handle];
+	}
+
+	/**
+	 * Gets the number of objects in a category, including the ones marked for removal.
+	 * @param category The category.
+	 * @return The number of objects.
+	 */
+	public int size(int category)
+	{
+		return sizes[category];
+	}
+
+	/**
+	 * Gets an object of a category.
+	 * @param category The category.
+	 * @param index The index of the object in the category, from 0 to size(category) - 1.
+	 * @return The DynamicObject.
+	 */
+	public DynamicObject get(int category, int index)
+	{
+		return objects[category][index];
+	}
+
+	/**
+	 * Calls storePosition() for all the objects in a category.
+	 * @param category The category.
+	 * @see kaninator.mechanics.DynamicObject#storePosition()
+	 */
+	public void storePositions(int category)
+	{
+		for(int i = 0; i < sizes[category]; i++)
+			objects[category][i].storePosition();
+	}
+
+	/**
+	 * Doubles the number of handles.
+	 */
+	private void growHandles()
+	{
+		int capacity = categories.length * 2;
+
+		categories = Arrays.copyOf(categories, capacity);
+		indices = Arrays.copyOf(indices, capacity);
+		removed = Arrays.copyOf(removed, capacity);
+		freeHandles = Arrays.copyOf(freeHandles, capacity);
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			EntityRegistry registry = new EntityRegistry();
+			for(int category = 0; category < NUM_CATEGORIES; category++)
+				if(registry.size(category) != 0)
+					failedTest("Registry not empty initially.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing add..");
+			ArrayList<DynamicObject> objs = new ArrayList<DynamicObject>();
+			int handles[] = new int[1000];
+			for(int i = 0; i < handles.length; i++)
+			{
+				DynamicObject obj = new DynamicObject(null, 1.0);
+				obj.setPos(i, 0);
+				objs.add(obj);
+				handles[i] = registry.add(obj, i % NUM_CATEGORIES);
+				if(registry.add(obj, PLAYER) != handles[i])
+					failedTest("An object was added twice.");
+			}
+			for(int category = 0; category < NUM_CATEGORIES; category++)
+				if(registry.size(category) != handles.length / NUM_CATEGORIES)
+					failedTest("Invalid size of category " + category);
+			for(int i = 0; i < handles.length; i++)
+				if(registry.get(handles[i]) != objs.get(i))
+					failedTest("Handle " + handles[i] + " gives the wrong object.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing deferred removal..");
+			for(int i = 0; i < handles.length; i += 3)
+			{
+				registry.remove(handles[i]);
+				registry.remove(objs.get(i));
+			}
+			if(registry.size(ENEMIES) != handles.length / NUM_CATEGORIES || !registry.isRemoved(handles[0]))
+				failedTest("Objects removed before the flush.");
+			registry.flush();
+
+			int total = 0;
+			for(int category = 0; category < NUM_CATEGORIES; category++)
+			{
+				for(int i = 0; i < registry.size(category); i++)
+				{
+					int index = (int)registry.get(category, i).get_x();
+					if(index % 3 == 0 || index % NUM_CATEGORIES != category)
+						failedTest("Object " + index + " in the wrong place after the flush.");
+				}
+				total += registry.size(category);
+			}
+			if(total != handles.length - (handles.length + 2) / 3)
+				failedTest("Invalid number of objects after the flush: " + total);
+			for(int i = 0; i < handles.length; i++)
+				if(registry.get(handles[i]) != ((i % 3 == 0) ? null : objs.get(i)))
+					failedTest("Handle " + handles[i] + " broken by the flush.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing reuse of handles..");
+			DynamicObject again = objs.get(0);
+			int handle = registry.add(again, EFFECTS);
+			if(registry.get(handle) != again || registry.get(EFFECTS, registry.size(EFFECTS) - 1) != again)
+				failedTest("A removed object couldn't be added again.");
+			for(int i = 1; i < handles.length; i++)
+				if(i % 3 != 0 && handles[i] == handle)
+					failedTest("A handle in use was reused.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing clear..");
+			registry.clear();
+			for(int category = 0; category < NUM_CATEGORIES; category++)
+				if(registry.size(category) != 0)
+					failedTest("Registry not empty after clear.");
+			if(registry.get(handle) != null || registry.add(again, ENEMIES) < 0)
+				failedTest("Objects still registered after clear.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
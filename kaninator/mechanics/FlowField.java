@@ -0,0 +1,397 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.util.ArrayList;
+
+import kaninator.io.MapFactory;
+
+/**
+ * A flow field over the tiles of a map, pointing every tile towards the shortest walkable path to a target tile.
+ * The tiles form a graph where a step to a neighbouring tile is walkable if the height at the edge of the next tile is
+ * less than half a tile height above the edge of the current one, the same rule Model uses to stop objects at walls.
+ * Diagonal steps are only allowed if both of the orthogonal steps around the corner are walkable.
+ * The walkable steps are resolved once from the StaticObjects, after that the field is recomputed with Dijkstra's algorithm
+ * only when the target moves to another tile. Looking up the direction of a tile is then a constant time operation,
+ * so any number of followers can share the same field. The internal arrays are allocated up front, so recomputing
+ * the field doesn't create any garbage.
+ * @author phedman
+ * @see kaninator.mechanics.StaticObject
+ */
+public class FlowField
+{
+	private static final int DIR_X[] = {1, 1, 0, -1, -1, -1, 0, 1};
+	private static final int DIR_Y[] = {0, 1, 1, 1, 0, -1, -1, -1};
+	private static final int ORTHOGONAL_COST = 10, DIAGONAL_COST = 14;
+	private static final byte NONE = -1;
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+	private static final double EDGE_INSET = 1.0;
+
+	private double tileSize;
+	private int rows, cols;
+	private int target_x, target_y;
+
+	private byte exits[];
+	private byte directions[];
+	private int distances[];
+	private long heap[];
+	private int heapSize;
+
+	/**
+	 * Creates the field and resolves the walkable steps between the tiles. The field has no target until update() is called.
+	 * @param tiles A 2-dimensional ArrayList of StaticObjects, one list per row. Rows shorter than the longest one are padded with unwalkable tiles.
+	 */
+	public FlowField(ArrayList<ArrayList<StaticObject>> tiles)
+	{
+		tileSize = MapFactory.getTileSize();
+		rows = tiles.size();
+		cols = 0;
+		for(ArrayList<StaticObject> row : tiles)
+			cols = Math.max(cols, row.size());
+
+		target_x = target_y = -1;
+		exits = new byte[rows * cols];
+		directions = new byte[rows * cols];
+		distances = new int[rows * cols];
+		//Every cell is pushed at most once for each of its eight neighbours, plus the target
+		heap = new long[rows * cols * 8 + 1];
+		heapSize = 0;
+
+		for(int i = 0; i < directions.length; i++)
+		{
+			directions[i] = NONE;
+			distances[i] = UNREACHABLE;
+		}
+
+		resolveExits(tiles);
+	}
+
+	/**
+	 * Moves the target of the field to the tile the DynamicObject is standing on. The field is only
+	 * recomputed if the tile has changed, or if the object is outside the map the old field is kept.
+	 * @param target The DynamicObject the field leads to.
+	 * @return True if the field was recomputed.
+	 */
+	public boolean update(DynamicObject target)
+	{
+		int tile_x = tile(target.get_x());
+		int tile_y = tile(target.get_y());
+		if(!contains(tile_x, tile_y) || (tile_x == target_x && tile_y == target_y))
+			return false;
+
+		target_x = tile_x;
+		target_y = tile_y;
+		compute();
+		return true;
+	}
+
+	/**
+	 * Checks if there is a walkable path from the point (x,y) to the tile of the target.
+	 * @param x The x coordinate in the internal, isometric, coordinate system.
+	 * @param y The y coordinate in the internal, isometric, coordinate system.
+	 * @return True if the point is on a tile the target can be reached from, false if it isn't or if it already is on the tile of the target.
+	 */
+	public boolean hasPath(double x, double y)
+	{
+		int tile_x = tile(x);
+		int tile_y = tile(y);
+		return contains(tile_x, tile_y) && directions[tile_y * cols + tile_x] != NONE;
+	}
+
+	/**
+	 * Gets the x coordinate of the center of the next tile on the path from the point (x,y) to the target.
+	 * Only valid if hasPath() returns true for the same point.
+	 * @param x The x coordinate in the internal, isometric, coordinate system.
+	 * @param y The y coordinate in the internal, isometric, coordinate system.
+	 * @return The x coordinate of the center of the next tile.
+	 */
+	public double getNext_x(double x, double y)
+	{
+		int tile_x = tile(x);
+		return (tile_x + DIR_X[directions[tile(y) * cols + tile_x]] + 0.5) * tileSize;
+	}
+
+	/**
+	 * Gets the y coordinate of the center of the next tile on the path from the point (x,y) to the target.
+	 * Only valid if hasPath() returns true for the same point.
+	 * @param x The x coordinate in the internal, isometric, coordinate system.
+	 * @param y The y coordinate in the internal, isometric, coordinate system.
+	 * @return The y coordinate of the center of the next tile.
+	 */
+	public double getNext_y(double x, double y)
+	{
+		int tile_y = tile(y);
+		return (tile_y + DIR_Y[directions[tile_y * cols + tile(x)]] + 0.5) * tileSize;
+	}
+
+	/**
+	 * Resolves the walkable steps out of every tile. The orthogonal steps are resolved from the heights
+	 * at the edges of the tiles, the diagonal ones from the orthogonal steps around the corner.
+	 * @param tiles A 2-dimensional ArrayList of StaticObjects, one list per row.
+	 */
+	private void resolveExits(ArrayList<ArrayList<StaticObject>> tiles)
+	{
+		for(int j = 0; j < rows; j++)
+		{
+			for(int i = 0; i < cols; i++)
+			{
+				StaticObject from = getTile(tiles, i, j);
+				if(from == null)
+					continue;
+
+				for(int dir = 0; dir < 8; dir += 2)
+				{
+					StaticObject to = getTile(tiles, i + DIR_X[dir], j + DIR_Y[dir]);
+					if(to == null)
+						continue;
+
+					double half = tileSize / 2.0;
+					double inner = half - EDGE_INSET;
+					double fromHeight = from.getHeight(half + DIR_X[dir] * inner, half + DIR_Y[dir] * inner);
+					double toHeight = to.getHeight(half - DIR_X[dir] * inner, half - DIR_Y[dir] * inner);
+					if(toHeight < fromHeight + MapFactory.getTileHeight() / 2.0)
+						exits[j * cols + i] |= 1 << dir;
+				}
+			}
+		}
+
+		for(int j = 0; j < rows; j++)
+		{
+			for(int i = 0; i < cols; i++)
+			{
+				for(int dir = 1; dir < 8; dir += 2)
+				{
+					int first = dir - 1, second = (dir + 1) % 8;
+					if(canStep(i, j, first) && canStep(i + DIR_X[first], j + DIR_Y[first], second)
+							&& canStep(i, j, second) && canStep(i + DIR_X[second], j + DIR_Y[second], first))
+						exits[j * cols + i] |= 1 << dir;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm backwards from the target tile, following the walkable steps in reverse,
+	 * and stores the direction of the first step of the shortest path for every tile.
+	 */
+	private void compute()
+	{
+		for(int i = 0; i < directions.length; i++)
+		{
+			directions[i] = NONE;
+			distances[i] = UNREACHABLE;
+		}
+
+		int start = target_y * cols + target_x;
+		distances[start] = 0;
+		heapSize = 0;
+		push(0, start);
+
+		while(heapSize > 0)
+		{
+			long entry = pop();
+			int distance = (int)(entry >>> 32);
+			int cell = (int)entry;
+			if(distance > distances[cell])
+				continue;
+
+			int cell_x = cell % cols, cell_y = cell / cols;
+			for(int dir = 0; dir < 8; dir++)
+			{
+				int i = cell_x - DIR_X[dir], j = cell_y - DIR_Y[dir];
+				if(!canStep(i, j, dir))
+					continue;
+
+				int neighbour = j * cols + i;
+				int newDistance = distance + ((dir % 2 == 0) ? ORTHOGONAL_COST : DIAGONAL_COST);
+				if(newDistance < distances[neighbour])
+				{
+					distances[neighbour] = newDistance;
+					directions[neighbour] = (byte)dir;
+					push(newDistance, neighbour);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if a step out of a tile is walkable.
+	 * @param i The column of the tile.
+	 * @param j The row of the tile.
+	 * @param dir The index of the direction of the step.
+	 * @return True if the tile exists and the step out of it is walkable.
+	 */
+	private boolean canStep(int i, int j, int dir)
+	{
+		return contains(i, j) && (exits[j * cols + i] & (1 << dir)) != 0;
+	}
+
+	/**
+	 * Checks if a tile is within the field.
+	 * @param i The column of the tile.
+	 * @param j The row of the tile.
+	 * @return True if the tile is within the field.
+	 */
+	private boolean contains(int i, int j)
+	{
+		return i >= 0 && j >= 0 && i < cols && j < rows;
+	}
+
+	/**
+	 * Converts a coordinate into a tile coordinate.
+	 * @param coord The coordinate in the internal, isometric, coordinate system.
+	 * @return The tile coordinate.
+	 */
+	private int tile(double coord)
+	{
+		return (int)Math.floor(coord / tileSize);
+	}
+
+	/**
+	 * Gets a tile from the map.
+	 * @param tiles A 2-dimensional ArrayList of StaticObjects, one list per row.
+	 * @param i The column of the tile.
+	 * @param j The row of the tile.
+	 * @return The tile, or null if there is no tile at the position.
+	 */
+	private static StaticObject getTile(ArrayList<ArrayList<StaticObject>> tiles, int i, int j)
+	{
+		if(j < 0 || j >= tiles.size() || i < 0 || i >= tiles.get(j).size())
+			return null;
+
+		return tiles.get(j).get(i);
+	}
+
+	/**
+	 * Adds a cell to the priority queue.
+	 * @param distance The distance of the cell from the target.
+	 * @param cell The index of the cell.
+	 */
+	private void push(int distance, int cell)
+	{
+		long entry = ((long)distance << 32) | cell;
+		int index = heapSize++;
+		while(index > 0)
+		{
+			int parent = (index - 1) / 2;
+			if(heap[parent] <= entry)
+				break;
+
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = entry;
+	}
+
+	/**
+	 * Removes the cell with the shortest distance from the priority queue.
+	 * @return The distance in the upper and the index of the cell in the lower 32 bits.
+	 */
+	private long pop()
+	{
+		long top = heap[0];
+		long last = heap[--heapSize];
+		int index = 0;
+		while(true)
+		{
+			int child = 2 * index + 1;
+			if(child >= heapSize)
+				break;
+			if(child + 1 < heapSize && heap[child + 1] < heap[child])
+				child++;
+			if(last <= heap[child])
+				break;
+
+			heap[index] = heap[child];
+			index = child;
+		}
+		if(heapSize > 0)
+			heap[index] = last;
+
+		return top;
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			//A 5x5 map with a wall on the middle column, except for the bottom row
+			ArrayList<ArrayList<StaticObject>> tiles = new ArrayList<ArrayList<StaticObject>>();
+			for(int j = 0; j < 5; j++)
+			{
+				ArrayList<StaticObject> row = new ArrayList<StaticObject>();
+				for(int i = 0; i < 5; i++)
+				{
+					double height = (i == 2 && j < 4) ? MapFactory.getTileHeight() * 2 : 0.0;
+					row.add(new FlatTile(null, null, height, i, j));
+				}
+				tiles.add(row);
+			}
+			FlowField field = new FlowField(tiles);
+			double size = MapFactory.getTileSize();
+			if(field.hasPath(size / 2, size / 2))
+				failedTest("A path exists before the target is set.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing update..");
+			DynamicObject target = new DynamicObject(null, 0.0);
+			target.setPos(4.5 * size, 0.5 * size);
+			if(!field.update(target))
+				failedTest("The field wasn't computed.");
+			if(field.update(target))
+				failedTest("The field was recomputed on the same tile.");
+			if(field.hasPath(4.5 * size, 0.5 * size))
+				failedTest("A path exists from the tile of the target.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the path around the wall..");
+			double x = 0.5 * size, y = 0.5 * size;
+			int steps = 0;
+			while(field.hasPath(x, y) && steps < 25)
+			{
+				double next_x = field.getNext_x(x, y), next_y = field.getNext_y(x, y);
+				if(tiles.get(field.tile(next_y)).get(field.tile(next_x)).getHeight(0, 0) > 0.0)
+					failedTest("The path goes over the wall.");
+				x = next_x;
+				y = next_y;
+				steps++;
+			}
+			if(field.tile(x) != 4 || field.tile(y) != 0)
+				failedTest("The path doesn't reach the target.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing unreachable tiles..");
+			if(field.hasPath(2.5 * size, 0.5 * size) == false)
+				failedTest("Walking down from the wall isn't allowed.");
+			target.setPos(2.5 * size, 0.5 * size);
+			field.update(target);
+			if(field.hasPath(0.5 * size, 0.5 * size))
+				failedTest("A path leads up the wall.");
+			if(field.hasPath(-1.0, 0.0) || field.hasPath(5 * size, 0.0))
+				failedTest("A path exists outside the map.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -4,7 +4,8 @@
  */
 package kaninator.mechanics;
 
-import java.util.*;
+import java.util.ArrayList;
+
 import kaninator.graphics.*;
 
 /**
@@ -17,31 +18,46 @@ import kaninator.graphics.*;
  * [0,2][1,2][2,2]<br />
  * 
  * Drawable objects added to a subsection will be positioned underneath the previous elements.
+ * The layout is retained between frames: a section is only laid out again when its contents have been
+ * changed, one of its Drawables has changed size or the canvas has been resized.
  * @see kaninator.graphics.Drawable
  * @author phedman
  */
 public class GUI
 {
-	private ArrayList<ArrayList<Queue<Drawable>>> drawables;
+	/**
+	 * The contents of a screen section together with the positions they were last laid out at.
+	 * @author phedman
+	 */
+	private static class Section
+	{
+		private ArrayList<Drawable> drawables = new ArrayList<Drawable>();
+		private int pos_x[] = new int[0], pos_y[] = new int[0];
+		private int widths[] = new int[0], heights[] = new int[0];
+		private boolean dirty = true;
+	}
+	
+	private Section sections[][];
 	private int padding;
 	private Canvas canvas;
+	private DisplayList elements;
+	private int layoutWidth, layoutHeight;
+	
 	/**
-	 * Creates a two dimensional array of Queues in order to store the drawables for each screen section.
+	 * Creates a two dimensional array of sections in order to store the drawables for each screen section.
 	 * @see kaninator.graphics.Drawable
-	 * @see java.util.Queue
 	 */
 	public GUI(Canvas _canvas)
 	{
 		padding = 0;
 		canvas = _canvas;
-		drawables = new ArrayList<ArrayList<Queue<Drawable>>>();
+		elements = new DisplayList();
+		layoutWidth = layoutHeight = -1;
+		sections = new Section[3][3];
 		
 		for(int i = 0; i < 3; i++)
-		{
-			drawables.add(new ArrayList<Queue<Drawable>>());
 			for(int j = 0; j < 3; j++)
-				drawables.get(i).add(new LinkedList<Drawable>());
-		}
+				sections[i][j] = new Section();
 	}
 	
 	/**
@@ -54,6 +70,7 @@ public class GUI
 			return;
 		
 		padding = _padding;
+		markAllDirty();
 	}
 	
 	
@@ -73,7 +90,7 @@ public class GUI
 		int size = 0;
 		for(int i = 0; i < 3; i++)
 			for(int j = 0; j < 3; j++)
-				size += drawables.get(i).get(j).size();
+				size += sections[i][j].drawables.size();
 		
 		return size;
 	}
@@ -86,7 +103,11 @@ public class GUI
 	 */
 	public void clearSection(int x, int y)
 	{
-		drawables.get(x).get(y).clear();
+		if(sections[x][y].drawables.isEmpty())
+			return;
+		
+		sections[x][y].drawables.clear();
+		sections[x][y].dirty = true;
 	}
 	
 	/**
@@ -97,7 +118,8 @@ public class GUI
 	 */
 	public void addToSection(Drawable drawable, int x, int y)
 	{
-		drawables.get(x).get(y).add(drawable);
+		sections[x][y].drawables.add(drawable);
+		sections[x][y].dirty = true;
 	}
 	
 	/**
@@ -112,7 +134,7 @@ public class GUI
 		int num = 0;
 		int offset = 0;
 		
-		for(Drawable drawable : drawables.get(i).get(j))
+		for(Drawable drawable : sections[i][j].drawables)
 		{	
 			int draw_x = getRealX(i, drawable);
 			int draw_y = getRealY(j, offset, drawable);
@@ -129,33 +151,118 @@ public class GUI
 	}
 	
 	/**
-	 * 	Parses the GUI and returns an array of VisibleElements that can be passed to the screen.
-	 *  Positions the elements belonging to the same subsection underneath each other.
+	 * Lays out the sections that have changed since the last call and rebuilds the DisplayList of the GUI if needed.
+	 * A section has changed if Drawables have been added to or cleared from it, or if one of its Drawables has changed size.
+	 * Every section is laid out again if the size of the canvas has changed.
+	 * @return True if the DisplayList changed, false if it is the same as after the previous call.
+	 * @see #getElements()
 	 */
-	public ArrayList<VisibleElement> render()
+	public boolean update()
 	{
-		ArrayList<VisibleElement> elements = new ArrayList<VisibleElement>();
+		if(canvas.getWidth() != layoutWidth || canvas.getHeight() != layoutHeight)
+		{
+			layoutWidth = canvas.getWidth();
+			layoutHeight = canvas.getHeight();
+			markAllDirty();
+		}
 		
-		//Loop through each subsection of the gui
+		boolean changed = false;
 		for(int i = 0; i < 3; i++)
+		{
 			for(int j = 0; j < 3; j++)
-			{		
-				//Loops through each element in the subsection
-				//and positions them underneath each other
-				int offset = 0;
-				for(Drawable drawable : drawables.get(i).get(j))
-				{	
-					//Estimates a screen position for the elements
-					int draw_x = getRealX(i, drawable);
-					int draw_y = getRealY(j , offset, drawable);
-					
-					elements.add(new VisibleElement(drawable, draw_x, draw_y, 0));
-					offset += drawable.getHeight() + 1;
+			{
+				Section section = sections[i][j];
+				if(section.dirty || resized(section))
+				{
+					layout(section, i, j);
+					changed = true;
 				}
 			}
+		}
+		
+		if(!changed)
+			return false;
+		
+		elements.clear();
+		for(int i = 0; i < 3; i++)
+			for(int j = 0; j < 3; j++)
+				for(int k = 0; k < sections[i][j].drawables.size(); k++)
+					elements.add(sections[i][j].drawables.get(k), sections[i][j].pos_x[k], sections[i][j].pos_y[k], 0);
+		
+		return true;
+	}
+	
+	/**
+	 * Getter for the laid out elements of the GUI. Only up to date after update() has been called.
+	 * The DisplayList is reused, so it should be copied if it has to be kept.
+	 * @return The DisplayList containing the elements of the GUI.
+	 */
+	public DisplayList getElements()
+	{
 		return elements;
 	}
 	
+	/**
+	 * Marks every section as changed.
+	 */
+	private void markAllDirty()
+	{
+		for(int i = 0; i < 3; i++)
+			for(int j = 0; j < 3; j++)
+				sections[i][j].dirty = true;
+	}
+	
+	/**
+	 * Checks if any of the Drawables in the section has changed size since it was laid out.
+	 * @param section The section to be checked.
+	 * @return True if a Drawable has changed size.
+	 */
+	private boolean resized(Section section)
+	{
+		for(int k = 0; k < section.drawables.size(); k++)
+		{
+			Drawable drawable = section.drawables.get(k);
+			if(drawable.getWidth() != section.widths[k] || drawable.getHeight() != section.heights[k])
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Positions the elements of a section underneath each other and stores the positions and sizes.
+	 * @param section The section to be laid out.
+	 * @param i The x coordinate of the screen section
+	 * @param j The y coordinate of the screen section
+	 */
+	private void layout(Section section, int i, int j)
+	{
+		int n = section.drawables.size();
+		if(section.pos_x.length < n)
+		{
+			section.pos_x = new int[n];
+			section.pos_y = new int[n];
+			section.widths = new int[n];
+			section.heights = new int[n];
+		}
+		
+		int offset = 0;
+		for(int k = 0; k < n; k++)
+		{
+			Drawable drawable = section.drawables.get(k);
+			
+			//Estimates a screen position for the elements
+			section.pos_x[k] = getRealX(i, drawable);
+			section.pos_y[k] = getRealY(j, offset, drawable);
+			section.widths[k] = drawable.getWidth();
+			section.heights[k] = drawable.getHeight();
+			
+			offset += drawable.getHeight() + 1;
+		}
+		
+		section.dirty = false;
+	}
+	
 	/**
 	 * Calculates the on-screen x coordinate for the element
 	 * @param i The x coordinate of the screen section
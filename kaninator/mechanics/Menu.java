@@ -12,6 +12,7 @@ import kaninator.graphics.Drawable;
  * Implements menu functionality for the GameState objects.
  * Stores Drawable objects for both the active and passive states of the menu options.
  * Takes both a pointer input and key input. (setPosition respectively moveUp/moveDown)
+ * The menu is only passed on to the GUI again when it has changed since it was last rendered.
  * @author phedman
  * @see kaninator.game.GameState
  */
@@ -23,7 +24,8 @@ public class Menu
 	private ArrayList<Drawable> activeEntries;
 	private Drawable title;
 	
-	private int position;
+	private int position, renderedPosition;
+	private boolean dirty;
 	
 	
 	/**
@@ -37,6 +39,7 @@ public class Menu
 		passiveEntries = new ArrayList<Drawable>();
 		activeEntries = new ArrayList<Drawable>();
 		title = null;
+		dirty = true;
 	}
 	
 	
@@ -47,6 +50,7 @@ public class Menu
 	public void setTitle(Drawable element)
 	{
 		title = element;
+		dirty = true;
 	}
 	
 	
@@ -60,6 +64,7 @@ public class Menu
 	{
 		passiveEntries.add(passive);
 		activeEntries.add(active);
+		dirty = true;
 	}
 	
 	/**
@@ -69,6 +74,7 @@ public class Menu
 	{
 		gui.clearSection(1, 0);
 		gui.clearSection(1, 1);
+		dirty = true;
 	}
 
 	/**
@@ -78,15 +84,20 @@ public class Menu
 	{
 		passiveEntries.clear();
 		activeEntries.clear();
-		
+		dirty = true;
 	}
 	
 	/**
-	 * Renders the menu to the gui object.
+	 * Renders the menu to the gui object. Does nothing if neither the entries nor the selection have changed.
 	 */
 	public void render()
 	{
+		if(!dirty && position == renderedPosition)
+			return;
+		
 		clear();
+		dirty = false;
+		renderedPosition = position;
 		
 		gui.addToSection(title, 1, 0);
 		
@@ -0,0 +1,185 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the updates of a list of entities in parallel on a ForkJoinPool.
+ * The indices of the list are split into ranges of at most GRAIN entities, which are run on the threads of the pool,
+ * and run() returns once all of them are done. The jobs must only write to the entities at the indices they are given,
+ * and only read state that isn't written to during the same run, so the result doesn't depend on how the ranges end up on the threads.
+ * Everything else, like removing entities or playing sounds, is done by the caller after run() has returned.
+ * With a single thread no pool is created and the jobs are run directly on the calling thread.
+ * @author phedman
+ */
+public class ParallelUpdater
+{
+	/**
+	 * The work done for a range of entities.
+	 * @author phedman
+	 */
+	public interface Job
+	{
+		/**
+		 * Updates the entities in a range.
+		 * @param from The index of the first entity.
+		 * @param to The index after the last entity.
+		 */
+		public void run(int from, int to);
+	}
+
+	/**
+	 * A range of indices, split in halves until it is small enough to be run as a single task.
+	 * @author phedman
+	 */
+	private static class Range extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private Job job;
+		private int from, to;
+
+		/**
+		 * Creates a range.
+		 * @param _job The job run for the range.
+		 * @param _from The index of the first entity.
+		 * @param _to The index after the last entity.
+		 */
+		Range(Job _job, int _from, int _to)
+		{
+			job = _job;
+			from = _from;
+			to = _to;
+		}
+
+		/**
+		 * Overrides the compute method in RecursiveAction, runs the job or splits the range.
+		 */
+		protected void compute()
+		{
+			if(to - from <= GRAIN)
+			{
+				job.run(from, to);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new Range(job, from, middle), new Range(job, middle, to));
+		}
+	}
+
+	private static final int GRAIN = 32;
+
+	private ForkJoinPool pool;
+	private int threads;
+
+	/**
+	 * Creates an updater.
+	 * @param _threads The number of threads, values below 1 use one thread for every available processor.
+	 */
+	public ParallelUpdater(int _threads)
+	{
+		threads = (_threads < 1) ? Runtime.getRuntime().availableProcessors() : _threads;
+		pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+	}
+
+	/**
+	 * Getter for the number of threads the jobs are run on.
+	 * @return The number of threads.
+	 */
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	/**
+	 * Runs a job for the entities at the indices [0, count) and waits until it has finished.
+	 * Short ranges are run directly on the calling thread.
+	 * @param job The job.
+	 * @param count The number of entities.
+	 */
+	public void run(Job job, int count)
+	{
+		if(pool == null || count <= GRAIN)
+		{
+			job.run(0, count);
+			return;
+		}
+
+		pool.invoke(new Range(job, 0, count));
+	}
+
+	/**
+	 * Stops the threads of the pool. The updater can't be used after this.
+	 */
+	public void shutdown()
+	{
+		if(pool != null)
+			pool.shutdown();
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			ParallelUpdater serial = new ParallelUpdater(1);
+			ParallelUpdater parallel = new ParallelUpdater(4);
+			if(serial.getThreads() != 1 || parallel.getThreads() != 4 || new ParallelUpdater(0).getThreads() < 1)
+				failedTest("Invalid number of threads.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing run..");
+			final int values[] = new int[10000];
+			Job square = new Job()
+			{
+				public void run(int from, int to)
+				{
+					for(int i = from; i < to; i++)
+						values[i] += i * i;
+				}
+			};
+
+			for(ParallelUpdater updater : new ParallelUpdater[] {serial, parallel})
+			{
+				for(int count : new int[] {0, 1, GRAIN, values.length})
+				{
+					for(int i = 0; i < values.length; i++)
+						values[i] = 0;
+
+					updater.run(square, count);
+					for(int i = 0; i < values.length; i++)
+						if(values[i] != ((i < count) ? i * i : 0))
+							failedTest("Index " + i + " updated wrong with " + updater.getThreads() + " threads and " + count + " entities.");
+					System.out.print("..");
+				}
+			}
+			System.out.println(".. Test Ok!");
+
+			parallel.shutdown();
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -0,0 +1,295 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+import kaninator.graphics.DisplayList;
+import kaninator.graphics.Drawable;
+
+/**
+ * Sorts the Drawables the Camera wants to draw according to their depth.
+ * Elements with the same depth keep the order they were added in, so the drawing order is the same as
+ * if they had been stored in lists sorted by depth. The depth and the order of addition are packed into
+ * a single long and sorted with a radix sort over the range of depths in the queue.
+ * All the arrays are reused, so filling and sorting the queue doesn't create any garbage once they
+ * have grown large enough.
+ * @author phedman
+ * @see kaninator.mechanics.Camera
+ */
+public class RenderQueue
+{
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+	private int size;
+	private Drawable drawables[];
+	private int pos_x[], pos_y[], heights[], depths[];
+	private long keys[], buffer[];
+	private int counts[];
+
+	/**
+	 * Creates an empty queue.
+	 */
+	public RenderQueue()
+	{
+		size = 0;
+		drawables = new Drawable[INITIAL_CAPACITY];
+		pos_x = new int[INITIAL_CAPACITY];
+		pos_y = new int[INITIAL_CAPACITY];
+		heights = new int[INITIAL_CAPACITY];
+		depths = new int[INITIAL_CAPACITY];
+		keys = new long[INITIAL_CAPACITY];
+		buffer = new long[INITIAL_CAPACITY];
+		counts = new int[RADIX_MASK + 1];
+	}
+
+	/**
+	 * Empties the queue. Keeps the internal arrays so they can be reused.
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < size; i++)
+			drawables[i] = null;
+
+		size = 0;
+	}
+
+	/**
+	 * Adds a Drawable to the tail of the queue.
+	 * @param drawable The Drawable to be drawn.
+	 * @param x The on screen x coordinate.
+	 * @param y The on screen y coordinate.
+	 * @param height The height the Drawable is positioned at.
+	 * @param depth The depth used for sorting, lower depths are drawn first.
+	 */
+	public void add(Drawable drawable, int x, int y, int height, int depth)
+	{
+		if(size == drawables.length)
+			grow();
+
+		drawables[size] = drawable;
+		pos_x[size] = x;
+		pos_y[size] = y;
+		heights[size] = height;
+		depths[size] = depth;
+		size++;
+	}
+
+	/**
+	 * Getter for the number of elements in the queue.
+	 * @return The number of elements.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Sorts the queue according to depth. Elements with the same depth stay in the order they were added in.
+	 * The accessors below return the elements in the sorted order after this has been called.
+	 */
+	public void sort()
+	{
+		if(size == 0)
+			return;
+
+		int min = depths[0], max = depths[0];
+		for(int i = 1; i < size; i++)
+		{
+			if(depths[i] < min)
+				min = depths[i];
+			else if(depths[i] > max)
+				max = depths[i];
+		}
+
+		//The sequence number is the lower half of the key, so the elements are already sorted by it
+		for(int i = 0; i < size; i++)
+			keys[i] = ((long)(depths[i] - min) << 32) | i;
+
+		//Least significant digit first, only as many digits as the range of depths needs
+		long range = (long)max - min;
+		for(int shift = 32; (range >> (shift - 32)) > 0; shift += RADIX_BITS)
+		{
+			Arrays.fill(counts, 0);
+			for(int i = 0; i < size; i++)
+				counts[(int)(keys[i] >>> shift) & RADIX_MASK]++;
+
+			int total = 0;
+			for(int i = 0; i < counts.length; i++)
+			{
+				int count = counts[i];
+				counts[i] = total;
+				total += count;
+			}
+
+			for(int i = 0; i < size; i++)
+				buffer[counts[(int)(keys[i] >>> shift) & RADIX_MASK]++] = keys[i];
+
+			long temp[] = keys;
+			keys = buffer;
+			buffer = temp;
+		}
+	}
+
+	/**
+	 * Gets the Drawable at a position in the sorted queue.
+	 * @param rank The position in the sorted queue.
+	 * @return The Drawable.
+	 */
+	public Drawable getDrawable(int rank)
+	{
+		return drawables[index(rank)];
+	}
+
+	/**
+	 * Gets the on screen x coordinate at a position in the sorted queue.
+	 * @param rank The position in the sorted queue.
+	 * @return The x coordinate.
+	 */
+	public int get_x(int rank)
+	{
+		return pos_x[index(rank)];
+	}
+
+	/**
+	 * Gets the on screen y coordinate at a position in the sorted queue.
+	 * @param rank The position in the sorted queue.
+	 * @return The y coordinate.
+	 */
+	public int get_y(int rank)
+	{
+		return pos_y[index(rank)];
+	}
+
+	/**
+	 * Gets the height at a position in the sorted queue.
+	 * @param rank The position in the sorted queue.
+	 * @return The height the element is positioned at.
+	 */
+	public int getHeight(int rank)
+	{
+		return heights[index(rank)];
+	}
+
+	/**
+	 * Gets the depth at a position in the sorted queue.
+	 * @param rank The position in the sorted queue.
+	 * @return The depth of the element.
+	 */
+	public int getDepth(int rank)
+	{
+		return depths[index(rank)];
+	}
+
+	/**
+	 * Appends the elements in the sorted order to the tail of a DisplayList.
+	 * @param list The DisplayList the elements will be added to.
+	 * @see kaninator.graphics.DisplayList
+	 */
+	public void copyTo(DisplayList list)
+	{
+		for(int rank = 0; rank < size; rank++)
+		{
+			int i = index(rank);
+			list.add(drawables[i], pos_x[i], pos_y[i], heights[i]);
+		}
+	}
+
+	/**
+	 * Unpacks the index of the element from the sorted key.
+	 * @param rank The position in the sorted queue.
+	 * @return The index of the element in the arrays.
+	 */
+	private int index(int rank)
+	{
+		return (int)keys[rank];
+	}
+
+	/**
+	 * Doubles the capacity of the queue.
+	 */
+	private void grow()
+	{
+		int capacity = drawables.length * 2;
+
+		drawables = Arrays.copyOf(drawables, capacity);
+		pos_x = Arrays.copyOf(pos_x, capacity);
+		pos_y = Arrays.copyOf(pos_y, capacity);
+		heights = Arrays.copyOf(heights, capacity);
+		depths = Arrays.copyOf(depths, capacity);
+		keys = new long[capacity];
+		buffer = new long[capacity];
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			RenderQueue queue = new RenderQueue();
+			if(queue.size() != 0)
+				failedTest("Queue not empty initially.");
+
+			//sorting an empty queue shouldn't do anything
+			queue.sort();
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing the order against a TreeMap of lists..");
+			int ranges[] = {1, 7, 300, 70000, 3000000};
+			for(int range : ranges)
+			{
+				queue.clear();
+				TreeMap<Integer, ArrayList<Integer>> expected = new TreeMap<Integer, ArrayList<Integer>>();
+				for(int i = 0; i < 2000; i++)
+				{
+					int depth = (int)((i * 7919L) % range) - range / 3;
+					queue.add(null, i, 0, 0, depth);
+
+					if(!expected.containsKey(depth))
+						expected.put(depth, new ArrayList<Integer>());
+					expected.get(depth).add(i);
+				}
+
+				queue.sort();
+				int rank = 0;
+				for(ArrayList<Integer> list : expected.values())
+					for(int i : list)
+						if(queue.get_x(rank++) != i)
+							failedTest("Sorted order differs from the TreeMap with the depth range " + range);
+				System.out.print("..");
+			}
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing clear..");
+			queue.clear();
+			if(queue.size() != 0)
+				failedTest("Queue not empty after clear.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
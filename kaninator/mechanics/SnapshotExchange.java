@@ -0,0 +1,155 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands WorldSnapshots from the simulation thread to the render thread without locking.
+ * A triple buffer of three reused snapshots: the simulation fills the back one and publishes it, which swaps it with the
+ * middle one, and the renderer swaps the middle one with the front one whenever a newer snapshot has been published.
+ * The index of the middle snapshot and whether it is newer than the front one are kept in a single AtomicInteger,
+ * so neither side ever waits for the other and the renderer always gets the newest published snapshot.
+ * Snapshots the renderer didn't get to are simply overwritten.
+ * Only one thread may publish and only one thread may consume.
+ * @author phedman
+ * @see kaninator.mechanics.WorldSnapshot
+ */
+public class SnapshotExchange
+{
+	private static final int INDEX_MASK = 3, FRESH = 4;
+
+	private WorldSnapshot snapshots[];
+	private AtomicInteger middle;
+	private int back, front;
+
+	/**
+	 * Creates an exchange with three empty snapshots.
+	 * @param statusCount The number of status values stored in the snapshots.
+	 */
+	public SnapshotExchange(int statusCount)
+	{
+		snapshots = new WorldSnapshot[3];
+		for(int i = 0; i < snapshots.length; i++)
+			snapshots[i] = new WorldSnapshot(statusCount);
+
+		back = 0;
+		middle = new AtomicInteger(1);
+		front = 2;
+	}
+
+	/**
+	 * Gets the snapshot the simulation fills. Only called by the simulation thread.
+	 * @return The back snapshot, containing what was published two snapshots ago or nothing.
+	 */
+	public WorldSnapshot getBack()
+	{
+		return snapshots[back];
+	}
+
+	/**
+	 * Publishes the back snapshot and hands a new one to the simulation. Only called by the simulation thread.
+	 * Everything written to the snapshot before this is visible to the renderer once it gets the snapshot.
+	 * @return The new back snapshot.
+	 */
+	public WorldSnapshot publish()
+	{
+		snapshots[back].setTime(System.nanoTime());
+		back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+		return snapshots[back];
+	}
+
+	/**
+	 * Gets the newest published snapshot. Only called by the render thread, which may read the snapshot
+	 * until the next call. Returns the same snapshot again if nothing has been published since the previous call.
+	 * @return The front snapshot, an empty one with the tick -1 if nothing has been published yet.
+	 */
+	public WorldSnapshot consume()
+	{
+		if((middle.get() & FRESH) != 0)
+			front = middle.getAndSet(front) & INDEX_MASK;
+
+		return snapshots[front];
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			SnapshotExchange exchange = new SnapshotExchange(1);
+			if(exchange.consume().getTick() != -1 || exchange.consume().getTime() != 0)
+				failedTest("A snapshot was published initially.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing publish and consume..");
+			exchange.getBack().setTick(1);
+			exchange.publish();
+			if(exchange.consume().getTick() != 1 || exchange.consume().getTick() != 1)
+				failedTest("The published snapshot wasn't consumed.");
+
+			for(int tick = 2; tick < 5; tick++)
+			{
+				exchange.getBack().setTick(tick);
+				exchange.publish();
+			}
+			if(exchange.consume().getTick() != 4)
+				failedTest("The newest snapshot wasn't consumed.");
+			if(exchange.getBack() == exchange.consume())
+				failedTest("The simulation and the renderer share a snapshot.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing two threads..");
+			final SnapshotExchange shared = new SnapshotExchange(1);
+			final int ticks = 200000;
+			Thread simulation = new Thread()
+			{
+				public void run()
+				{
+					WorldSnapshot snapshot = shared.getBack();
+					for(int tick = 0; tick < ticks; tick++)
+					{
+						snapshot.setTick(tick);
+						snapshot.setStatus(0, tick);
+						snapshot = shared.publish();
+					}
+				}
+			};
+			simulation.start();
+
+			long last = -1;
+			while(last < ticks - 1)
+			{
+				WorldSnapshot snapshot = shared.consume();
+				if(snapshot.getTick() < last)
+					failedTest("An older snapshot was consumed after a newer one.");
+				if(snapshot.getTick() != snapshot.getStatus(0) && snapshot.getTick() >= 0)
+					failedTest("A snapshot was consumed while it was being filled.");
+				last = snapshot.getTick();
+			}
+			simulation.join();
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -0,0 +1,398 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import kaninator.io.MapFactory;
+
+/**
+ * A uniform grid over the internal, isometric, coordinate system used to find the DynamicObjects
+ * close to a point without checking every single one of them.
+ * Every entry is bound to a DynamicObject which decides the cell it ends up in, the entry itself
+ * can be anything, usually the game object owning the DynamicObject.
+ * The cells are hashed into a table of buckets, so the grid doesn't need to know the size of the map.
+ * The index is meant to be rebuilt every frame with clear() and insert(), the internal arrays are
+ * reused so rebuilding it doesn't create any garbage once they have grown large enough.
+ * @author phedman
+ * @see kaninator.mechanics.DynamicObject
+ */
+public class SpatialIndex<T>
+{
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int END = -1;
+
+	private double cellSize;
+	private int size, mask;
+	private double maxRadius;
+
+	private int heads[];
+	private int next[];
+	private int cell_x[], cell_y[];
+	private double pos_x[], pos_y[];
+	private Object items[];
+
+	/**
+	 * Creates an empty index with cells the size of a map tile.
+	 * @see kaninator.io.MapFactory#getTileSize()
+	 */
+	public SpatialIndex()
+	{
+		this(MapFactory.getTileSize());
+	}
+
+	/**
+	 * Creates an empty index.
+	 * @param _cellSize The width and height of a single cell in isometric coordinate units.
+	 */
+	public SpatialIndex(double _cellSize)
+	{
+		cellSize = _cellSize;
+		size = 0;
+		maxRadius = 0.0;
+
+		heads = new int[INITIAL_CAPACITY];
+		mask = heads.length - 1;
+		for(int i = 0; i < heads.length; i++)
+			heads[i] = END;
+
+		next = new int[INITIAL_CAPACITY];
+		cell_x = new int[INITIAL_CAPACITY];
+		cell_y = new int[INITIAL_CAPACITY];
+		pos_x = new double[INITIAL_CAPACITY];
+		pos_y = new double[INITIAL_CAPACITY];
+		items = new Object[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Removes all the entries from the index. Keeps the internal arrays so they can be reused.
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < size; i++)
+			items[i] = null;
+
+		for(int i = 0; i < heads.length; i++)
+			heads[i] = END;
+
+		size = 0;
+		maxRadius = 0.0;
+	}
+
+	/**
+	 * Removes the entries added after the first count ones and keeps the rest. Lets entries that don't move
+	 * be inserted first and kept in the index, while the entries after them are rebuilt every frame.
+	 * Takes time proportional to the number of entries removed.
+	 * @param count The number of entries to keep.
+	 */
+	public void truncate(int count)
+	{
+		//The entries are at the heads of their chains in the reverse order they were inserted in
+		for(int e = size - 1; e >= count; e--)
+		{
+			heads[bucket(cell_x[e], cell_y[e])] = next[e];
+			items[e] = null;
+		}
+
+		size = Math.min(size, count);
+	}
+
+	/**
+	 * Adds an entry to the index at the current position of the DynamicObject.
+	 * The position is stored, so the index has to be rebuilt once the objects have moved.
+	 * @param item The entry returned by the queries.
+	 * @param object The DynamicObject deciding the position of the entry.
+	 */
+	public void insert(T item, DynamicObject object)
+	{
+		if(size == items.length)
+			grow();
+
+		double x = object.get_x();
+		double y = object.get_y();
+
+		items[size] = item;
+		pos_x[size] = x;
+		pos_y[size] = y;
+		cell_x[size] = cell(x);
+		cell_y[size] = cell(y);
+
+		int bucket = bucket(cell_x[size], cell_y[size]);
+		next[size] = heads[bucket];
+		heads[bucket] = size;
+
+		if(object.getRadius() > maxRadius)
+			maxRadius = object.getRadius();
+
+		size++;
+	}
+
+	/**
+	 * Getter for the number of entries in the index.
+	 * @return The number of entries.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Getter for the largest collision radius of the DynamicObjects in the index.
+	 * Add it to the radius of a query to find every object that might collide with a point.
+	 * @return The largest radius, 0 if the index is empty.
+	 */
+	public double getMaxRadius()
+	{
+		return maxRadius;
+	}
+
+	/**
+	 * Finds all the entries within the radius of the point (x,y).
+	 * @param x The x coordinate of the point in the internal, isometric, coordinate system.
+	 * @param y The y coordinate of the point in the internal, isometric, coordinate system.
+	 * @param radius The maximum distance from the point.
+	 * @param result The list the entries will be stored in, it is cleared before the query.
+	 * @return The number of entries found.
+	 */
+	@SuppressWarnings("unchecked")
+	public int queryRadius(double x, double y, double radius, ArrayList<T> result)
+	{
+		result.clear();
+
+		int min_x = cell(x - radius), max_x = cell(x + radius);
+		int min_y = cell(y - radius), max_y = cell(y + radius);
+		double radiusSq = radius * radius;
+
+		for(int i = min_x; i <= max_x; i++)
+		{
+			for(int j = min_y; j <= max_y; j++)
+			{
+				for(int e = heads[bucket(i, j)]; e != END; e = next[e])
+				{
+					if(cell_x[e] != i || cell_y[e] != j)
+						continue;
+
+					double d_x = pos_x[e] - x;
+					double d_y = pos_y[e] - y;
+					if(d_x * d_x + d_y * d_y <= radiusSq)
+						result.add((T)items[e]);
+				}
+			}
+		}
+
+		return result.size();
+	}
+
+	/**
+	 * Finds the entry closest to the point (x,y). Searches the cells in growing rings around the
+	 * point and stops as soon as no closer entry can exist.
+	 * @param x The x coordinate of the point in the internal, isometric, coordinate system.
+	 * @param y The y coordinate of the point in the internal, isometric, coordinate system.
+	 * @param maxDistance Entries further away than this are ignored.
+	 * @return The closest entry, or null if there are no entries within maxDistance.
+	 */
+	@SuppressWarnings("unchecked")
+	public T nearest(double x, double y, double maxDistance)
+	{
+		int center_x = cell(x);
+		int center_y = cell(y);
+		int maxRing = (int)Math.ceil(maxDistance / cellSize);
+
+		int best = END;
+		double bestSq = maxDistance * maxDistance;
+
+		for(int ring = 0; ring <= maxRing; ring++)
+		{
+			for(int i = center_x - ring; i <= center_x + ring; i++)
+			{
+				//Only the border of the ring, the inside has already been searched
+				int step = (i == center_x - ring || i == center_x + ring) ? 1 : 2 * ring;
+				for(int j = center_y - ring; j <= center_y + ring; j += step)
+				{
+					for(int e = heads[bucket(i, j)]; e != END; e = next[e])
+					{
+						if(cell_x[e] != i || cell_y[e] != j)
+							continue;
+
+						double d_x = pos_x[e] - x;
+						double d_y = pos_y[e] - y;
+						double distSq = d_x * d_x + d_y * d_y;
+						if(distSq <= bestSq)
+						{
+							best = e;
+							bestSq = distSq;
+						}
+					}
+				}
+			}
+
+			//Everything outside of this ring is at least ring * cellSize away
+			if(best != END && Math.sqrt(bestSq) <= ring * cellSize)
+				break;
+		}
+
+		return (best == END) ? null : (T)items[best];
+	}
+
+	/**
+	 * Converts a coordinate into a cell coordinate.
+	 * @param coord The coordinate in the internal, isometric, coordinate system.
+	 * @return The cell coordinate.
+	 */
+	private int cell(double coord)
+	{
+		return (int)Math.floor(coord / cellSize);
+	}
+
+	/**
+	 * Hashes the cell coordinates into a bucket.
+	 * @param i The x coordinate of the cell.
+	 * @param j The y coordinate of the cell.
+	 * @return The index of the bucket the cell belongs to.
+	 */
+	private int bucket(int i, int j)
+	{
+		return ((i * 73856093) ^ (j * 19349663)) & mask;
+	}
+
+	/**
+	 * Doubles the capacity of the index, the bucket table grows along with it to keep the chains short.
+	 */
+	private void grow()
+	{
+		int capacity = items.length * 2;
+
+		next = Arrays.copyOf(next, capacity);
+		cell_x = Arrays.copyOf(cell_x, capacity);
+		cell_y = Arrays.copyOf(cell_y, capacity);
+		pos_x = Arrays.copyOf(pos_x, capacity);
+		pos_y = Arrays.copyOf(pos_y, capacity);
+		items = Arrays.copyOf(items, capacity);
+
+		heads = new int[capacity];
+		mask = capacity - 1;
+		for(int i = 0; i < heads.length; i++)
+			heads[i] = END;
+
+		//Rehash the existing entries into the new table
+		for(int e = 0; e < size; e++)
+		{
+			int bucket = bucket(cell_x[e], cell_y[e]);
+			next[e] = heads[bucket];
+			heads[bucket] = e;
+		}
+	}
+
+	/**
+	 * Main method for testing purposes. Prints every test and if it succeeds, if it fails then it breaks the execution.
+	 * @param args Ignored here.
+	 */
+	public static void main(String args[])
+	{
+		try
+		{
+			System.out.println("Testing construction phase..");
+			SpatialIndex<Integer> index = new SpatialIndex<Integer>(64.0);
+			if(index.size() != 0 || index.getMaxRadius() != 0.0)
+				failedTest("Index not empty initially.");
+
+			if(index.nearest(0, 0, 1000) != null)
+				failedTest("Empty index returned an entry.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing insert and queryRadius..");
+			ArrayList<DynamicObject> objects = new ArrayList<DynamicObject>();
+			for(int i = 0; i < 500; i++)
+			{
+				DynamicObject obj = new DynamicObject(null, 8.0);
+				obj.setPos((i * 37) % 1000 - 200, (i * 91) % 800 - 100);
+				objects.add(obj);
+				index.insert(i, obj);
+			}
+
+			if(index.size() != 500 || index.getMaxRadius() != 8.0)
+				failedTest("Invalid size or radius after insert.");
+			System.out.print("..");
+
+			ArrayList<Integer> result = new ArrayList<Integer>();
+			double points[][] = {{0, 0}, {-150, 300}, {512, 512}, {999, -99}};
+			for(double p[] : points)
+			{
+				index.queryRadius(p[0], p[1], 150.0, result);
+				int expected = 0;
+				for(int i = 0; i < objects.size(); i++)
+				{
+					double d_x = objects.get(i).get_x() - p[0];
+					double d_y = objects.get(i).get_y() - p[1];
+					if(d_x * d_x + d_y * d_y <= 150.0 * 150.0)
+					{
+						expected++;
+						if(!result.contains(i))
+							failedTest("queryRadius missed an entry.");
+					}
+				}
+				if(expected != result.size())
+					failedTest("queryRadius returned " + result.size() + " entries, expected " + expected);
+				System.out.print("..");
+			}
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing nearest..");
+			for(double p[] : points)
+			{
+				Integer found = index.nearest(p[0], p[1], 2000.0);
+				double best = Double.MAX_VALUE;
+				for(DynamicObject obj : objects)
+					best = Math.min(best, Math.hypot(obj.get_x() - p[0], obj.get_y() - p[1]));
+
+				DynamicObject foundObj = objects.get(found);
+				if(Math.hypot(foundObj.get_x() - p[0], foundObj.get_y() - p[1]) != best)
+					failedTest("nearest didn't return the closest entry.");
+				System.out.print("..");
+			}
+
+			if(index.nearest(-5000, -5000, 100.0) != null)
+				failedTest("nearest returned an entry outside of the maximum distance.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing truncate..");
+			index.truncate(100);
+			if(index.size() != 100)
+				failedTest("Invalid size after truncate.");
+			index.queryRadius(0, 0, 5000.0, result);
+			if(result.size() != 100)
+				failedTest("truncate left " + result.size() + " entries, expected 100");
+			for(Integer entry : result)
+				if(entry >= 100)
+					failedTest("truncate left a removed entry.");
+			index.insert(500, objects.get(0));
+			if(index.queryRadius(0, 0, 5000.0, result) != 101)
+				failedTest("Insert after truncate failed.");
+			System.out.println(".. Test Ok!");
+
+			System.out.println("Testing clear..");
+			index.clear();
+			if(index.size() != 0 || index.queryRadius(0, 0, 1000.0, result) != 0)
+				failedTest("Index not empty after clear.");
+			System.out.println(".. Test Ok!");
+		}
+		catch(Exception e)
+		{
+			failedTest("Unknown exception: " + e);
+		}
+		System.out.println("TESTS: OK");
+	}
+
+	/**
+	 * Gets called if a test fails. Testing purposes only. Prints out the failed test and exits the program.
+	 * @param test A string describing the test that failed.
+	 */
+	private static void failedTest(String test)
+	{
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -23,6 +23,7 @@ public abstract class StaticObject
 	protected double height;
 	private Drawable tile, lower;
 	private int x, y;
+	private int columnBase, columnSlices;
 	
 	
 	/**
@@ -40,6 +41,7 @@ public abstract class StaticObject
 		height = _height;
 		x = _x;
 		y = _y;
+		setColumnBase(0);
 	}
 	
 	/**
@@ -70,6 +72,38 @@ public abstract class StaticObject
 	}
 	
 	
+	/**
+	 * Sets the height the visible part of the column under the StaticObject starts at.
+	 * Everything below it is covered by the tiles in front of the column, so it never has to be drawn.
+	 * Calculated once when the map is loaded.
+	 * @param base The height of the lowest visible slice of the column.
+	 * @see kaninator.io.MapFactory
+	 */
+	public void setColumnBase(int base)
+	{
+		columnBase = base;
+		columnSlices = (base < renderHeight()) ? (renderHeight() - base + (int)MapFactory.getTileHeight() - 1) / (int)MapFactory.getTileHeight() : 0;
+	}
+	
+	/**
+	 * Returns the height of the lowest visible slice of the column under the StaticObject.
+	 * The slices are stacked on top of it one tile height apart.
+	 * @return The height of the lowest slice.
+	 */
+	public int getColumnBase()
+	{
+		return columnBase;
+	}
+	
+	/**
+	 * Returns how many slices of the lower Drawable are needed to fill the visible part of the column.
+	 * @return The number of slices, 0 if the whole column is covered.
+	 */
+	public int getColumnSlices()
+	{
+		return columnSlices;
+	}
+	
 	/**
 	 * Calculates the depth of the StaticObject so that the Camera can sort out the drawing order.
 	 * @return The depth of the StaticObject.
@@ -0,0 +1,324 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import kaninator.graphics.DisplayList;
+import kaninator.graphics.Drawable;
+import kaninator.graphics.ImageFactory;
+import kaninator.io.MapFactory;
+
+/**
+ * Pre-renders the map into chunks of CHUNK_SIZE x CHUNK_SIZE tiles so the Camera can draw the terrain with a
+ * handful of images instead of one Drawable for every slice of every column on the screen.
+ * The chunks are rendered the first time they are needed and kept in a cache, the least recently used chunks
+ * are thrown away once the cached images exceed the pixel budget.
+ * Since the terrain is drawn before every DynamicObject, the cache can also look up the tiles that should cover
+ * a DynamicObject so that the Camera can draw them again on top of it.
+ * @author phedman
+ * @see kaninator.mechanics.Camera
+ * @see kaninator.mechanics.StaticObject
+ */
+public class TerrainCache
+{
+	private static final int CHUNK_SIZE = 8;
+	private static final int DEFAULT_PIXEL_BUDGET = 1 << 23;
+
+	private ArrayList<ArrayList<StaticObject>> tiles;
+	private int rows, cols, chunkRows, chunkCols;
+	private int maxTileWidth, maxTileHeight, maxRenderHeight;
+
+	private int chunkLeft[], chunkTop[], chunkRight[], chunkBottom[];
+	private int drawOrder[];
+
+	private LinkedHashMap<Integer, Drawable> baked;
+	private int pixelBudget, cachedPixels;
+	private RenderQueue bakeQueue;
+
+	/**
+	 * Creates a cache for the map with the default pixel budget.
+	 * @param _tiles A 2 dimensional ArrayList of StaticObjects, the rows of the map.
+	 */
+	public TerrainCache(ArrayList<ArrayList<StaticObject>> _tiles)
+	{
+		this(_tiles, DEFAULT_PIXEL_BUDGET);
+	}
+
+	/**
+	 * Creates a cache for the map.
+	 * Calculates the on screen bounds of every chunk, nothing is rendered before the chunks are needed.
+	 * @param _tiles A 2 dimensional ArrayList of StaticObjects, the rows of the map.
+	 * @param _pixelBudget The amount of pixels the cached chunks may use in total. At least one chunk is always kept.
+	 */
+	public TerrainCache(ArrayList<ArrayList<StaticObject>> _tiles, int _pixelBudget)
+	{
+		tiles = _tiles;
+		pixelBudget = _pixelBudget;
+		cachedPixels = 0;
+		baked = new LinkedHashMap<Integer, Drawable>(16, 0.75f, true);
+		bakeQueue = new RenderQueue();
+
+		rows = tiles.size();
+		cols = 0;
+		for(ArrayList<StaticObject> row : tiles)
+			cols = Math.max(cols, row.size());
+
+		maxTileWidth = maxTileHeight = maxRenderHeight = 0;
+		for(int i = 0; i < rows; i++)
+		{
+			for(int j = 0; j < tiles.get(i).size(); j++)
+			{
+				StaticObject object = tiles.get(i).get(j);
+				maxTileWidth = Math.max(maxTileWidth, Math.max(object.getDrawable().getWidth(), object.getLowerDrawable().getWidth()));
+				maxTileHeight = Math.max(maxTileHeight, Math.max(object.getDrawable().getHeight(), object.getLowerDrawable().getHeight()));
+				maxRenderHeight = Math.max(maxRenderHeight, object.renderHeight());
+			}
+		}
+
+		chunkRows = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		chunkCols = (cols + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		calculateBounds();
+	}
+
+	/**
+	 * Adds the chunks that are visible in the view to a DisplayList, rendering the ones that aren't cached.
+	 * The chunks are added back to front so they overlap each other correctly.
+	 * @param list The DisplayList the chunks will be added to.
+	 * @param view_x The x coordinate of the view, ie. the Camera.
+	 * @param view_y The y coordinate of the view, ie. the Camera.
+	 * @param width The width of the view.
+	 * @param height The height of the view.
+	 */
+	public void addChunks(DisplayList list, int view_x, int view_y, int width, int height)
+	{
+		for(int chunk : drawOrder)
+		{
+			if(chunkRight[chunk] <= chunkLeft[chunk])
+				continue;
+
+			if(chunkRight[chunk] < view_x || chunkLeft[chunk] > view_x + width ||
+					chunkBottom[chunk] < view_y || chunkTop[chunk] > view_y + height)
+				continue;
+
+			list.add(getChunk(chunk), chunkLeft[chunk] - view_x, chunkTop[chunk] - view_y, 0);
+		}
+	}
+
+	/**
+	 * Finds the tiles that are in front of an object and overlap it on screen, and adds every slice of their columns to a queue.
+	 * Drawing the queue on top of the object, clipped to the area of the object, hides the parts that the terrain covers.
+	 * @param queue The queue the slices will be added to, in on screen coordinates.
+	 * @param left The on screen x coordinate of the left edge of the object.
+	 * @param top The on screen y coordinate of the top edge of the object.
+	 * @param width The width of the object.
+	 * @param height The height of the object.
+	 * @param depth The depth of the object, only tiles deeper than this are added.
+	 * @param view_x The x coordinate of the view, ie. the Camera.
+	 * @param view_y The y coordinate of the view, ie. the Camera.
+	 */
+	public void addOccluders(RenderQueue queue, int left, int top, int width, int height, int depth, int view_x, int view_y)
+	{
+		int tileSize = (int)MapFactory.getTileSize();
+		int tileHeight = (int)MapFactory.getTileHeight();
+
+		//Convert to the coordinates of the whole map
+		left += view_x;
+		top += view_y;
+		int right = left + width;
+		int bottom = top + height;
+
+		//The tiles are enumerated along the diagonals, s = i + j decides the y and d = j - i the x coordinate on screen
+		int min_s = floor(top - maxTileHeight, tileHeight);
+		int max_s = floor(bottom + maxRenderHeight, tileHeight) + 1;
+		int min_d = floor(left - maxTileWidth, tileSize) + 1;
+		int max_d = floor(right, tileSize) + 1;
+
+		for(int s = Math.max(min_s, 0); s <= max_s; s++)
+		{
+			for(int d = min_d; d <= max_d; d++)
+			{
+				if(((s + d) & 1) != 0)
+					continue;
+
+				int i = (s - d) / 2;
+				int j = (s + d) / 2;
+				if(i < 0 || i >= rows || j < 0 || j >= tiles.get(i).size())
+					continue;
+
+				StaticObject object = tiles.get(i).get(j);
+				if(object.getDepth() <= depth)
+					continue;
+
+				if(object.render_x() > right || object.render_x() + maxTileWidth < left ||
+						tileTop(i, j) > bottom || tileBottom(i, j) < top)
+					continue;
+
+				addColumn(queue, i, j, view_x, view_y);
+			}
+		}
+	}
+
+	/**
+	 * Throws away all the cached chunks.
+	 */
+	public void flush()
+	{
+		baked.clear();
+		cachedPixels = 0;
+	}
+
+	/**
+	 * Gets the image of a chunk from the cache, renders it if it isn't cached.
+	 * Evicts the least recently used chunks if the budget is exceeded.
+	 * @param chunk The index of the chunk.
+	 * @return The rendered chunk.
+	 */
+	private Drawable getChunk(int chunk)
+	{
+		Drawable image = baked.get(chunk);
+		if(image != null)
+			return image;
+
+		image = bake(chunk);
+		baked.put(chunk, image);
+		cachedPixels += image.getWidth() * image.getHeight();
+
+		Iterator<Drawable> eldest = baked.values().iterator();
+		while(cachedPixels > pixelBudget && baked.size() > 1)
+		{
+			Drawable evicted = eldest.next();
+			cachedPixels -= evicted.getWidth() * evicted.getHeight();
+			eldest.remove();
+		}
+
+		return image;
+	}
+
+	/**
+	 * Renders all the columns of a chunk to an image, in the same order the Camera would draw them.
+	 * @param chunk The index of the chunk.
+	 * @return The rendered chunk.
+	 */
+	private Drawable bake(int chunk)
+	{
+		int cy = chunk / chunkCols;
+		int cx = chunk % chunkCols;
+
+		bakeQueue.clear();
+		for(int i = cy * CHUNK_SIZE; i < Math.min(rows, (cy + 1) * CHUNK_SIZE); i++)
+			for(int j = cx * CHUNK_SIZE; j < Math.min(tiles.get(i).size(), (cx + 1) * CHUNK_SIZE); j++)
+				addColumn(bakeQueue, i, j, chunkLeft[chunk], chunkTop[chunk]);
+		bakeQueue.sort();
+
+		BufferedImage buffer = new BufferedImage(chunkRight[chunk] - chunkLeft[chunk],
+				chunkBottom[chunk] - chunkTop[chunk], BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = buffer.createGraphics();
+		for(int rank = 0; rank < bakeQueue.size(); rank++)
+			bakeQueue.getDrawable(rank).draw(g, bakeQueue.get_x(rank), bakeQueue.get_y(rank) - bakeQueue.getHeight(rank));
+		g.dispose();
+		bakeQueue.clear();
+
+		return ImageFactory.createImage(buffer);
+	}
+
+	/**
+	 * Adds all the slices of a column to a queue, from the lowest visible slice up to the tile itself.
+	 * @see kaninator.mechanics.StaticObject#getColumnSlices()
+	 * @param queue The queue the slices will be added to.
+	 * @param i The row of the tile.
+	 * @param j The column of the tile.
+	 * @param off_x Subtracted from the x coordinates of the slices.
+	 * @param off_y Subtracted from the y coordinates of the slices.
+	 */
+	private void addColumn(RenderQueue queue, int i, int j, int off_x, int off_y)
+	{
+		StaticObject object = tiles.get(i).get(j);
+		int obj_x = object.render_x() - off_x;
+		int obj_y = object.render_y() - off_y;
+		int key = object.getDepth();
+
+		for(int slice = 0; slice < object.getColumnSlices(); slice++)
+			queue.add(object.getLowerDrawable(), obj_x, obj_y, object.getColumnBase() + slice * (int)MapFactory.getTileHeight(), key);
+		queue.add(object.getDrawable(), obj_x, obj_y, object.renderHeight(), key);
+	}
+
+	/**
+	 * Calculates the on screen bounds of every chunk and the order the chunks are drawn in.
+	 */
+	private void calculateBounds()
+	{
+		int numChunks = chunkRows * chunkCols;
+		chunkLeft = new int[numChunks];
+		chunkTop = new int[numChunks];
+		chunkRight = new int[numChunks];
+		chunkBottom = new int[numChunks];
+
+		for(int chunk = 0; chunk < numChunks; chunk++)
+		{
+			chunkLeft[chunk] = chunkTop[chunk] = Integer.MAX_VALUE;
+			chunkRight[chunk] = chunkBottom[chunk] = Integer.MIN_VALUE;
+		}
+
+		for(int i = 0; i < rows; i++)
+		{
+			for(int j = 0; j < tiles.get(i).size(); j++)
+			{
+				int chunk = (i / CHUNK_SIZE) * chunkCols + j / CHUNK_SIZE;
+				StaticObject object = tiles.get(i).get(j);
+				chunkLeft[chunk] = Math.min(chunkLeft[chunk], object.render_x());
+				chunkRight[chunk] = Math.max(chunkRight[chunk], object.render_x() + maxTileWidth);
+				chunkTop[chunk] = Math.min(chunkTop[chunk], tileTop(i, j));
+				chunkBottom[chunk] = Math.max(chunkBottom[chunk], tileBottom(i, j));
+			}
+		}
+
+		//Back to front along the diagonals, chunks on the same diagonal never overlap each other
+		drawOrder = new int[numChunks];
+		int n = 0;
+		for(int diagonal = 0; diagonal < chunkRows + chunkCols - 1; diagonal++)
+			for(int cx = Math.max(0, diagonal - chunkRows + 1); cx <= Math.min(diagonal, chunkCols - 1); cx++)
+				drawOrder[n++] = (diagonal - cx) * chunkCols + cx;
+	}
+
+	/**
+	 * Gets the on screen y coordinate of the top edge of a column.
+	 * @param i The row of the tile.
+	 * @param j The column of the tile.
+	 * @return The y coordinate of the top edge.
+	 */
+	private int tileTop(int i, int j)
+	{
+		StaticObject object = tiles.get(i).get(j);
+		return object.render_y() - object.renderHeight();
+	}
+
+	/**
+	 * Gets the on screen y coordinate of the bottom edge of a column.
+	 * @param i The row of the tile.
+	 * @param j The column of the tile.
+	 * @return The y coordinate of the bottom edge.
+	 */
+	private int tileBottom(int i, int j)
+	{
+		StaticObject object = tiles.get(i).get(j);
+		return object.render_y() - Math.min(object.getColumnBase(), object.renderHeight()) + maxTileHeight;
+	}
+
+	/**
+	 * Divides and rounds towards negative infinity.
+	 * @param a The dividend.
+	 * @param b The divisor, must be positive.
+	 * @return The rounded quotient.
+	 */
+	private static int floor(int a, int b)
+	{
+		return (a >= 0) ? a / b : -((-a + b - 1) / b);
+	}
+}
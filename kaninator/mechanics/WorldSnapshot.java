@@ -0,0 +1,363 @@
+/**
+ * The game engine package.
+ * Implements all the generic services needed for a 2d game.
+ */
+package kaninator.mechanics;
+
+import java.util.Arrays;
+
+import kaninator.graphics.Drawable;
+
+/**
+ * A copy of everything the Camera needs to render the DynamicObjects of a tick.
+ * For every object the active frame of its animation, its depth and its previous and current
+ * positions and heights are stored, so the frames can be interpolated between the ticks without touching
+ * the objects themselves. The camera follows a separate focus object, and a few status values, like the
+ * hit points of the player, can be stored along with the objects for the GUI.
+ * The snapshots are filled by the simulation and read by the renderer, they are handed over and reused
+ * by a SnapshotExchange. The arrays only grow, so refilling a snapshot doesn't create any garbage once
+ * they have grown large enough.
+ * @author phedman
+ * @see kaninator.mechanics.SnapshotExchange
+ * @see kaninator.mechanics.Camera#render(WorldSnapshot, double)
+ */
+public class WorldSnapshot
+{
+	private static final int INITIAL_CAPACITY = 256;
+
+	private int size;
+	private Drawable drawables[];
+	private double prev_x[], prev_y[], prev_h[], cur_x[], cur_y[], cur_h[];
+	private int depths[];
+	private Drawable focusFrame;
+	private double focus_x[], focus_y[], focus_h[];
+	private int status[];
+	private long tick, time;
+
+	/**
+	 * Creates an empty snapshot that hasn't been published.
+	 * @param statusCount The number of status values stored in the snapshot.
+	 */
+	public WorldSnapshot(int statusCount)
+	{
+		size = 0;
+		drawables = new Drawable[INITIAL_CAPACITY];
+		prev_x = new double[INITIAL_CAPACITY];
+		prev_y = new double[INITIAL_CAPACITY];
+		prev_h = new double[INITIAL_CAPACITY];
+		cur_x = new double[INITIAL_CAPACITY];
+		cur_y = new double[INITIAL_CAPACITY];
+		cur_h = new double[INITIAL_CAPACITY];
+		depths = new int[INITIAL_CAPACITY];
+		focusFrame = null;
+		focus_x = new double[2];
+		focus_y = new double[2];
+		focus_h = new double[2];
+		status = new int[statusCount];
+		tick = -1;
+		time = 0;
+	}
+
+	/**
+	 * Empties the snapshot and removes the focus. Keeps the internal arrays so they can be reused.
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < size; i++)
+			drawables[i] = null;
+
+		size = 0;
+		focusFrame = null;
+	}
+
+	/**
+	 * Adds a DynamicObject to the tail of the snapshot. Objects without any frames are left out.
+	 * @param obj The DynamicObject.
+	 * @see kaninator.mechanics.DynamicObject#storePosition()
+	 */
+	public void add(DynamicObject obj)
+	{
+		Drawable frame = obj.getAnimation().getCurrentFrame();
+		if(frame == null)
+			return;
+
+		if(size == drawables.length)
+			grow();
+
+		drawables[size] = frame;
+		prev_x[size] = obj.get_x(0.0);
+		prev_y[size] = obj.get_y(0.0);
+		prev_h[size] = obj.getHeight(0.0);
+		cur_x[size] = obj.get_x(1.0);
+		cur_y[size] = obj.get_y(1.0);
+		cur_h[size] = obj.getHeight(1.0);
+		depths[size] = obj.getDepth();
+		size++;
+	}
+
+	/**
+	 * Adds an object that isn't stored as a DynamicObject to the tail of the snapshot, from its previous and current position.
+	 * The depth is calculated from the current position, the same way as for a DynamicObject.
+	 * @param frame The frame the object is drawn with, null to leave the object out.
+	 * @param _prev_x The x coordinate before the tick.
+	 * @param _prev_y The y coordinate before the tick.
+	 * @param _prev_h The height before the tick.
+	 * @param x The x coordinate after the tick.
+	 * @param y The y coordinate after the tick.
+	 * @param h The height after the tick.
+	 * @see kaninator.mechanics.DynamicObject#getDepth(double, double, double)
+	 */
+	public void add(Drawable frame, double _prev_x, double _prev_y, double _prev_h, double x, double y, double h)
+	{
+		if(frame == null)
+			return;
+		
+		if(size == drawables.length)
+			grow();
+
+		drawables[size] = frame;
+		prev_x[size] = _prev_x;
+		prev_y[size] = _prev_y;
+		prev_h[size] = _prev_h;
+		cur_x[size] = x;
+		cur_y[size] = y;
+		cur_h[size] = h;
+		depths[size] = DynamicObject.getDepth(x, y, h);
+		size++;
+	}
+
+	/**
+	 * Adds a category of an EntityRegistry to the tail of the snapshot, including the objects marked for removal.
+	 * @param registry The registry, null for none.
+	 * @param category The category.
+	 */
+	public void addAll(EntityRegistry registry, int category)
+	{
+		if(registry == null)
+			return;
+
+		for(int i = 0; i < registry.size(category); i++)
+			add(registry.get(category, i));
+	}
+
+	/**
+	 * Getter for the number of objects in the snapshot.
+	 * @return The number of objects.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the frame an object is drawn with.
+	 * @param i The index of the object.
+	 * @return The Drawable of the frame.
+	 */
+	public Drawable getDrawable(int i)
+	{
+		return drawables[i];
+	}
+
+	/**
+	 * Gets the depth of an object, used by the Camera for sorting.
+	 * @param i The index of the object.
+	 * @return The depth of the object.
+	 */
+	public int getDepth(int i)
+	{
+		return depths[i];
+	}
+
+	/**
+	 * Renders the interpolated coordinates of an object to a 2-dimensional x coordinate, the same way DynamicObject does.
+	 * @param i The index of the object.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the object is rendered.
+	 * @return The x-coordinate on the screen.
+	 * @see kaninator.mechanics.DynamicObject#render_x(double)
+	 */
+	public int render_x(int i, double alpha)
+	{
+		double left_x = interpolate(prev_x[i], cur_x[i], alpha) - interpolate(prev_y[i], cur_y[i], alpha);
+		left_x -= drawables[i].getWidth()/2.0;
+
+		return (int)left_x;
+	}
+
+	/**
+	 * Renders the interpolated coordinates of an object to a 2-dimensional y coordinate, the same way DynamicObject does.
+	 * @param i The index of the object.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the object is rendered.
+	 * @return The y-coordinate on the screen.
+	 * @see kaninator.mechanics.DynamicObject#render_y(double)
+	 */
+	public int render_y(int i, double alpha)
+	{
+		double top_y = (interpolate(prev_x[i], cur_x[i], alpha) + interpolate(prev_y[i], cur_y[i], alpha))/2;
+		top_y -= drawables[i].getHeight();
+
+		return (int)top_y;
+	}
+
+	/**
+	 * Interpolates the height of an object.
+	 * @param i The index of the object.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) height the object is rendered.
+	 * @return The height of the object.
+	 */
+	public double getHeight(int i, double alpha)
+	{
+		return interpolate(prev_h[i], cur_h[i], alpha);
+	}
+
+	/**
+	 * Stores the object the Camera should follow. It isn't rendered unless it is added as well.
+	 * @param obj The DynamicObject to follow, null to not follow anything.
+	 */
+	public void setFocus(DynamicObject obj)
+	{
+		focusFrame = (obj == null) ? null : obj.getAnimation().getCurrentFrame();
+		if(focusFrame == null)
+			return;
+
+		focus_x[0] = obj.get_x(0.0);
+		focus_y[0] = obj.get_y(0.0);
+		focus_h[0] = obj.getHeight(0.0);
+		focus_x[1] = obj.get_x(1.0);
+		focus_y[1] = obj.get_y(1.0);
+		focus_h[1] = obj.getHeight(1.0);
+	}
+
+	/**
+	 * Checks if the snapshot has an object for the Camera to follow.
+	 * @return True if there is a focus.
+	 */
+	public boolean hasFocus()
+	{
+		return focusFrame != null;
+	}
+
+	/**
+	 * Renders the interpolated coordinates of the focus to a 2-dimensional x coordinate.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the focus is rendered.
+	 * @return The x-coordinate on the screen.
+	 */
+	public int renderFocus_x(double alpha)
+	{
+		double left_x = interpolate(focus_x[0], focus_x[1], alpha) - interpolate(focus_y[0], focus_y[1], alpha);
+		left_x -= focusFrame.getWidth()/2.0;
+
+		return (int)left_x;
+	}
+
+	/**
+	 * Renders the interpolated coordinates of the focus to a 2-dimensional y coordinate.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) position the focus is rendered.
+	 * @return The y-coordinate on the screen.
+	 */
+	public int renderFocus_y(double alpha)
+	{
+		double top_y = (interpolate(focus_x[0], focus_x[1], alpha) + interpolate(focus_y[0], focus_y[1], alpha))/2;
+		top_y -= focusFrame.getHeight();
+
+		return (int)top_y;
+	}
+
+	/**
+	 * Interpolates the height of the focus.
+	 * @param alpha How far between the previous (0.0) and the current (1.0) height the focus is rendered.
+	 * @return The height of the focus.
+	 */
+	public double getFocusHeight(double alpha)
+	{
+		return interpolate(focus_h[0], focus_h[1], alpha);
+	}
+
+	/**
+	 * Stores a status value.
+	 * @param index The index of the value.
+	 * @param value The value.
+	 */
+	public void setStatus(int index, int value)
+	{
+		status[index] = value;
+	}
+
+	/**
+	 * Gets a status value.
+	 * @param index The index of the value.
+	 * @return The value.
+	 */
+	public int getStatus(int index)
+	{
+		return status[index];
+	}
+
+	/**
+	 * Sets the number of the tick the snapshot was taken after.
+	 * @param _tick The number of the tick.
+	 */
+	public void setTick(long _tick)
+	{
+		tick = _tick;
+	}
+
+	/**
+	 * Gets the number of the tick the snapshot was taken after.
+	 * @return The number of the tick, -1 if the snapshot hasn't been filled yet.
+	 */
+	public long getTick()
+	{
+		return tick;
+	}
+
+	/**
+	 * Sets the time the snapshot was published. Called by the SnapshotExchange.
+	 * @param _time The time from System.nanoTime().
+	 */
+	void setTime(long _time)
+	{
+		time = _time;
+	}
+
+	/**
+	 * Gets the time the snapshot was published. The renderer interpolates according to the time passed since then.
+	 * @return The time from System.nanoTime(), 0 if the snapshot hasn't been published.
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Interpolates between the previous and the current value.
+	 * @param previous The value before the tick.
+	 * @param current The value after the tick.
+	 * @param alpha How far between the values, 1.0 or more gives exactly the current value.
+	 * @return The interpolated value.
+	 */
+	private static double interpolate(double previous, double current, double alpha)
+	{
+		if(alpha >= 1.0)
+			return current;
+
+		return previous + (current - previous) * alpha;
+	}
+
+	/**
+	 * Doubles the capacity of the snapshot.
+	 */
+	private void grow()
+	{
+		int capacity = drawables.length * 2;
+
+		drawables = Arrays.copyOf(drawables, capacity);
+		prev_x = Arrays.copyOf(prev_x, capacity);
+		prev_y = Arrays.copyOf(prev_y, capacity);
+		prev_h = Arrays.copyOf(prev_h, capacity);
+		cur_x = Arrays.copyOf(cur_x, capacity);
+		cur_y = Arrays.copyOf(cur_y, capacity);
+		cur_h = Arrays.copyOf(cur_h, capacity);
+		depths = Arrays.copyOf(depths, capacity);
+	}
+}
@@ -17,6 +17,15 @@ public class SoundFactory
 	private static HashMap<String, SoundClip> soundMap = new HashMap<String, SoundClip>();
 	private static SoundClip notFound =  new SoundClip();
 	
+	/**
+	 * Returns a SoundClip that doesn't play anything, for running the game objects without sound.
+	 * @return The dummy sound clip.
+	 */
+	public static SoundClip getSilentClip()
+	{
+		return notFound;
+	}
+	
 	/**
 	 * Returns the SoundClip located at the file path. 
 	 * If the SoundClip previously has been loaded it automatically returns it from the internal HashMap.